@@ -0,0 +1,62 @@
+package cpuinfo;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+
+/**
+ * short CPU-bound microbenchmark measuring how much work a core carries out per cycle at nominal speed,
+ * with respect to a reference core; a factor of 2 means that a cycle of this node does twice the work of a reference cycle
+ */
+public class CPUBenchmark {
+	
+	/**
+	 * cycles per iteration of the reference core, a recent x86 server core scores a factor close to 1
+	 */
+	private static final double REFERENCE_CYCLES_PER_ITERATION = 5;
+	
+	private static final int ITERATIONS = 10000000;
+	private static final int RUNS = 3;
+	private static final int TABLE_SIZE = 1 << 16; // 256 KB, fits in L2
+	
+	private static volatile int sink; // keeps the JIT from removing the workload
+	
+	/**
+	 * @param speed nominal speed of the core the benchmark runs on, in Hz
+	 * @return the performance factor of this node, 1 if it cannot be measured
+	 */
+	public static double getPerformanceFactor(long speed) {
+		ThreadMXBean threadBean = ManagementFactory.getThreadMXBean();
+		if (speed <= 0 || !threadBean.isCurrentThreadCpuTimeSupported())
+			return 1;
+		int[] table = new int[TABLE_SIZE];
+		run(table); // warm up
+		long bestTime = Long.MAX_VALUE;
+		for (int i = 0; i < RUNS; i++) {
+			long begin = threadBean.getCurrentThreadCpuTime();
+			run(table);
+			bestTime = Math.min(bestTime, threadBean.getCurrentThreadCpuTime() - begin);
+		}
+		if (bestTime <= 0)
+			return 1;
+		double cyclesPerIteration = (double)bestTime * speed / 1000000000 / ITERATIONS;
+		return REFERENCE_CYCLES_PER_ITERATION / cyclesPerIteration;
+	}
+	
+	/**
+	 * a mix of integer arithmetic and memory accesses
+	 * @param table
+	 */
+	private static void run(int[] table) {
+		int x = 0x9E3779B9;
+		int sum = 0;
+		for (int i = 0; i < ITERATIONS; i++) {
+			x ^= x << 13;
+			x ^= x >>> 17;
+			x ^= x << 5;
+			int index = x & (TABLE_SIZE - 1);
+			sum += table[index];
+			table[index] = sum ^ i;
+		}
+		sink = sum;
+	}
+}
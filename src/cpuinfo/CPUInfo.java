@@ -1,19 +1,44 @@
 package cpuinfo;
 
 import java.io.BufferedReader;
+import java.io.File;
 import java.io.FileInputStream;
+import java.io.FileReader;
 import java.io.InputStreamReader;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 public class CPUInfo {
 	
 	private static final String CPU_INFO_FILE = "/proc/cpuinfo";
 	@SuppressWarnings("unused")
 	private static final String DEBUG_CPU_INFO_FILE = "d:/cpuinfo.txt";
+	private static final String CPU_FREQ_DIR = "/sys/devices/system/cpu/cpu%d/cpufreq/";
+	private static final String NUMA_NODE_DIR = "/sys/devices/system/node/";
+	private static final String CPU_DIR = "/sys/devices/system/cpu/cpu%d/";
+	private static final String THREAD_SIBLINGS_FILE = "topology/thread_siblings_list";
+	private static final String CPU_CAPACITY_FILE = "cpu_capacity"; // relative capacity of the core in [0, 1024], exposed on asymmetric processors
+	private static final String PERFORMANCE_CORES_FILE = "/sys/devices/cpu_core/cpus"; // hybrid Intel processors
+	private static final String EFFICIENCY_CORES_FILE = "/sys/devices/cpu_atom/cpus";
+	private static final double DEFAULT_SMT_YIELD = 0.3;
+	private static final Pattern NUMA_NODE_PATTERN = Pattern.compile("node([0-9]+)");
+	private static final String BASE_FREQUENCY_FILE = "base_frequency"; // in kHz
+	private static final String MAX_FREQUENCY_FILE = "cpuinfo_max_freq"; // in kHz
+	private static final Pattern MODEL_FREQUENCY_PATTERN = Pattern.compile("@\\s*([0-9.]+)\\s*GHz");
+	private static final long MHZ = 1000000;
+	private static final long KHZ = 1000;
 	
 	private Map<Integer, CoreInfo> cores;
 	private long totalSpeed;
+	private long processorSpeed; // average speed of an allowed processor, SMT siblings weighted as in totalSpeed
+	private CPULimits limits;
+	private Map<Integer, Integer> numaNodes; // processor -> NUMA node
+	private double smtYield; // additional work carried out by a physical core for each further SMT sibling, wrt a single thread
 	
 	private static CPUInfo instance = null;
 	
@@ -23,33 +48,179 @@ public class CPUInfo {
 		return instance;
 	}
 	
-	public int getNumberOfCores() {
-		return cores.keySet().size();
+	/**
+	 * @return the number of cores this process can actually use, according to its cpuset, affinity mask and CPU quota
+	 */
+	public synchronized int getNumberOfCores() {
+		int numberOfCores = 0;
+		for (int processor : cores.keySet())
+			if (limits.isAllowed(processor))
+				numberOfCores++;
+		if (limits.getQuota() > 0)
+			numberOfCores = Math.min(numberOfCores, (int)Math.ceil(limits.getQuota()));
+		return numberOfCores;
 	}
 	
 	public CoreInfo getCoreInfo(int processor_id) {
 		return cores.get(processor_id);
 	}
 	
-	public long getTotalSpeed() {
+	/**
+	 * the first processor of each physical core counts at its full speed, each further SMT sibling only adds smtYield of it;
+	 * the speed of the cores of hybrid processors is weighted by their relative capacity
+	 * @return the overall speed of the cores this process can actually use; with a CPU quota, it is the quota times the average speed of those cores
+	 */
+	public synchronized long getTotalSpeed() {
 		if (totalSpeed == -1) {
 			totalSpeed = 0;
-			for (CoreInfo core : cores.values())
-				totalSpeed += core.getSpeed();
+			int allowedCores = 0;
+			Set<String> physicalCores = new HashSet<String>();
+			for (int processor : new TreeSet<Integer>(cores.keySet())) {
+				CoreInfo core = cores.get(processor);
+				if (limits.isAllowed(processor)) {
+					double weight = physicalCores.add(core.getPhysicalCore()) ? 1 : smtYield;
+					totalSpeed += (long)(core.getSpeed() * weight * core.getRelativeCapacity());
+					allowedCores++;
+				}
+			}
+			processorSpeed = (allowedCores > 0) ? totalSpeed / allowedCores : 0;
+			if (limits.getQuota() > 0 && allowedCores > 0 && limits.getQuota() < allowedCores)
+				totalSpeed = (long)(totalSpeed * limits.getQuota() / allowedCores);
 		}
 		return totalSpeed;
 	}
 	
+	/**
+	 * threads can't tell which processor they ran on, so a second of CPU time is worth the average speed of the allowed processors;
+	 * loads measured as CPU time times this speed are on the same scale as getTotalSpeed(), SMT siblings included
+	 * @return the cycles carried out, on average, by a second of CPU time of this process
+	 */
+	public synchronized long getProcessorSpeed() {
+		getTotalSpeed();
+		return processorSpeed;
+	}
+	
+	/**
+	 * reads again the limits of this process, which can change at runtime (e.g., container resized)
+	 * @return true if the limits have changed
+	 */
+	public synchronized boolean refresh() {
+		CPULimits newLimits = CPULimits.read();
+		if (newLimits.equals(limits))
+			return false;
+		limits = newLimits;
+		totalSpeed = -1;
+		return true;
+	}
+	
+	public synchronized CPULimits getLimits() {
+		return limits;
+	}
+	
+	/**
+	 * @param smtYield additional work carried out by a physical core for each further SMT sibling, in [0, 1]
+	 */
+	public synchronized void setSmtYield(double smtYield) {
+		if (smtYield < 0 || smtYield > 1)
+			throw new RuntimeException("Wrong SMT yield: " + smtYield + ", expected in the range [0, 1]");
+		this.smtYield = smtYield;
+		totalSpeed = -1;
+	}
+	
+	/**
+	 * @param processor_id
+	 * @return the NUMA node the given processor belongs to, 0 if the NUMA layout is not available
+	 */
+	public int getNumaNode(int processor_id) {
+		Integer numaNode = numaNodes.get(processor_id);
+		return (numaNode != null) ? numaNode : 0;
+	}
+	
+	/**
+	 * @return the number of NUMA nodes with at least a processor this process can use, 1 if the NUMA layout is not available
+	 */
+	public synchronized int getNumberOfNumaNodes() {
+		Set<Integer> usedNumaNodes = new HashSet<Integer>();
+		for (int processor : cores.keySet())
+			if (limits.isAllowed(processor))
+				usedNumaNodes.add(getNumaNode(processor));
+		return Math.max(1, usedNumaNodes.size());
+	}
+	
 	private CPUInfo() {
 		cores = new HashMap<Integer, CoreInfo>();
 		totalSpeed = -1;
+		limits = CPULimits.read();
+		numaNodes = new HashMap<Integer, Integer>();
+		smtYield = DEFAULT_SMT_YIELD;
 		try {
 			loadInfo();
+			loadTopologyInfo();
+			loadNumaInfo();
 		} catch (Exception e) {
 			e.printStackTrace();
 		}
 	}
 	
+	/**
+	 * reads the SMT siblings of each processor and, on hybrid processors, the type and the relative capacity of its core;
+	 * cpu_capacity also accounts for the max frequency, which is divided out since speeds are already weighted by frequency
+	 */
+	private void loadTopologyInfo() {
+		Set<Integer> performanceCores = CPULimits.parseList(readLine(PERFORMANCE_CORES_FILE));
+		Set<Integer> efficiencyCores = CPULimits.parseList(readLine(EFFICIENCY_CORES_FILE));
+		Map<Integer, Long> capacities = new HashMap<Integer, Long>();
+		long maxCapacity = 0;
+		long maxSpeed = 0;
+		for (CoreInfo core : cores.values()) {
+			String line = readLine(String.format(CPU_DIR, core.getId()) + CPU_CAPACITY_FILE);
+			if (line != null) {
+				try {
+					long capacity = Long.parseLong(line.trim());
+					capacities.put(core.getId(), capacity);
+					maxCapacity = Math.max(maxCapacity, capacity);
+				} catch (NumberFormatException e) {
+					// not available
+				}
+			}
+			maxSpeed = Math.max(maxSpeed, core.getMaxSpeed());
+		}
+		
+		for (CoreInfo core : cores.values()) {
+			String siblings = readLine(String.format(CPU_DIR, core.getId()) + THREAD_SIBLINGS_FILE);
+			String physicalCore = (siblings != null) ? siblings.trim() : "" + core.getId();
+			String coreType = null;
+			if (performanceCores != null && performanceCores.contains(core.getId()))
+				coreType = "performance";
+			else if (efficiencyCores != null && efficiencyCores.contains(core.getId()))
+				coreType = "efficiency";
+			double relativeCapacity = 1;
+			Long capacity = capacities.get(core.getId());
+			if (capacity != null && maxCapacity > 0 && core.getMaxSpeed() > 0)
+				relativeCapacity = ((double)capacity / maxCapacity) * ((double)maxSpeed / core.getMaxSpeed());
+			core.setTopology(physicalCore, coreType, relativeCapacity);
+		}
+	}
+	
+	/**
+	 * reads the processors of each NUMA node from /sys/devices/system/node/node<n>/cpulist
+	 */
+	private void loadNumaInfo() {
+		File[] files = new File(NUMA_NODE_DIR).listFiles();
+		if (files == null)
+			return;
+		for (File file : files) {
+			Matcher matcher = NUMA_NODE_PATTERN.matcher(file.getName());
+			if (!matcher.matches())
+				continue;
+			int numaNode = Integer.parseInt(matcher.group(1));
+			Set<Integer> processors = CPULimits.parseList(readLine(new File(file, "cpulist").getPath()));
+			if (processors != null)
+				for (int processor : processors)
+					numaNodes.put(processor, numaNode);
+		}
+	}
+	
 	private void loadInfo() throws Exception {
 		BufferedReader br = new BufferedReader(new InputStreamReader(new FileInputStream(CPU_INFO_FILE)));
 		String line = null;
@@ -63,7 +234,7 @@ public class CPUInfo {
 				
 				if (key.equals(CoreInfo.ID_PROPERTY)) {
 					if (processor > -1) {
-						cores.put(processor, new CoreInfo(processor, model_name, speed));
+						cores.put(processor, createCoreInfo(processor, model_name, speed));
 						processor = -1;
 						model_name = "";
 						speed = 0;
@@ -75,14 +246,76 @@ public class CPUInfo {
 					model_name = value;
 				
 				if (key.equals(CoreInfo.SPEED_PROPERTY))
-					// speed is in MHz, need to multiply by 1024 * 1024
-					speed = (long)Float.parseFloat(value) * 1024 * 1024;
+					// speed is in MHz, need to multiply by 1000 * 1000 before dropping the decimals
+					speed = (long)(Double.parseDouble(value) * MHZ);
 			}
 		}
-		cores.put(processor, new CoreInfo(processor, model_name, speed));
+		cores.put(processor, createCoreInfo(processor, model_name, speed));
 		br.close();
 	}
 	
+	/**
+	 * the nominal speed is the base frequency exposed by cpufreq, or the one in the model name, or the max frequency exposed by cpufreq,
+	 * or the current one if none of them is available (e.g., virtual machines)
+	 * @param processor
+	 * @param modelName
+	 * @param currentSpeed in Hz
+	 * @return
+	 */
+	private CoreInfo createCoreInfo(int processor, String modelName, long currentSpeed) {
+		String cpuFreqDir = String.format(CPU_FREQ_DIR, processor);
+		long maxSpeed = readFrequency(cpuFreqDir + MAX_FREQUENCY_FILE);
+		long nominalSpeed = readFrequency(cpuFreqDir + BASE_FREQUENCY_FILE);
+		if (nominalSpeed <= 0) {
+			Matcher matcher = MODEL_FREQUENCY_PATTERN.matcher(modelName);
+			if (matcher.find())
+				nominalSpeed = (long)(Double.parseDouble(matcher.group(1)) * 1000 * MHZ);
+		}
+		if (nominalSpeed <= 0)
+			nominalSpeed = (maxSpeed > 0) ? maxSpeed : currentSpeed;
+		if (maxSpeed <= 0)
+			maxSpeed = Math.max(nominalSpeed, currentSpeed);
+		return new CoreInfo(processor, modelName, currentSpeed, nominalSpeed, maxSpeed);
+	}
+	
+	/**
+	 * @param fileName a cpufreq file, in kHz
+	 * @return the frequency in Hz, -1 if not available
+	 */
+	private long readFrequency(String fileName) {
+		String line = readLine(fileName);
+		if (line == null)
+			return -1;
+		try {
+			return Long.parseLong(line.trim()) * KHZ;
+		} catch (NumberFormatException e) {
+			return -1;
+		}
+	}
+	
+	/**
+	 * @param fileName
+	 * @return the first line of the given file, null if it cannot be read
+	 */
+	private String readLine(String fileName) {
+		if (!new File(fileName).canRead())
+			return null;
+		BufferedReader br = null;
+		try {
+			br = new BufferedReader(new FileReader(fileName));
+			return br.readLine();
+		} catch (Exception e) {
+			return null;
+		} finally {
+			try {
+				if (br != null)
+					br.close();
+			} catch (Exception e) {
+				// nothing to do
+			}
+		}
+	}
+	
 	private String getKey(String line) {
 		return line.substring(0, line.indexOf(':')).trim();
 	}
@@ -0,0 +1,244 @@
+package cpuinfo;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * limits on the processors this process can actually use: the CPU quota of its cgroup (v1 or v2),
+ * the cpuset of its cgroup and its affinity mask
+ */
+public class CPULimits {
+	
+	private static final String CGROUP_FILE = "/proc/self/cgroup";
+	private static final String STATUS_FILE = "/proc/self/status";
+	private static final String CGROUP_ROOT = "/sys/fs/cgroup";
+	private static final String AFFINITY_PROPERTY = "Cpus_allowed_list";
+	
+	private final double quota; // in cores, -1 if not limited
+	private final Set<Integer> allowedProcessors; // null if not limited
+	
+	private CPULimits(double quota, Set<Integer> allowedProcessors) {
+		this.quota = quota;
+		this.allowedProcessors = allowedProcessors;
+	}
+	
+	/**
+	 * @return the current limits of this process, no limit is applied for anything that cannot be read
+	 */
+	public static CPULimits read() {
+		List<String[]> cgroups = readCgroups();
+		
+		double quota = -1;
+		Set<Integer> allowedProcessors = null;
+		
+		// cgroup v2, single hierarchy
+		String v2Path = getCgroupPath(cgroups, "");
+		if (v2Path != null) {
+			String cpuMax = readFirstLine(CGROUP_ROOT, v2Path, "cpu.max"); // "<quota> <period>" or "max <period>"
+			if (cpuMax != null) {
+				String[] values = cpuMax.trim().split("\\s+");
+				if (values.length == 2 && !values[0].equals("max"))
+					quota = parseQuota(values[0], values[1]);
+			}
+			allowedProcessors = parseList(readFirstLine(CGROUP_ROOT, v2Path, "cpuset.cpus.effective"));
+		}
+		
+		// cgroup v1, one hierarchy per controller
+		String cpuPath = getCgroupPath(cgroups, "cpu");
+		if (quota < 0 && cpuPath != null) {
+			for (String controllerDir : new String[] {"cpu", "cpu,cpuacct", "cpuacct,cpu"}) {
+				String cfsQuota = readFirstLine(CGROUP_ROOT + "/" + controllerDir, cpuPath, "cpu.cfs_quota_us");
+				String cfsPeriod = readFirstLine(CGROUP_ROOT + "/" + controllerDir, cpuPath, "cpu.cfs_period_us");
+				if (cfsQuota != null && cfsPeriod != null) {
+					quota = parseQuota(cfsQuota.trim(), cfsPeriod.trim()); // a quota of -1 means no limit
+					break;
+				}
+			}
+		}
+		String cpusetPath = getCgroupPath(cgroups, "cpuset");
+		if (allowedProcessors == null && cpusetPath != null)
+			allowedProcessors = parseList(readFirstLine(CGROUP_ROOT + "/cpuset", cpusetPath, "cpuset.cpus"));
+		
+		// affinity mask of this process
+		Set<Integer> affinity = parseList(readProperty(STATUS_FILE, AFFINITY_PROPERTY));
+		if (affinity != null) {
+			if (allowedProcessors == null)
+				allowedProcessors = affinity;
+			else
+				allowedProcessors.retainAll(affinity);
+		}
+		
+		return new CPULimits(quota, allowedProcessors);
+	}
+	
+	/**
+	 * @return the number of cores this process can use according to its CPU quota, -1 if not limited
+	 */
+	public double getQuota() {
+		return quota;
+	}
+	
+	/**
+	 * @param processor
+	 * @return true if this process can run on the given processor
+	 */
+	public boolean isAllowed(int processor) {
+		return allowedProcessors == null || allowedProcessors.contains(processor);
+	}
+	
+	@Override
+	public boolean equals(Object obj) {
+		if (!(obj instanceof CPULimits))
+			return false;
+		CPULimits other = (CPULimits)obj;
+		return quota == other.quota &&
+			(allowedProcessors == null ? other.allowedProcessors == null : allowedProcessors.equals(other.allowedProcessors));
+	}
+	
+	@Override
+	public int hashCode() {
+		return (int)Double.doubleToLongBits(quota) ^ (allowedProcessors == null ? 0 : allowedProcessors.hashCode());
+	}
+	
+	@Override
+	public String toString() {
+		return "quota: " + (quota < 0 ? "none" : quota + " cores") + ", allowed processors: " + (allowedProcessors == null ? "all" : allowedProcessors);
+	}
+	
+	/**
+	 * @return the lines of /proc/self/cgroup as [hierarchy id, controllers, path]
+	 */
+	private static List<String[]> readCgroups() {
+		List<String[]> cgroups = new ArrayList<String[]>();
+		BufferedReader br = null;
+		try {
+			br = new BufferedReader(new FileReader(CGROUP_FILE));
+			String line = null;
+			while ((line = br.readLine()) != null) {
+				String[] fields = line.split(":", 3);
+				if (fields.length == 3)
+					cgroups.add(fields);
+			}
+		} catch (Exception e) {
+			// not on Linux, no limit
+		} finally {
+			close(br);
+		}
+		return cgroups;
+	}
+	
+	/**
+	 * @param cgroups
+	 * @param controller the empty string for the v2 hierarchy
+	 * @return the path of the cgroup of this process for the given controller, null if there is none
+	 */
+	private static String getCgroupPath(List<String[]> cgroups, String controller) {
+		for (String[] cgroup : cgroups) {
+			if (controller.isEmpty()) {
+				if (cgroup[0].equals("0") && cgroup[1].isEmpty())
+					return cgroup[2];
+			} else {
+				for (String c : cgroup[1].split(","))
+					if (c.equals(controller))
+						return cgroup[2];
+			}
+		}
+		return null;
+	}
+	
+	/**
+	 * in a container the cgroup of the process is usually mounted as the root of the hierarchy, so the root is tried when the full path doesn't exist
+	 * @param root
+	 * @param path
+	 * @param fileName
+	 * @return the first line of the file, null if it cannot be read
+	 */
+	private static String readFirstLine(String root, String path, String fileName) {
+		File file = new File(root + path, fileName);
+		if (!file.canRead())
+			file = new File(root, fileName);
+		if (!file.canRead())
+			return null;
+		BufferedReader br = null;
+		try {
+			br = new BufferedReader(new FileReader(file));
+			return br.readLine();
+		} catch (Exception e) {
+			return null;
+		} finally {
+			close(br);
+		}
+	}
+	
+	private static String readProperty(String fileName, String property) {
+		BufferedReader br = null;
+		try {
+			br = new BufferedReader(new FileReader(fileName));
+			String line = null;
+			while ((line = br.readLine()) != null)
+				if (line.startsWith(property + ":"))
+					return line.substring(line.indexOf(':') + 1).trim();
+		} catch (Exception e) {
+			// not available
+		} finally {
+			close(br);
+		}
+		return null;
+	}
+	
+	/**
+	 * @param quota
+	 * @param period
+	 * @return the number of cores the given quota per period amounts to, -1 if not limited or not valid
+	 */
+	private static double parseQuota(String quota, String period) {
+		try {
+			double quotaValue = Double.parseDouble(quota);
+			double periodValue = Double.parseDouble(period);
+			if (quotaValue > 0 && periodValue > 0)
+				return quotaValue / periodValue;
+		} catch (NumberFormatException e) {
+			// not valid, no limit
+		}
+		return -1;
+	}
+	
+	/**
+	 * @param list a list of processors, such as 0-3,8,10-11
+	 * @return the set of processors in the list, null if the list is not available or not valid
+	 */
+	static Set<Integer> parseList(String list) {
+		if (list == null || list.trim().isEmpty())
+			return null;
+		Set<Integer> processors = new HashSet<Integer>();
+		try {
+			for (String item : list.trim().split(",")) {
+				int index = item.indexOf('-');
+				if (index > 0) {
+					int first = Integer.parseInt(item.substring(0, index).trim());
+					int last = Integer.parseInt(item.substring(index + 1).trim());
+					for (int i = first; i <= last; i++)
+						processors.add(i);
+				} else
+					processors.add(Integer.parseInt(item.trim()));
+			}
+		} catch (NumberFormatException e) {
+			return null; // not valid, no limit
+		}
+		return processors;
+	}
+	
+	private static void close(BufferedReader br) {
+		try {
+			if (br != null)
+				br.close();
+		} catch (Exception e) {
+			// nothing to do
+		}
+	}
+}
@@ -8,12 +8,38 @@ public class CoreInfo {
 
 	private final int id;
 	private final String modelName;
-	private final long speed;
+	private final long currentSpeed;
+	private final long nominalSpeed;
+	private final long maxSpeed;
+	private String physicalCore; // processors sharing a physical core (SMT siblings) have the same physical core
+	private String coreType; // performance or efficiency on hybrid processors, null otherwise
+	private double relativeCapacity; // work per cycle wrt the most capable core of the node
 	
 	public CoreInfo(int id, String modelName, long speed) {
+		this(id, modelName, speed, speed, speed);
+	}
+	
+	/**
+	 * @param id
+	 * @param modelName
+	 * @param currentSpeed in Hz, as reported when the core was inspected, it varies with frequency scaling
+	 * @param nominalSpeed in Hz, the base frequency of the core
+	 * @param maxSpeed in Hz, the highest frequency the core can reach
+	 */
+	public CoreInfo(int id, String modelName, long currentSpeed, long nominalSpeed, long maxSpeed) {
 		this.id = id;
 		this.modelName = modelName;
-		this.speed = speed;
+		this.currentSpeed = currentSpeed;
+		this.nominalSpeed = nominalSpeed;
+		this.maxSpeed = maxSpeed;
+		this.physicalCore = "" + id;
+		this.relativeCapacity = 1;
+	}
+	
+	void setTopology(String physicalCore, String coreType, double relativeCapacity) {
+		this.physicalCore = physicalCore;
+		this.coreType = coreType;
+		this.relativeCapacity = relativeCapacity;
 	}
 
 	public int getId() {
@@ -24,12 +50,46 @@ public class CoreInfo {
 		return modelName;
 	}
 
+	/**
+	 * @return the nominal speed of the core in Hz, it doesn't change with frequency scaling
+	 * so that loads and capacities measured on distinct nodes and at distinct moments are comparable
+	 */
 	public long getSpeed() {
-		return speed;
+		return nominalSpeed;
+	}
+	
+	public long getCurrentSpeed() {
+		return currentSpeed;
+	}
+	
+	public long getMaxSpeed() {
+		return maxSpeed;
+	}
+	
+	/**
+	 * @return the identifier of the physical core this processor belongs to, shared by its SMT siblings
+	 */
+	public String getPhysicalCore() {
+		return physicalCore;
+	}
+	
+	/**
+	 * @return performance or efficiency on hybrid processors, null otherwise
+	 */
+	public String getCoreType() {
+		return coreType;
+	}
+	
+	/**
+	 * @return the work carried out per cycle by this core wrt the most capable core of the node, 1 on non-hybrid processors
+	 */
+	public double getRelativeCapacity() {
+		return relativeCapacity;
 	}
 	
 	@Override
 	public String toString() {
-		return "ID: " + id + ", model: " + modelName + ", speed: " + speed + " Hz";
+		return "ID: " + id + ", model: " + modelName + ", speed: " + nominalSpeed + " Hz (current: " + currentSpeed + " Hz, max: " + maxSpeed + " Hz)" +
+			", physical core: " + physicalCore + (coreType != null ? ", type: " + coreType : "") + (relativeCapacity != 1 ? ", relative capacity: " + relativeCapacity : "");
 	}
 }
@@ -0,0 +1,95 @@
+package cpuinfo;
+
+import java.io.BufferedReader;
+import java.io.FileReader;
+
+/**
+ * measures the CPU usage of the whole host from /proc/stat, between two consecutive samples,
+ * including the time stolen by the hypervisor; only the processors this process can use are considered
+ */
+public class HostLoad {
+	
+	private static final String STAT_FILE = "/proc/stat";
+	
+	// columns of a cpu line of /proc/stat, in jiffies
+	private static final int IDLE = 3;
+	private static final int IOWAIT = 4;
+	private static final int STEAL = 7;
+	private static final int COLUMNS = 8; // user nice system idle iowait irq softirq steal, guest time is already included in user
+	
+	private long lastTotal;
+	private long lastIdle;
+	private long lastSteal;
+	
+	private float busyFraction;
+	private float stealFraction;
+	
+	public HostLoad() {
+		lastTotal = -1;
+	}
+	
+	/**
+	 * reads /proc/stat and updates the fractions of time spent busy and stolen since the previous sample
+	 * @return false if /proc/stat cannot be read or this is the first sample
+	 */
+	public boolean sample() {
+		long total = 0;
+		long idle = 0;
+		long steal = 0;
+		CPULimits limits = CPUInfo.getInstance().getLimits();
+		BufferedReader br = null;
+		try {
+			br = new BufferedReader(new FileReader(STAT_FILE));
+			String line = null;
+			while ((line = br.readLine()) != null) {
+				if (!line.startsWith("cpu") || line.startsWith("cpu "))
+					continue;
+				String[] fields = line.trim().split("\\s+");
+				if (!limits.isAllowed(Integer.parseInt(fields[0].substring(3))))
+					continue;
+				for (int i = 0; i < COLUMNS && i + 1 < fields.length; i++) {
+					long value = Long.parseLong(fields[i + 1]);
+					total += value;
+					if (i == IDLE || i == IOWAIT)
+						idle += value;
+					else if (i == STEAL)
+						steal += value;
+				}
+			}
+		} catch (Exception e) {
+			return false;
+		} finally {
+			try {
+				if (br != null)
+					br.close();
+			} catch (Exception e) {
+				// nothing to do
+			}
+		}
+		
+		boolean sampled = lastTotal >= 0 && total > lastTotal;
+		if (sampled) {
+			long elapsed = total - lastTotal;
+			stealFraction = (float)(steal - lastSteal) / elapsed;
+			busyFraction = (float)(elapsed - (idle - lastIdle) - (steal - lastSteal)) / elapsed;
+		}
+		lastTotal = total;
+		lastIdle = idle;
+		lastSteal = steal;
+		return sampled;
+	}
+	
+	/**
+	 * @return the fraction of time the processors have been running something, Storm included, between the last two samples
+	 */
+	public float getBusyFraction() {
+		return busyFraction;
+	}
+	
+	/**
+	 * @return the fraction of time the hypervisor has given the processors to other virtual machines between the last two samples
+	 */
+	public float getStealFraction() {
+		return stealFraction;
+	}
+}
@@ -0,0 +1,309 @@
+/*******************************************************************************
+* Copyright (c) 2013 Leonardo Aniello, Roberto Baldoni, Leonardo Querzoni.
+* All rights reserved. This program and the accompanying materials
+* are made available under the terms of the Eclipse Public License v1.0
+* which accompanies this distribution, and is available at
+* http://www.eclipse.org/legal/epl-v10.html
+*
+* Contributors:
+* Leonardo Aniello, Roberto Baldoni, Leonardo Querzoni
+*******************************************************************************/
+package storm.scheduler;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.log4j.Logger;
+
+/**
+ * searches by branch and bound the assignment of the executors of a topology to its slots that minimizes inter-slot traffic;
+ * meant for small topologies, where the search can complete within a short time limit
+ * @author Leonardo
+ *
+ */
+public class BranchAndBoundAssigner {
+	
+	/**
+	 * number of explored nodes of the search tree between two checks of the time limit
+	 */
+	private static final int TIME_CHECK_INTERVAL = 1024;
+	
+	private final Topology topology;
+	private final List<Slot> slotList;
+	private Logger logger;
+	
+	/**
+	 * executors to assign, sorted by total traffic descending
+	 */
+	private Executor[] executors;
+	private ResourceVector[] demands;
+	private boolean[] contended;
+	
+	/**
+	 * executor index -> executor index -> traffic exchanged in both directions
+	 */
+	private long[][] traffic;
+	
+	private int slotCount;
+	private int slotsToUse;
+	
+	/*
+	 * current partial assignment
+	 */
+	private int[] slotOf; // executor index -> slot index, -1 if not assigned yet
+	private int[] slotSize;
+	private ResourceVector[] slotResources;
+	private int[] slotContendedCount;
+	private int usedSlotCount;
+	private long[][] connection; // executor index -> slot index -> traffic towards the executors assigned to that slot
+	private long[] totalConnection; // executor index -> traffic towards the executors assigned so far
+	
+	private int[] bestSlotOf;
+	private long bestCost; // sums of traffic in bytes would overflow an int
+	
+	private long deadline;
+	private long exploredNodes;
+	private boolean timeout;
+	
+	public BranchAndBoundAssigner(Topology topology) {
+		this.topology = topology;
+		slotList = topology.getSlots();
+		logger = Logger.getLogger(BranchAndBoundAssigner.class);
+		
+		// collect the executors and their traffic
+		List<ExecutorPair> executorPairList = topology.getTrafficManager().getInterExecutorTrafficList();
+		Map<Executor, Integer> indexMap = new HashMap<Executor, Integer>();
+		List<Executor> executorList = new ArrayList<Executor>();
+		for (ExecutorPair pair : executorPairList) {
+			if (!indexMap.containsKey(pair.getSource())) {
+				indexMap.put(pair.getSource(), executorList.size());
+				executorList.add(pair.getSource());
+			}
+			if (!indexMap.containsKey(pair.getDestination())) {
+				indexMap.put(pair.getDestination(), executorList.size());
+				executorList.add(pair.getDestination());
+			}
+		}
+		int n = executorList.size();
+		long[][] unsortedTraffic = new long[n][n];
+		long[] totalTraffic = new long[n];
+		for (ExecutorPair pair : executorPairList) {
+			int i = indexMap.get(pair.getSource());
+			int j = indexMap.get(pair.getDestination());
+			if (i != j) {
+				unsortedTraffic[i][j] += pair.getTraffic();
+				unsortedTraffic[j][i] += pair.getTraffic();
+				totalTraffic[i] += pair.getTraffic();
+				totalTraffic[j] += pair.getTraffic();
+			}
+		}
+		
+		// the most communicating executors are assigned first, so that the bound gets tight early
+		Integer[] order = new Integer[n];
+		for (int i = 0; i < n; i++)
+			order[i] = i;
+		for (int i = 1; i < n; i++)
+			for (int j = i; j > 0 && totalTraffic[order[j]] > totalTraffic[order[j - 1]]; j--) {
+				Integer tmp = order[j];
+				order[j] = order[j - 1];
+				order[j - 1] = tmp;
+			}
+		executors = new Executor[n];
+		demands = new ResourceVector[n];
+		contended = new boolean[n];
+		traffic = new long[n][n];
+		for (int i = 0; i < n; i++) {
+			executors[i] = executorList.get(order[i]);
+			demands[i] = executors[i].getResources();
+			contended[i] = topology.isContended(executors[i]);
+			for (int j = 0; j < n; j++)
+				traffic[i][j] = unsortedTraffic[order[i]][order[j]];
+		}
+		
+		slotCount = slotList.size();
+		slotsToUse = Math.min(slotCount, n);
+	}
+	
+	/**
+	 * @return the number of executors to assign
+	 */
+	public int getExecutorCount() {
+		return executors.length;
+	}
+	
+	/**
+	 * Looks for the assignment with minimal inter-slot traffic, using the current one (typically computed by the greedy heuristic) as the initial upper bound.
+	 * The current assignment is replaced only if a better one is found; when the time limit expires before the search is complete,
+	 * the best assignment found so far is kept, which is the greedy one if nothing better has been found.
+	 * @param timeLimit in ms
+	 * @return true if the resulting assignment is proven to be optimal
+	 */
+	public boolean assign(long timeLimit) {
+		int n = executors.length;
+		slotOf = new int[n];
+		slotSize = new int[slotCount];
+		slotResources = new ResourceVector[slotCount];
+		for (int s = 0; s < slotCount; s++)
+			slotResources[s] = new ResourceVector();
+		slotContendedCount = new int[slotCount];
+		usedSlotCount = 0;
+		connection = new long[n][slotCount];
+		totalConnection = new long[n];
+		for (int i = 0; i < n; i++)
+			slotOf[i] = -1;
+		
+		bestSlotOf = null;
+		bestCost = getCurrentCost();
+		long initialCost = bestCost;
+		logger.debug("Inter-slot traffic of the current assignment for topology " + topology.getTopologyID() + ": " + initialCost + " tuple/s");
+		
+		deadline = System.currentTimeMillis() + timeLimit;
+		exploredNodes = 0;
+		timeout = false;
+		search(0, 0);
+		logger.info("Branch and bound for topology " + topology.getTopologyID() + " explored " + exploredNodes + " nodes" + (timeout ? " before running out of time" : ""));
+		
+		if (bestSlotOf != null) {
+			logger.info("Found an assignment with inter-slot traffic " + bestCost + " tuple/s, while the current one has " + initialCost + " tuple/s");
+			for (Executor executor : executors) {
+				Slot slot = topology.getSlot(executor);
+				if (slot != null)
+					slot.remove(executor);
+			}
+			for (int i = 0; i < n; i++)
+				slotList.get(bestSlotOf[i]).assign(executors[i]);
+		} else {
+			logger.info("No assignment better than the current one has been found");
+		}
+		return !timeout;
+	}
+	
+	/**
+	 * @return the inter-slot traffic of the current assignment, or Long.MAX_VALUE if some executor is not assigned
+	 */
+	private long getCurrentCost() {
+		int n = executors.length;
+		int[] currentSlotOf = new int[n];
+		for (int i = 0; i < n; i++) {
+			Slot slot = topology.getSlot(executors[i]);
+			if (slot == null)
+				return Long.MAX_VALUE;
+			currentSlotOf[i] = slotList.indexOf(slot);
+		}
+		long cost = 0;
+		for (int i = 0; i < n; i++)
+			for (int j = i + 1; j < n; j++)
+				if (currentSlotOf[i] != currentSlotOf[j])
+					cost += traffic[i][j];
+		return cost;
+	}
+	
+	private void search(int index, long cost) {
+		if (timeout)
+			return;
+		if (++exploredNodes % TIME_CHECK_INTERVAL == 0 && System.currentTimeMillis() > deadline) {
+			timeout = true;
+			return;
+		}
+		
+		int n = executors.length;
+		if (index == n) {
+			if (cost < bestCost) {
+				bestCost = cost;
+				bestSlotOf = slotOf.clone();
+			}
+			return;
+		}
+		
+		long bound = getLowerBound(index);
+		if (bound == Long.MAX_VALUE || cost + bound >= bestCost)
+			return;
+		
+		// slots still empty that must get at least one of the remaining executors
+		int slotsToFill = slotsToUse - usedSlotCount;
+		int remaining = n - index;
+		
+		/*
+		 * slots are interchangeable, so an executor can go to any used slot or to the first empty one;
+		 * the used slots it communicates with the most are tried first
+		 */
+		int candidateCount = Math.min(usedSlotCount + 1, slotCount);
+		boolean[] tried = new boolean[candidateCount];
+		for (int c = 0; c < candidateCount; c++) {
+			int slot = -1;
+			for (int s = 0; s < candidateCount; s++)
+				if (!tried[s] && (slot == -1 || connection[index][s] > connection[index][slot]))
+					slot = s;
+			tried[slot] = true;
+			
+			if (!canAccept(slot, index))
+				continue;
+			if (slot < usedSlotCount && remaining - 1 < slotsToFill)
+				continue;
+			
+			long delta = totalConnection[index] - connection[index][slot];
+			place(index, slot);
+			search(index + 1, cost + delta);
+			unplace(index, slot);
+			if (timeout)
+				return;
+		}
+	}
+	
+	/**
+	 * each executor not assigned yet will add at least the traffic towards the assigned executors that are not in the slot it is going to be assigned to
+	 * @param index
+	 * @return a lower bound of the inter-slot traffic still to be added when assigning executors from index on, Long.MAX_VALUE if some executor cannot be assigned
+	 */
+	private long getLowerBound(int index) {
+		long bound = 0;
+		int candidateCount = Math.min(usedSlotCount + 1, slotCount);
+		for (int i = index; i < executors.length; i++) {
+			long maxConnection = -1;
+			for (int s = 0; s < candidateCount; s++)
+				if (canAccept(s, i) && connection[i][s] > maxConnection)
+					maxConnection = connection[i][s];
+			if (maxConnection == -1)
+				return Long.MAX_VALUE; // executor i cannot be assigned anywhere
+			bound += totalConnection[i] - maxConnection;
+		}
+		return bound;
+	}
+	
+	private boolean canAccept(int slot, int executor) {
+		return
+			slotSize[slot] < topology.getMaxExecutorsPerSlot() &&
+			slotResources[slot].canFit(demands[executor], topology.getSlotCapacity()) &&
+			(!contended[executor] || !topology.isSpreadingContendedExecutors() || slotContendedCount[slot] == 0);
+	}
+	
+	private void place(int executor, int slot) {
+		slotOf[executor] = slot;
+		if (slotSize[slot] == 0)
+			usedSlotCount++;
+		slotSize[slot]++;
+		slotResources[slot].add(demands[executor]);
+		if (contended[executor])
+			slotContendedCount[slot]++;
+		for (int j = executor + 1; j < executors.length; j++) {
+			connection[j][slot] += traffic[executor][j];
+			totalConnection[j] += traffic[executor][j];
+		}
+	}
+	
+	private void unplace(int executor, int slot) {
+		slotOf[executor] = -1;
+		slotSize[slot]--;
+		if (slotSize[slot] == 0)
+			usedSlotCount--;
+		slotResources[slot].subtract(demands[executor]);
+		if (contended[executor])
+			slotContendedCount[slot]--;
+		for (int j = executor + 1; j < executors.length; j++) {
+			connection[j][slot] -= traffic[executor][j];
+			totalConnection[j] -= traffic[executor][j];
+		}
+	}
+}
@@ -0,0 +1,74 @@
+/*******************************************************************************
+* Copyright (c) 2013 Leonardo Aniello, Roberto Baldoni, Leonardo Querzoni.
+* All rights reserved. This program and the accompanying materials
+* are made available under the terms of the Eclipse Public License v1.0
+* which accompanies this distribution, and is available at
+* http://www.eclipse.org/legal/epl-v10.html
+*
+* Contributors:
+* Leonardo Aniello, Roberto Baldoni, Leonardo Querzoni
+*******************************************************************************/
+package storm.scheduler;
+
+/**
+ * pair of components exchanging tuples on a stream, used to aggregate the traffic between tasks that are not heavy hitters
+ * @author Leonardo
+ *
+ */
+public class ComponentPair {
+	
+	private final String sourceComponentId;
+	private final String destinationComponentId;
+	private final String streamId;
+	private final String toString;
+	
+	public ComponentPair(String sourceComponentId, String destinationComponentId, String streamId) {
+		this.sourceComponentId = sourceComponentId;
+		this.destinationComponentId = destinationComponentId;
+		this.streamId = streamId;
+		toString = "[" + sourceComponentId + "->" + destinationComponentId + " (" + streamId + ")]";
+	}
+	
+	public String getSourceComponentId() {
+		return sourceComponentId;
+	}
+	
+	public String getDestinationComponentId() {
+		return destinationComponentId;
+	}
+	
+	public String getStreamId() {
+		return streamId;
+	}
+	
+	@Override
+	public String toString() {
+		return toString;
+	}
+	
+	@Override
+	public int hashCode() {
+		final int prime = 31;
+		int result = 1;
+		result = prime * result + ((destinationComponentId == null) ? 0 : destinationComponentId.hashCode());
+		result = prime * result + ((sourceComponentId == null) ? 0 : sourceComponentId.hashCode());
+		result = prime * result + ((streamId == null) ? 0 : streamId.hashCode());
+		return result;
+	}
+	
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj)
+			return true;
+		if (obj == null || getClass() != obj.getClass())
+			return false;
+		ComponentPair other = (ComponentPair) obj;
+		return equals(sourceComponentId, other.sourceComponentId) &&
+			equals(destinationComponentId, other.destinationComponentId) &&
+			equals(streamId, other.streamId);
+	}
+	
+	private static boolean equals(String s1, String s2) {
+		return (s1 == null) ? s2 == null : s1.equals(s2);
+	}
+}
@@ -0,0 +1,168 @@
+/*******************************************************************************
+* Copyright (c) 2013 Leonardo Aniello, Roberto Baldoni, Leonardo Querzoni.
+* All rights reserved. This program and the accompanying materials
+* are made available under the terms of the Eclipse Public License v1.0
+* which accompanies this distribution, and is available at
+* http://www.eclipse.org/legal/epl-v10.html
+*
+* Contributors:
+* Leonardo Aniello, Roberto Baldoni, Leonardo Querzoni
+*******************************************************************************/
+package storm.scheduler;
+
+import java.util.Map;
+
+/**
+ * weights the traffic according to the level it flows through:
+ * tuples exchanged within a slot (no serialization) cost intraSlotCost, tuples exchanged by distinct slots of the same node
+ * (serialization over loopback) cost interSlotCost, or interNumaCost when the slots are bound to distinct NUMA nodes (cross-socket memory traffic),
+ * tuples exchanged by distinct nodes (serialization over the network) cost interNodeCost;
+ * costs are either configured or measured, in the latter case they are read from the DB
+ * @author Leonardo
+ *
+ */
+public class CostModel {
+	
+	public static final String INTRA_SLOT = "intra-slot";
+	public static final String INTER_SLOT = "inter-slot";
+	public static final String INTER_NUMA = "inter-numa";
+	public static final String INTER_NODE = "inter-node";
+	
+	private static final float DEFAULT_INTRA_SLOT_COST = 0;
+	private static final float DEFAULT_INTER_SLOT_COST = 0.1f;
+	private static final float DEFAULT_INTER_NODE_COST = 1;
+	
+	private float intraSlotCost;
+	private float interSlotCost;
+	private float interNumaCost;
+	private float interNodeCost;
+	private final boolean measured;
+	
+	/**
+	 * @param conf the configuration of nimbus, as the costs apply to all the topologies
+	 */
+	public CostModel(Map<?, ?> conf) {
+		if (conf.get(Utils.INTRA_SLOT_COST) != null)
+			intraSlotCost = Float.parseFloat(conf.get(Utils.INTRA_SLOT_COST).toString());
+		else
+			intraSlotCost = DEFAULT_INTRA_SLOT_COST;
+		
+		if (conf.get(Utils.INTER_SLOT_COST) != null)
+			interSlotCost = Float.parseFloat(conf.get(Utils.INTER_SLOT_COST).toString());
+		else
+			interSlotCost = DEFAULT_INTER_SLOT_COST;
+		
+		// by default, the NUMA tier is not taken into account
+		if (conf.get(Utils.INTER_NUMA_COST) != null)
+			interNumaCost = Float.parseFloat(conf.get(Utils.INTER_NUMA_COST).toString());
+		else
+			interNumaCost = interSlotCost;
+		
+		if (conf.get(Utils.INTER_NODE_COST) != null)
+			interNodeCost = Float.parseFloat(conf.get(Utils.INTER_NODE_COST).toString());
+		else
+			interNodeCost = DEFAULT_INTER_NODE_COST;
+		
+		measured = conf.get(Utils.MEASURED_COSTS) != null && Boolean.parseBoolean(conf.get(Utils.MEASURED_COSTS).toString());
+		check();
+	}
+	
+	/**
+	 * replaces the configured costs with the measured ones; levels with no measure keep the configured cost
+	 * @param costMap level -> measured cost of a tuple
+	 */
+	public void setMeasuredCosts(Map<String, Float> costMap) {
+		if (costMap.get(INTRA_SLOT) != null)
+			intraSlotCost = costMap.get(INTRA_SLOT);
+		if (costMap.get(INTER_SLOT) != null)
+			interSlotCost = costMap.get(INTER_SLOT);
+		if (costMap.get(INTER_NUMA) != null)
+			interNumaCost = costMap.get(INTER_NUMA);
+		else if (interNumaCost < interSlotCost)
+			interNumaCost = interSlotCost;
+		if (costMap.get(INTER_NODE) != null)
+			interNodeCost = costMap.get(INTER_NODE);
+		check();
+	}
+	
+	private void check() {
+		if (intraSlotCost < 0)
+			throw new RuntimeException("Wrong intra-slot cost: " + intraSlotCost);
+		if (interSlotCost < intraSlotCost)
+			throw new RuntimeException("Wrong inter-slot cost: " + interSlotCost + ", expected not lower than intra-slot cost " + intraSlotCost);
+		if (interNumaCost < interSlotCost)
+			throw new RuntimeException("Wrong inter-NUMA cost: " + interNumaCost + ", expected not lower than inter-slot cost " + interSlotCost);
+		if (interNodeCost < interNumaCost)
+			throw new RuntimeException("Wrong inter-node cost: " + interNodeCost + ", expected not lower than inter-NUMA cost " + interNumaCost);
+	}
+	
+	/**
+	 * @param traffic in tuple/s
+	 * @param sameSlot
+	 * @param sameNode
+	 * @return the cost of the given traffic, exchanged by two executors placed as specified
+	 */
+	public double getCost(int traffic, boolean sameSlot, boolean sameNode) {
+		if (sameSlot)
+			return traffic * intraSlotCost;
+		if (sameNode)
+			return traffic * interSlotCost;
+		return traffic * interNodeCost;
+	}
+	
+	/**
+	 * @param intraSlotTraffic in tuple/s
+	 * @param interSlotTraffic in tuple/s, only between slots of the same node
+	 * @param interNodeTraffic in tuple/s
+	 * @return the overall cost of the given traffic
+	 */
+	public double getCost(long intraSlotTraffic, long interSlotTraffic, long interNodeTraffic) {
+		return getCost(intraSlotTraffic, interSlotTraffic, 0, interNodeTraffic);
+	}
+	
+	/**
+	 * @param intraSlotTraffic in tuple/s
+	 * @param interSlotTraffic in tuple/s, only between slots of the same node bound to the same NUMA node
+	 * @param interNumaTraffic in tuple/s, only between slots of the same node bound to distinct NUMA nodes
+	 * @param interNodeTraffic in tuple/s
+	 * @return the overall cost of the given traffic
+	 */
+	public double getCost(long intraSlotTraffic, long interSlotTraffic, long interNumaTraffic, long interNodeTraffic) {
+		return intraSlotTraffic * intraSlotCost + interSlotTraffic * interSlotCost + interNumaTraffic * interNumaCost + interNodeTraffic * interNodeCost;
+	}
+	
+	/**
+	 * @return true if slots of the same node bound to distinct NUMA nodes cost more than slots bound to the same NUMA node
+	 */
+	public boolean isNumaAware() {
+		return interNumaCost > interSlotCost;
+	}
+	
+	/**
+	 * @return true if the costs have to be read from the DB
+	 */
+	public boolean isMeasured() {
+		return measured;
+	}
+	
+	public float getIntraSlotCost() {
+		return intraSlotCost;
+	}
+	
+	public float getInterSlotCost() {
+		return interSlotCost;
+	}
+	
+	public float getInterNumaCost() {
+		return interNumaCost;
+	}
+	
+	public float getInterNodeCost() {
+		return interNodeCost;
+	}
+	
+	@Override
+	public String toString() {
+		return "{intra-slot cost: " + intraSlotCost + ", inter-slot cost: " + interSlotCost + ", inter-NUMA cost: " + interNumaCost + ", inter-node cost: " + interNodeCost + "}";
+	}
+}
@@ -32,6 +32,7 @@ import org.apache.commons.pool.ObjectPool;
 import org.apache.commons.pool.impl.GenericObjectPool;
 import org.apache.log4j.Logger;
 
+import cpuinfo.CPUBenchmark;
 import cpuinfo.CPUInfo;
 
 public class DataManager {
@@ -42,6 +43,9 @@ public class DataManager {
 	private Logger logger;
 	private String nodeName;
 	private int capacity; // the capacity of a node, expressed in percentage wrt the total speed
+	private double performanceFactor; // work carried out by a cycle of this node wrt a reference cycle, loads are stored in reference cycles
+	private long ioCapacity; // bytes per second the storage of a node can sustain, 0 if not limited
+	private long networkCapacity; // bytes per second the network interfaces of a node can sustain, 0 if not limited
 	private static DateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss");
 	
 	private DataManager() {
@@ -79,6 +83,23 @@ public class DataManager {
 				if (capacity < 1 || capacity > 100)
 					throw new RuntimeException("Wrong capacity: " + capacity + ", expected in the range [1, 100]");
 			}
+			if (properties.getProperty("performance.factor") != null) {
+				performanceFactor = Double.parseDouble(properties.getProperty("performance.factor"));
+				if (performanceFactor <= 0)
+					throw new RuntimeException("Wrong performance factor: " + performanceFactor + ", expected greater than 0");
+			}
+			if (properties.getProperty("io.capacity") != null) {
+				ioCapacity = Long.parseLong(properties.getProperty("io.capacity"));
+				if (ioCapacity < 0)
+					throw new RuntimeException("Wrong I/O capacity: " + ioCapacity + ", expected not lower than 0");
+			}
+			if (properties.getProperty("network.capacity") != null) {
+				networkCapacity = Long.parseLong(properties.getProperty("network.capacity"));
+				if (networkCapacity < 0)
+					throw new RuntimeException("Wrong network capacity: " + networkCapacity + ", expected not lower than 0");
+			}
+			if (properties.getProperty("smt.yield") != null)
+				CPUInfo.getInstance().setSmtYield(Double.parseDouble(properties.getProperty("smt.yield")));
 			
 			logger.info("DataManager started");
 		} catch (Exception e) {
@@ -186,19 +207,32 @@ public class DataManager {
 		return totalLoad;
 	}
 	
-	public void storeLoad(String stormId, int beginTask, int endTask, long load) throws Exception {
+	/**
+	 * stores the load of an executor
+	 * @param stormId
+	 * @param beginTask
+	 * @param endTask
+	 * @param load in CPU cycles per second of this node, stored in reference cycles per second
+	 * @param utilization fraction of time spent in execute(), that is the pressure on the input queue of the executor
+	 * @param allocationRate bytes allocated per second by the executor
+	 * @param ioRate bytes per second read from and written to storage by the executor
+	 * @param port of the worker the executor runs in
+	 * @throws Exception
+	 */
+	public void storeLoad(String stormId, int beginTask, int endTask, long load, float utilization, long allocationRate, long ioRate, int port) throws Exception {
 		Connection connection = null;
 		Statement statement = null;
-		logger.debug("Going to store load stat (topology: " + stormId + ", executor: [" + beginTask + ", " + endTask + "], load: " + load + " CPU cycles per second)");
+		load = (long)(load * getPerformanceFactor());
+		logger.debug("Going to store load stat (topology: " + stormId + ", executor: [" + beginTask + ", " + endTask + "], load: " + load + " reference CPU cycles per second, utilization: " + utilization + ", allocation rate: " + allocationRate + " bytes per second, disk I/O: " + ioRate + " bytes per second)");
 		try {
 			connection = getConnection();
 			statement = connection.createStatement();
 			
-			String sql = "update `load` set `load` = " + load + ", node = '" + nodeName + "' where topology_id = " + getTopologyId(stormId) + " and begin_task = " + beginTask + " and end_task = " + endTask;
+			String sql = "update `load` set `load` = " + load + ", utilization = " + utilization + ", allocation_rate = " + allocationRate + ", io_rate = " + ioRate + ", node = '" + nodeName + "', port = " + port + " where topology_id = " + getTopologyId(stormId) + " and begin_task = " + beginTask + " and end_task = " + endTask;
 			logger.debug("SQL script: " + sql);
 			if (statement.executeUpdate(sql) == 0) {
-				sql = "insert into `load`(topology_id, begin_task, end_task, `load`, node) " +
-					"values(" + getTopologyId(stormId) + ", " + beginTask + ", " + endTask + ", " + load + ", '" + nodeName + "')";
+				sql = "insert into `load`(topology_id, begin_task, end_task, `load`, utilization, allocation_rate, io_rate, node, port) " +
+					"values(" + getTopologyId(stormId) + ", " + beginTask + ", " + endTask + ", " + load + ", " + utilization + ", " + allocationRate + ", " + ioRate + ", '" + nodeName + "', " + port + ")";
 				logger.debug("SQL script: " + sql);
 				statement.executeUpdate(sql);
 			}
@@ -213,6 +247,131 @@ public class DataManager {
 		}
 	}
 	
+	/**
+	 * stores the contention stats of an executor, whose load has already been stored
+	 * @param stormId
+	 * @param beginTask
+	 * @param endTask
+	 * @param blockedFraction fraction of time spent blocked waiting to enter a monitor
+	 * @param blockedRate times per second the executor has been blocked
+	 * @param waitedFraction fraction of time spent waiting, the time spent waiting for tuples included
+	 * @param waitedRate times per second the executor has waited
+	 * @throws Exception
+	 */
+	public void storeContention(String stormId, int beginTask, int endTask, float blockedFraction, float blockedRate, float waitedFraction, float waitedRate) throws Exception {
+		Connection connection = null;
+		Statement statement = null;
+		try {
+			connection = getConnection();
+			statement = connection.createStatement();
+			String sql = "update `load` set blocked = " + blockedFraction + ", blocked_rate = " + blockedRate + ", waited = " + waitedFraction + ", waited_rate = " + waitedRate +
+				" where topology_id = " + getTopologyId(stormId) + " and begin_task = " + beginTask + " and end_task = " + endTask;
+			logger.debug("SQL script: " + sql);
+			statement.executeUpdate(sql);
+		} catch (Exception e) {
+			logger.error("An error occurred storing a contention stat", e);
+			throw e;
+		} finally {
+			if (statement != null)
+				statement.close();
+			if (connection != null)
+				connection.close();
+		}
+	}
+	
+	/**
+	 * @param stormId
+	 * @param beginTask
+	 * @param endTask
+	 * @param heapSize bytes of heap retained by the executor
+	 * @throws Exception
+	 */
+	public void storeHeap(String stormId, int beginTask, int endTask, long heapSize) throws Exception {
+		Connection connection = null;
+		Statement statement = null;
+		try {
+			connection = getConnection();
+			statement = connection.createStatement();
+			String sql = "update `load` set heap = " + heapSize +
+				" where topology_id = " + getTopologyId(stormId) + " and begin_task = " + beginTask + " and end_task = " + endTask;
+			logger.debug("SQL script: " + sql);
+			statement.executeUpdate(sql);
+		} catch (Exception e) {
+			logger.error("An error occurred storing a heap stat", e);
+			throw e;
+		} finally {
+			if (statement != null)
+				statement.close();
+			if (connection != null)
+				connection.close();
+		}
+	}
+	
+	/**
+	 * stores the CPU cycles per second this node is busy or stolen by the hypervisor, whoever uses them;
+	 * the part not due to Storm executors is the external load the scheduler subtracts from the capacity of the node
+	 * @param hostLoad in CPU cycles per second of this node
+	 * @param steal fraction of time stolen by the hypervisor
+	 * @throws Exception
+	 */
+	public void storeHostLoad(long hostLoad, float steal) throws Exception {
+		Connection connection = null;
+		Statement statement = null;
+		hostLoad = (long)(hostLoad * getPerformanceFactor());
+		try {
+			connection = getConnection();
+			statement = connection.createStatement();
+			String sql = "update node set host_load = " + hostLoad + ", steal = " + steal + " where name = '" + nodeName + "'";
+			logger.debug("SQL script: " + sql);
+			statement.executeUpdate(sql);
+		} catch (Exception e) {
+			logger.error("An error occurred storing the host load", e);
+			throw e;
+		} finally {
+			if (statement != null)
+				statement.close();
+			if (connection != null)
+				connection.close();
+		}
+	}
+	
+	/**
+	 * stores the time spent in execute() by the given task over the latest time window
+	 * @param stormId
+	 * @param task
+	 * @param p50 median, in microseconds
+	 * @param p99 99th percentile, in microseconds
+	 * @param max in microseconds
+	 * @param port of the worker the task runs in
+	 * @throws Exception
+	 */
+	public void storeLatency(String stormId, int task, long p50, long p99, long max, int port) throws Exception {
+		Connection connection = null;
+		Statement statement = null;
+		logger.debug("Going to store latency stat (topology: " + stormId + ", task: " + task + ", p50: " + p50 + " us, p99: " + p99 + " us, max: " + max + " us)");
+		try {
+			connection = getConnection();
+			statement = connection.createStatement();
+			
+			String sql = "update latency set p50 = " + p50 + ", p99 = " + p99 + ", max = " + max + ", node = '" + nodeName + "', port = " + port + " where topology_id = " + getTopologyId(stormId) + " and task = " + task;
+			logger.debug("SQL script: " + sql);
+			if (statement.executeUpdate(sql) == 0) {
+				sql = "insert into latency(topology_id, task, p50, p99, max, node, port) " +
+					"values(" + getTopologyId(stormId) + ", " + task + ", " + p50 + ", " + p99 + ", " + max + ", '" + nodeName + "', " + port + ")";
+				logger.debug("SQL script: " + sql);
+				statement.executeUpdate(sql);
+			}
+		} catch (Exception e) {
+			logger.error("An error occurred storing a latency stat", e);
+			throw e;
+		} finally {
+			if (statement != null)
+				statement.close();
+			if (connection != null)
+				connection.close();
+		}
+	}
+	
 	/*public void storeAcker(String stormId, String nodeName) throws Exception {
 		Connection connection = null;
 		Statement statement = null;
@@ -240,19 +399,30 @@ public class DataManager {
 		}
 	}*/
 	
-	public void storeTraffic(String stormId, int sourceTask, int destinationTask, int traffic) throws Exception {
+	/**
+	 * stores the tuples received by the destination task
+	 * @param stormId
+	 * @param sourceTask
+	 * @param destinationTask
+	 * @param stream
+	 * @param traffic in tuple/s
+	 * @param trafficError standard error of traffic in tuple/s, when the destination counts only a sample of the tuples
+	 * @param bytes in byte/s
+	 * @throws Exception
+	 */
+	public void storeTraffic(String stormId, int sourceTask, int destinationTask, String stream, int traffic, int trafficError, long bytes) throws Exception {
 		Connection connection = null;
 		Statement statement = null;
-		logger.debug("Going to store traffic stat (topology: " + stormId + ", source: " + sourceTask + ", destination: " + destinationTask + ", traffic: " + traffic + " tuples per second)");
+		logger.debug("Going to store traffic stat (topology: " + stormId + ", source: " + sourceTask + ", destination: " + destinationTask + ", stream: " + stream + ", traffic: " + traffic + " +/- " + trafficError + " tuples per second, " + bytes + " bytes per second)");
 		try {
 			connection = getConnection();
 			statement = connection.createStatement();
 			
-			String sql = "update traffic set traffic = " + traffic + " where topology_id = " + getTopologyId(stormId) + " and source_task = " + sourceTask + " and destination_task = " + destinationTask;
+			String sql = "update traffic set traffic = " + traffic + ", traffic_error = " + trafficError + ", bytes = " + bytes + " where topology_id = " + getTopologyId(stormId) + " and source_task = " + sourceTask + " and destination_task = " + destinationTask + " and stream = '" + stream + "'";
 			logger.debug("SQL script: " + sql);
 			if (statement.executeUpdate(sql) == 0) {
-				sql = "insert into traffic(topology_id, source_task, destination_task, traffic) " +
-						"values(" + getTopologyId(stormId) + ", " + sourceTask + ", " + destinationTask + ", " + traffic + ")";
+				sql = "insert into traffic(topology_id, source_task, destination_task, stream, traffic, traffic_error, bytes) " +
+						"values(" + getTopologyId(stormId) + ", " + sourceTask + ", " + destinationTask + ", '" + stream + "', " + traffic + ", " + trafficError + ", " + bytes + ")";
 				logger.debug("SQL script: " + sql);
 				statement.executeUpdate(sql);
 			}
@@ -267,6 +437,175 @@ public class DataManager {
 		}
 	}
 	
+	/**
+	 * removes the traffic stat of a pair that is no longer tracked
+	 * @param stormId
+	 * @param sourceTask
+	 * @param destinationTask
+	 * @param stream
+	 * @throws Exception
+	 */
+	public void removeTraffic(String stormId, int sourceTask, int destinationTask, String stream) throws Exception {
+		Connection connection = null;
+		Statement statement = null;
+		logger.debug("Going to remove traffic stat (topology: " + stormId + ", source: " + sourceTask + ", destination: " + destinationTask + ", stream: " + stream + ")");
+		try {
+			connection = getConnection();
+			statement = connection.createStatement();
+			
+			String sql = "delete from traffic where topology_id = " + getTopologyId(stormId) + " and source_task = " + sourceTask + " and destination_task = " + destinationTask + " and stream = '" + stream + "'";
+			logger.debug("SQL script: " + sql);
+			statement.executeUpdate(sql);
+		} catch (Exception e) {
+			logger.error("An error occurred removing a traffic stat", e);
+			throw e;
+		} finally {
+			if (statement != null)
+				statement.close();
+			if (connection != null)
+				connection.close();
+		}
+	}
+	
+	/**
+	 * stores the tuples sent to the tasks of the destination component running in this worker by the tasks of the source component that are not heavy hitters
+	 * @param stormId
+	 * @param sourceComponent
+	 * @param destinationComponent
+	 * @param stream
+	 * @param traffic in tuple/s
+	 * @param port of the worker
+	 * @throws Exception
+	 */
+	public void storeComponentTraffic(String stormId, String sourceComponent, String destinationComponent, String stream, int traffic, int port) throws Exception {
+		Connection connection = null;
+		Statement statement = null;
+		logger.debug("Going to store component traffic stat (topology: " + stormId + ", source: " + sourceComponent + ", destination: " + destinationComponent + ", stream: " + stream + ", traffic: " + traffic + " tuples per second)");
+		try {
+			connection = getConnection();
+			statement = connection.createStatement();
+			
+			String sql = "update component_traffic set traffic = " + traffic + " where topology_id = " + getTopologyId(stormId) + " and source_component = '" + sourceComponent + "' and destination_component = '" + destinationComponent + "' and stream = '" + stream + "' and node = '" + nodeName + "' and port = " + port;
+			logger.debug("SQL script: " + sql);
+			if (statement.executeUpdate(sql) == 0) {
+				sql = "insert into component_traffic(topology_id, source_component, destination_component, stream, traffic, node, port) " +
+						"values(" + getTopologyId(stormId) + ", '" + sourceComponent + "', '" + destinationComponent + "', '" + stream + "', " + traffic + ", '" + nodeName + "', " + port + ")";
+				logger.debug("SQL script: " + sql);
+				statement.executeUpdate(sql);
+			}
+		} catch (Exception e) {
+			logger.error("An error occurred storing a component traffic stat", e);
+			throw e;
+		} finally {
+			if (statement != null)
+				statement.close();
+			if (connection != null)
+				connection.close();
+		}
+	}
+	
+	/**
+	 * removes the component traffic stat of a pair that is no longer exchanging tuples in this worker
+	 * @param stormId
+	 * @param sourceComponent
+	 * @param destinationComponent
+	 * @param stream
+	 * @param port of the worker
+	 * @throws Exception
+	 */
+	public void removeComponentTraffic(String stormId, String sourceComponent, String destinationComponent, String stream, int port) throws Exception {
+		Connection connection = null;
+		Statement statement = null;
+		logger.debug("Going to remove component traffic stat (topology: " + stormId + ", source: " + sourceComponent + ", destination: " + destinationComponent + ", stream: " + stream + ")");
+		try {
+			connection = getConnection();
+			statement = connection.createStatement();
+			
+			String sql = "delete from component_traffic where topology_id = " + getTopologyId(stormId) + " and source_component = '" + sourceComponent + "' and destination_component = '" + destinationComponent + "' and stream = '" + stream + "' and node = '" + nodeName + "' and port = " + port;
+			logger.debug("SQL script: " + sql);
+			statement.executeUpdate(sql);
+		} catch (Exception e) {
+			logger.error("An error occurred removing a component traffic stat", e);
+			throw e;
+		} finally {
+			if (statement != null)
+				statement.close();
+			if (connection != null)
+				connection.close();
+		}
+	}
+	
+	/**
+	 * stores the tuples emitted by the source task, as counted by its collector; they include the tuples that never reached the destination
+	 * @param stormId
+	 * @param sourceTask
+	 * @param destinationTask
+	 * @param stream
+	 * @param emitted in tuple/s
+	 * @throws Exception
+	 */
+	public void storeEmittedTraffic(String stormId, int sourceTask, int destinationTask, String stream, int emitted) throws Exception {
+		Connection connection = null;
+		Statement statement = null;
+		logger.debug("Going to store emitted traffic stat (topology: " + stormId + ", source: " + sourceTask + ", destination: " + destinationTask + ", stream: " + stream + ", emitted: " + emitted + " tuples per second)");
+		try {
+			connection = getConnection();
+			statement = connection.createStatement();
+			
+			String sql = "update traffic set emitted = " + emitted + " where topology_id = " + getTopologyId(stormId) + " and source_task = " + sourceTask + " and destination_task = " + destinationTask + " and stream = '" + stream + "'";
+			logger.debug("SQL script: " + sql);
+			if (statement.executeUpdate(sql) == 0) {
+				sql = "insert into traffic(topology_id, source_task, destination_task, stream, traffic, emitted) " +
+						"values(" + getTopologyId(stormId) + ", " + sourceTask + ", " + destinationTask + ", '" + stream + "', 0, " + emitted + ")";
+				logger.debug("SQL script: " + sql);
+				statement.executeUpdate(sql);
+			}
+		} catch (Exception e) {
+			logger.error("An error occurred storing an emitted traffic stat", e);
+			throw e;
+		} finally {
+			if (statement != null)
+				statement.close();
+			if (connection != null)
+				connection.close();
+		}
+	}
+	
+	/**
+	 * stops tracking the tuples emitted by the source task to the destination task, removing the traffic stat
+	 * if the destination has not reported any received tuple either
+	 * @param stormId
+	 * @param sourceTask
+	 * @param destinationTask
+	 * @param stream
+	 * @throws Exception
+	 */
+	public void removeEmittedTraffic(String stormId, int sourceTask, int destinationTask, String stream) throws Exception {
+		Connection connection = null;
+		Statement statement = null;
+		logger.debug("Going to remove emitted traffic stat (topology: " + stormId + ", source: " + sourceTask + ", destination: " + destinationTask + ", stream: " + stream + ")");
+		try {
+			connection = getConnection();
+			statement = connection.createStatement();
+			
+			String sql = "delete from traffic where topology_id = " + getTopologyId(stormId) + " and source_task = " + sourceTask + " and destination_task = " + destinationTask + " and stream = '" + stream + "' and traffic = 0";
+			logger.debug("SQL script: " + sql);
+			if (statement.executeUpdate(sql) == 0) {
+				sql = "update traffic set emitted = 0 where topology_id = " + getTopologyId(stormId) + " and source_task = " + sourceTask + " and destination_task = " + destinationTask + " and stream = '" + stream + "'";
+				logger.debug("SQL script: " + sql);
+				statement.executeUpdate(sql);
+			}
+		} catch (Exception e) {
+			logger.error("An error occurred removing an emitted traffic stat", e);
+			throw e;
+		} finally {
+			if (statement != null)
+				statement.close();
+			if (connection != null)
+				connection.close();
+		}
+	}
+	
 	public void StoreAssignment(String topologies, String assignment) throws Exception {
 		Connection connection = null;
 		Statement statement = null;
@@ -336,6 +675,16 @@ public class DataManager {
 				logger.debug("SQL script: " + sql);
 				statement.execute(sql);
 				
+				logger.debug("Removing component traffic stats of topology " + topology);
+				sql = "delete from component_traffic where topology_id in (select id from topology where storm_id = '" + topology + "')";
+				logger.debug("SQL script: " + sql);
+				statement.execute(sql);
+				
+				logger.debug("Removing latency stats of topology " + topology);
+				sql = "delete from latency where topology_id in (select id from topology where storm_id = '" + topology + "')";
+				logger.debug("SQL script: " + sql);
+				statement.execute(sql);
+				
 				logger.debug("Removing topology " + topology);				
 				sql = "delete from topology where storm_id = '" + topology + "'";
 				logger.debug("SQL script: " + sql);
@@ -356,6 +705,24 @@ public class DataManager {
 		}
 	}
 	
+	/**
+	 * the performance factor is either configured (calibrated offline) or measured by a short microbenchmark
+	 * @return the work carried out by a cycle of this node wrt a reference cycle
+	 */
+	private synchronized double getPerformanceFactor() {
+		if (performanceFactor <= 0) {
+			performanceFactor = CPUBenchmark.getPerformanceFactor(CPUInfo.getInstance().getCoreInfo(0).getSpeed());
+			logger.info("Performance factor of node " + nodeName + ": " + performanceFactor);
+		}
+		return performanceFactor;
+	}
+	
+	/**
+	 * stores the capacity of this node, in cycles per second of this node, together with its performance factor, the number of cores and NUMA nodes it can use
+	 * and the bytes per second its storage can sustain
+	 * @param totalSpeed
+	 * @throws Exception
+	 */
 	public void checkNode(long totalSpeed) throws Exception {
 		Connection connection = null;
 		Statement statement = null;
@@ -363,10 +730,10 @@ public class DataManager {
 			connection = getConnection();
 			statement = connection.createStatement();
 			long absoluteCapacity = totalSpeed / 100 * capacity;
-			String sql = "update node set capacity = " + absoluteCapacity + " where name = '" + nodeName + "'";
+			String sql = "update node set capacity = " + absoluteCapacity + ", cores = " + CPUInfo.getInstance().getNumberOfCores() + ", numa_nodes = " + CPUInfo.getInstance().getNumberOfNumaNodes() + ", io_capacity = " + ioCapacity + ", network_capacity = " + networkCapacity + ", performance_factor = " + getPerformanceFactor() + " where name = '" + nodeName + "'";
 			logger.debug("SQL script: " + sql);
 			if (statement.executeUpdate(sql) == 0) {
-				sql = "insert into node(name, capacity, cores) values('" + nodeName + "', " + totalSpeed + ", " + CPUInfo.getInstance().getNumberOfCores() + ")";
+				sql = "insert into node(name, capacity, cores, numa_nodes, io_capacity, network_capacity, performance_factor) values('" + nodeName + "', " + absoluteCapacity + ", " + CPUInfo.getInstance().getNumberOfCores() + ", " + CPUInfo.getInstance().getNumberOfNumaNodes() + ", " + ioCapacity + ", " + networkCapacity + ", " + getPerformanceFactor() + ")";
 				logger.debug("SQL script: " + sql);
 				statement.execute(sql);
 			}
@@ -389,14 +756,24 @@ public class DataManager {
 		try {
 			connection = getConnection();
 			statement = connection.createStatement();
-			String sql = "select name, capacity, cores from node";
+			// capacities are converted to reference cycles, as loads are
+			String sql =
+				"select name, capacity * performance_factor, cores, host_load, coalesce(storm_load, 0), numa_nodes, io_capacity, network_capacity " +
+				"from node left join (select node, sum(`load`) as storm_load from `load` group by node) storm on storm.node = node.name";
 			logger.debug("SQL script: " + sql);
 			resultSet = statement.executeQuery(sql);
 			while (resultSet.next()) {
 				String name = resultSet.getString(1);
 				long capacity = resultSet.getLong(2);
 				int cores = resultSet.getInt(3);
-				nodeMap.put(name, new Node(name, capacity, cores));
+				long externalLoad = getExternalLoad(resultSet.getLong(4), resultSet.getLong(5));
+				if (externalLoad > 0)
+					logger.info("Node " + name + " has an external load of " + externalLoad + " reference cycles per second (capacity: " + capacity + ")");
+				int numaNodes = resultSet.getInt(6);
+				Node node = new Node(name, Math.max(0, capacity - externalLoad), cores, numaNodes);
+				node.setIOCapacity(resultSet.getLong(7));
+				node.setNetworkCapacity(resultSet.getLong(8));
+				nodeMap.put(name, node);
 			}
 			int nodeCount = nodeMap.keySet().size();
 			for (Node node : nodeMap.values())
@@ -422,10 +799,13 @@ public class DataManager {
 	
 	/**
 	 * @param topologyID
+	 * @param byteTraffic if true, traffic is measured in bytes per second rather than tuples per second
+	 * @param streamWeights stream id -> weight of its traffic
+	 * @param taskToComponent task id -> id of its component, to spread the traffic not sent by heavy hitters over the executors of the components
 	 * @return the list of communicating executor pairs, sorted by traffic in decreasing order 
 	 * @throws Exception
 	 */
-	public List<ExecutorPair> getInterExecutorTrafficList(String topologyID) throws Exception {
+	public List<ExecutorPair> getInterExecutorTrafficList(String topologyID, boolean byteTraffic, Map<String, Float> streamWeights, Map<Integer, String> taskToComponent) throws Exception {
 		Connection connection = null;
 		Statement statement = null;
 		ResultSet resultSet = null;
@@ -436,12 +816,18 @@ public class DataManager {
 			
 			// load executors
 			List<Executor> executorList = new ArrayList<Executor>();
-			String sql = "select begin_task, end_task, `load` from `load` join topology on `load`.topology_id = topology.id where storm_id = '" + topologyID + "'";
+			String sql = "select begin_task, end_task, `load`, allocation_rate, io_rate, blocked, heap, node, port from `load` join topology on `load`.topology_id = topology.id where storm_id = '" + topologyID + "'";
 			logger.debug("SQL script: " + sql);
 			resultSet = statement.executeQuery(sql);
 			while (resultSet.next()) {
 				Executor executor = new Executor(resultSet.getInt(1), resultSet.getInt(2));
 				executor.setLoad(resultSet.getLong(3));
+				executor.setAllocationRate(resultSet.getLong(4));
+				executor.setIORate(resultSet.getLong(5));
+				executor.setBlockedFraction(resultSet.getFloat(6));
+				executor.setHeapSize(resultSet.getLong(7));
+				executor.setNode(resultSet.getString(8));
+				executor.setPort(resultSet.getInt(9));
 				executor.setTopologyID(topologyID);
 				executorList.add(executor);
 			}
@@ -451,14 +837,17 @@ public class DataManager {
 			// load tasks and create the list the executor pairs sorted by traffic desc
 			// Map<Long, ExecutorPair> executorPairMap = new HashMap<Long, ExecutorPair>(); // for lookups
 			// Map<Integer, ExecutorPair> executorPairMap = new HashMap<Integer, ExecutorPair>(); // for lookups
-			sql = "select source_task, destination_task, traffic from traffic";
+			sql = "select source_task, destination_task, stream, " + getTrafficColumn(byteTraffic) + ", bytes from traffic join topology on traffic.topology_id = topology.id where storm_id = '" + topologyID + "'";
 			logger.debug("SQL script: " + sql);
 			resultSet = statement.executeQuery(sql);
 			while (resultSet.next()) {
 				// load data from DB
 				int sourceTask = resultSet.getInt(1);
 				int destinationTask = resultSet.getInt(2);
-				int traffic = resultSet.getInt(3);
+				float weight = Utils.getStreamWeight(streamWeights, resultSet.getString(3));
+				if (weight == 0)
+					continue; // excluded stream
+				int traffic = (int)(resultSet.getInt(4) * weight);
 				
 				// look up executor pair
 				Executor source = Utils.getExecutor(sourceTask, executorList);
@@ -467,35 +856,17 @@ public class DataManager {
 				logger.debug("destination executor for destination task " + destinationTask + ": " + destination);
 				
 				if (source != null && destination != null) {
-					// long key = ExecutorPair.getKey(source, destination);
-					// int key = new ExecutorPair(source, destination).hashCode();
-					// ExecutorPair pair = executorPairMap.get(key);
-					ExecutorPair pair = null;
-					for (ExecutorPair tmp : trafficStat)
-						if (tmp.getSource().equals(source) && tmp.getDestination().equals(destination)) {
-							pair = tmp;
-							break;
-						}
-					if (pair == null) {
-						pair = new ExecutorPair(source, destination);
-						// executorPairMap.put(key, pair);
-						trafficStat.add(pair); // it's right to add it to the tail
-					}
-					
-					// update its traffic and sort the list
-					pair.addTraffic(traffic);
-					int index = trafficStat.indexOf(pair);
-					while (index > 0 && pair.getTraffic() > trafficStat.get(index - 1).getTraffic()) {
-						ExecutorPair executorPair = trafficStat.remove(index - 1);
-						trafficStat.add(index, executorPair);
-						index--;
-					}
+					addTraffic(trafficStat, source, destination, traffic, resultSet.getLong(5));
 				} else {
-					// the DB has not been properly populated yet, return an empty list and wait
-					trafficStat.clear();
-					break;
+					// tuples emitted to unmonitored bolts or dead tasks, or the load of an executor not stored yet
+					logger.debug("No executor for the tasks of pair " + sourceTask + " -> " + destinationTask + ", skip it");
 				}
 			}
+			resultSet.close();
+			
+			// traffic not sent by heavy hitters
+			for (ExecutorPair pair : getComponentTraffic(statement, topologyID, executorList, byteTraffic, streamWeights, taskToComponent))
+				addTraffic(trafficStat, pair.getSource(), pair.getDestination(), pair.getTraffic(), pair.getBytes());
 			
 		} catch (Exception e) {
 			logger.error("An error occurred retrieving traffic stats for topology " + topologyID, e);
@@ -512,10 +883,114 @@ public class DataManager {
 	}
 	
 	/**
-	 * @return the list of nodes such that the total load due to Storm executors is higher than the pre-configured node capacity
+	 * adds the given traffic to the pair made of the given executors, keeping the list sorted by traffic in decreasing order
+	 * @param trafficStat
+	 * @param source
+	 * @param destination
+	 * @param traffic
+	 * @param bytes bytes per second exchanged, whatever the unit of traffic
+	 */
+	private void addTraffic(List<ExecutorPair> trafficStat, Executor source, Executor destination, int traffic, long bytes) {
+		// long key = ExecutorPair.getKey(source, destination);
+		// int key = new ExecutorPair(source, destination).hashCode();
+		// ExecutorPair pair = executorPairMap.get(key);
+		ExecutorPair pair = null;
+		for (ExecutorPair tmp : trafficStat)
+			if (tmp.getSource().equals(source) && tmp.getDestination().equals(destination)) {
+				pair = tmp;
+				break;
+			}
+		if (pair == null) {
+			pair = new ExecutorPair(source, destination);
+			// executorPairMap.put(key, pair);
+			trafficStat.add(pair); // it's right to add it to the tail
+		}
+		
+		// update its traffic and sort the list
+		pair.addTraffic(traffic);
+		pair.addBytes(bytes);
+		int index = trafficStat.indexOf(pair);
+		while (index > 0 && pair.getTraffic() > trafficStat.get(index - 1).getTraffic()) {
+			ExecutorPair executorPair = trafficStat.remove(index - 1);
+			trafficStat.add(index, executorPair);
+			index--;
+		}
+	}
+	
+	/**
+	 * the traffic not sent by heavy hitters is stored per component pair and worker of the destination;
+	 * it is spread evenly over the pairs made of an executor of the source component and an executor of the destination component running in that worker
+	 * @param statement
+	 * @param stormId
+	 * @param executorList the executors of the topology, with the node and the port they are running in
+	 * @param byteTraffic if true, traffic is converted from tuples to bytes using the average size of the tuples of the same stream
+	 * @param streamWeights stream id -> weight of its traffic
+	 * @param taskToComponent task id -> id of its component
+	 * @return the share of traffic, and of bytes, of each executor pair
 	 * @throws Exception
 	 */
-	public List<Node> getOverloadedNodes() throws Exception {
+	private List<ExecutorPair> getComponentTraffic(Statement statement, String stormId, List<Executor> executorList, boolean byteTraffic, Map<String, Float> streamWeights, Map<Integer, String> taskToComponent) throws Exception {
+		ResultSet resultSet = null;
+		List<ExecutorPair> executorPairList = new ArrayList<ExecutorPair>();
+		try {
+			// bytes are needed anyway, to know how much of the network the traffic uses
+			Map<String, Double> tupleSizeMap = new HashMap<String, Double>();
+			String sql = "select stream, sum(bytes) / sum(traffic) from traffic join topology on traffic.topology_id = topology.id where storm_id = '" + stormId + "' and traffic > 0 group by stream";
+			logger.debug("SQL script: " + sql);
+			resultSet = statement.executeQuery(sql);
+			while (resultSet.next())
+				tupleSizeMap.put(resultSet.getString(1), resultSet.getDouble(2));
+			resultSet.close();
+			
+			sql = "select source_component, destination_component, stream, traffic, node, port from component_traffic join topology on component_traffic.topology_id = topology.id where storm_id = '" + stormId + "'";
+			logger.debug("SQL script: " + sql);
+			resultSet = statement.executeQuery(sql);
+			while (resultSet.next()) {
+				String sourceComponent = resultSet.getString(1);
+				String destinationComponent = resultSet.getString(2);
+				String stream = resultSet.getString(3);
+				double tupleSize = (tupleSizeMap.get(stream) != null) ? tupleSizeMap.get(stream) : 0;
+				double bytes = resultSet.getLong(4) * tupleSize;
+				double traffic = resultSet.getLong(4) * Utils.getStreamWeight(streamWeights, stream);
+				if (byteTraffic)
+					traffic *= tupleSize;
+				
+				List<Executor> sourceList = new ArrayList<Executor>();
+				List<Executor> destinationList = new ArrayList<Executor>();
+				for (Executor executor : executorList) {
+					String component = taskToComponent.get(executor.getBeginTask());
+					if (sourceComponent.equals(component))
+						sourceList.add(executor);
+					if (destinationComponent.equals(component) && resultSet.getString(5).equals(executor.getNode()) && resultSet.getInt(6) == executor.getPort())
+						destinationList.add(executor);
+				}
+				int pairCount = Math.max(1, sourceList.size() * destinationList.size());
+				int share = (int)Math.min(traffic / pairCount, Integer.MAX_VALUE);
+				if (share == 0)
+					continue;
+				logger.debug("Traffic from component " + sourceComponent + " to component " + destinationComponent + " on stream " + stream + " not sent by heavy hitters: " + share + " per executor pair");
+				for (Executor source : sourceList)
+					for (Executor destination : destinationList) {
+						ExecutorPair pair = new ExecutorPair(source, destination);
+						pair.addTraffic(share);
+						pair.addBytes((long)(bytes / pairCount));
+						executorPairList.add(pair);
+					}
+			}
+		} finally {
+			if (resultSet != null)
+				resultSet.close();
+		}
+		return executorPairList;
+	}
+	
+	/**
+	 * @param saturationThresholdMap topology id -> fraction of time spent in execute() above which an executor of that topology is saturated
+	 * @return the list of nodes such that the total load due to Storm executors is higher than the pre-configured node capacity,
+	 * or hosting at least a saturated executor (its input queue is building up)
+	 * @throws Exception
+	 */
+	public List<Node> getOverloadedNodes(Map<String, Float> saturationThresholdMap) throws Exception {
 		Connection connection = null;
 		Statement statement = null;
 		ResultSet resultSet = null;
@@ -524,10 +999,12 @@ public class DataManager {
 			connection = getConnection();
 			statement = connection.createStatement();
 			String sql =
-				"select `load`.node, sum(`load`) as total_load, node.capacity, node.cores " +
-				"from `load` join node on `load`.node = node.name " +
+				"select `load`.node, sum(`load`) as total_load, node.capacity * node.performance_factor as reference_capacity, node.cores, max(utilization) as max_utilization, node.host_load, " +
+				"sum(io_rate) as total_io_rate, node.io_capacity, sum(utilization >= " + getThresholdByTopology(saturationThresholdMap) + ") as saturated_count " +
+				"from `load` join node on `load`.node = node.name join topology on `load`.topology_id = topology.id " +
 				"group by node.name " +
-				"having total_load > node.capacity";
+				"having greatest(total_load, node.host_load) > reference_capacity or saturated_count > 0 or " +
+				"(node.io_capacity > 0 and total_io_rate > node.io_capacity)";
 			logger.debug("SQL script: " + sql);
 			resultSet = statement.executeQuery(sql);
 			while (resultSet.next()) {
@@ -535,7 +1012,16 @@ public class DataManager {
 				long load = resultSet.getLong(2);
 				long capacity = resultSet.getLong(3);
 				int cores = resultSet.getInt(4);
+				float maxUtilization = resultSet.getFloat(5);
+				capacity = Math.max(0, capacity - getExternalLoad(resultSet.getLong(6), load));
+				long ioRate = resultSet.getLong(7);
+				long ioCapacity = resultSet.getLong(8);
+				if (ioCapacity > 0 && ioRate > ioCapacity)
+					logger.info("Node " + name + " has its storage saturated (" + ioRate + "/" + ioCapacity + " bytes per second)");
+				else if (load <= capacity)
+					logger.info("Node " + name + " hosts a saturated executor (utilization: " + maxUtilization + ")");
 				Node node = new Node(name, capacity, cores);
+				node.setIOCapacity(ioCapacity);
 				node.addLoad(load);
 				nodeList.add(node);
 			}
@@ -553,38 +1039,142 @@ public class DataManager {
 		return nodeList;
 	}
 	
-	public int getCurrentInterNodeTraffic() throws Exception {
+	/**
+	 * @param contentionThresholdMap topology id -> fraction of time blocked on monitors above which an executor of that topology is contended,
+	 * topologies not in the map don't spread contended executors
+	 * @return the workers, as node:port, hosting more than a contended executor
+	 * @throws Exception
+	 */
+	public List<String> getContendedWorkers(Map<String, Float> contentionThresholdMap) throws Exception {
 		Connection connection = null;
 		Statement statement = null;
 		ResultSet resultSet = null;
-		int currentInterNodeTraffic = 0;
+		List<String> workerList = new ArrayList<String>();
+		try {
+			connection = getConnection();
+			statement = connection.createStatement();
+			String sql =
+				"select node, port, count(*) as contended_count, max(blocked) as max_blocked from `load` join topology on `load`.topology_id = topology.id " +
+				"where blocked >= " + getThresholdByTopology(contentionThresholdMap) + " " +
+				"group by node, port " +
+				"having contended_count > 1";
+			logger.debug("SQL script: " + sql);
+			resultSet = statement.executeQuery(sql);
+			while (resultSet.next()) {
+				String worker = resultSet.getString(1) + ":" + resultSet.getInt(2);
+				logger.info("Worker " + worker + " hosts " + resultSet.getInt(3) + " contended executors (max blocked fraction: " + resultSet.getFloat(4) + ")");
+				workerList.add(worker);
+			}
+		} catch (Exception e) {
+			logger.error("An error occurred loading contended workers");
+			throw e;
+		} finally {
+			if (resultSet != null)
+				resultSet.close();
+			if (statement != null)
+				statement.close();
+			if (connection != null)
+				connection.close();
+		}
+		return workerList;
+	}
+	
+	/**
+	 * @param thresholdMap topology id -> threshold
+	 * @return an SQL expression evaluating to the threshold of the topology of each row, null for the topologies not in the map
+	 */
+	private String getThresholdByTopology(Map<String, Float> thresholdMap) {
+		if (thresholdMap.isEmpty())
+			return "null";
+		StringBuilder sb = new StringBuilder("case storm_id");
+		for (String stormId : thresholdMap.keySet())
+			sb.append(" when '").append(stormId).append("' then ").append(thresholdMap.get(stormId));
+		return sb.append(" end").toString();
+	}
+	
+	/**
+	 * @param hostLoad CPU cycles per second the node is busy or stolen, whoever uses them
+	 * @param stormLoad CPU cycles per second used by Storm executors on the node
+	 * @return the CPU cycles per second not available to Storm executors because of other processes or other virtual machines
+	 */
+	private long getExternalLoad(long hostLoad, long stormLoad) {
+		return Math.max(0, hostLoad - stormLoad);
+	}
+	
+	/**
+	 * @param byteTraffic
+	 * @return the column of the traffic table to use, bytes per second if byteTraffic is true, tuples per second otherwise
+	 */
+	private String getTrafficColumn(boolean byteTraffic) {
+		// a pair rarely exceeds 2 GB/s, so bytes fit the int traffic of executor pairs
+		if (byteTraffic)
+			return "least(bytes, " + Integer.MAX_VALUE + ")";
+		// tuples counted by the sender also include the ones from unmonitored bolts and the ones that got lost
+		return "greatest(traffic, emitted)";
+	}
+	
+	/**
+	 * @param costModel
+	 * @param byteTraffic if true, traffic is measured in bytes per second rather than tuples per second
+	 * @param streamWeightMap topology id -> (stream id -> weight of its traffic)
+	 * @param taskToComponentMap topology id -> (task id -> id of its component)
+	 * @param portMap node -> ports of its supervisor in ascending order, the i-th one being bound to NUMA node i % numaNodeCount
+	 * @return the cost of the current traffic, weighted according to the level (slot, NUMA node, node, network) it flows through
+	 * @throws Exception
+	 */
+	public double getCurrentTrafficCost(CostModel costModel, boolean byteTraffic, Map<String, Map<String, Float>> streamWeightMap, Map<String, Map<Integer, String>> taskToComponentMap, Map<String, List<Integer>> portMap) throws Exception {
+		Connection connection = null;
+		Statement statement = null;
+		ResultSet resultSet = null;
+		double currentTrafficCost = 0;
 		try {
 			connection = getConnection();
 			statement = connection.createStatement();
 			
-			// load executors
-			List<Executor> executorList = new ArrayList<Executor>();
-			String sql = "select begin_task, end_task, `load`, node from `load`";
+			// load the number of NUMA nodes of each node
+			Map<String, Integer> numaNodeMap = new HashMap<String, Integer>();
+			String sql = "select name, numa_nodes from node";
+			logger.debug("SQL script: " + sql);
+			resultSet = statement.executeQuery(sql);
+			while (resultSet.next())
+				numaNodeMap.put(resultSet.getString(1), resultSet.getInt(2));
+			resultSet.close();
+			
+			// load executors, by topology as task ids are only unique within a topology
+			Map<String, List<Executor>> executorMap = new HashMap<String, List<Executor>>();
+			sql = "select storm_id, begin_task, end_task, `load`, node, port from `load` join topology on `load`.topology_id = topology.id";
 			logger.debug("SQL script: " + sql);
 			resultSet = statement.executeQuery(sql);
 			while (resultSet.next()) {
-				Executor executor = new Executor(resultSet.getInt(1), resultSet.getInt(2));
-				executor.setLoad(resultSet.getLong(3));
-				executor.setNode(resultSet.getString(4));
+				Executor executor = new Executor(resultSet.getInt(2), resultSet.getInt(3));
+				executor.setTopologyID(resultSet.getString(1));
+				executor.setLoad(resultSet.getLong(4));
+				executor.setNode(resultSet.getString(5));
+				executor.setPort(resultSet.getInt(6));
+				List<Executor> executorList = executorMap.get(executor.getTopologyID());
+				if (executorList == null) {
+					executorList = new ArrayList<Executor>();
+					executorMap.put(executor.getTopologyID(), executorList);
+				}
 				executorList.add(executor);
 			}
 			resultSet.close();
-			logger.debug("Executor list: " + Utils.collectionToString(executorList));
+			logger.debug("Executor lists: " + executorMap);
 			
 			// load tasks and create the list the executor pairs sorted by traffic desc
-			sql = "select source_task, destination_task, traffic from traffic";
+			sql = "select storm_id, source_task, destination_task, stream, " + getTrafficColumn(byteTraffic) + " from traffic join topology on traffic.topology_id = topology.id";
 			logger.debug("SQL script: " + sql);
 			resultSet = statement.executeQuery(sql);
 			while (resultSet.next()) {
 				// load data from DB
-				int sourceTask = resultSet.getInt(1);
-				int destinationTask = resultSet.getInt(2);
-				int traffic = resultSet.getInt(3);
+				List<Executor> executorList = executorMap.get(resultSet.getString(1));
+				if (executorList == null)
+					continue;
+				Map<String, Float> streamWeights = streamWeightMap.get(resultSet.getString(1));
+				int sourceTask = resultSet.getInt(2);
+				int destinationTask = resultSet.getInt(3);
+				float weight = (streamWeights != null) ? Utils.getStreamWeight(streamWeights, resultSet.getString(4)) : 1;
+				int traffic = (int)(resultSet.getInt(5) * weight);
 				
 				// look up executor pair
 				Executor source = Utils.getExecutor(sourceTask, executorList);
@@ -592,16 +1182,96 @@ public class DataManager {
 				Executor destination = Utils.getExecutor(destinationTask, executorList);
 				logger.debug("destination executor for destination task " + destinationTask + ": " + destination);
 				
-				if (source != null && destination != null && !source.getNode().equals(destination.getNode())) {
-					logger.debug(
-						"Tasks " + sourceTask + " and " + destinationTask + 
-						" are currently deployed on distinct nodes, so they contribute to inter-node traffic for " + traffic + " tuple/s");
-					currentInterNodeTraffic += traffic;
-				}
+				if (source != null && destination != null)
+					currentTrafficCost += getCurrentTrafficCost(costModel, source, destination, traffic, numaNodeMap, portMap);
+			}
+			resultSet.close();
+			
+			// traffic not sent by heavy hitters
+			for (String stormId : executorMap.keySet()) {
+				Map<String, Float> streamWeights = streamWeightMap.get(stormId);
+				Map<Integer, String> taskToComponent = taskToComponentMap.get(stormId);
+				if (taskToComponent == null)
+					continue;
+				List<ExecutorPair> executorPairList = getComponentTraffic(statement, stormId, executorMap.get(stormId), byteTraffic, (streamWeights != null) ? streamWeights : new HashMap<String, Float>(), taskToComponent);
+				for (ExecutorPair pair : executorPairList)
+					currentTrafficCost += getCurrentTrafficCost(costModel, pair.getSource(), pair.getDestination(), pair.getTraffic(), numaNodeMap, portMap);
 			}
 
 		} catch (Exception e) {
-			logger.error("An error occurred computing current inter-node traffic", e);
+			logger.error("An error occurred computing current traffic cost", e);
+			throw e;
+		} finally {
+			if (resultSet != null)
+				resultSet.close();
+			if (statement != null)
+				statement.close();
+			if (connection != null)
+				connection.close();
+		}
+		return currentTrafficCost;
+	}
+	
+	/**
+	 * @param costModel
+	 * @param source
+	 * @param destination
+	 * @param traffic
+	 * @param numaNodeMap node -> number of its NUMA nodes
+	 * @param portMap node -> ports of its supervisor in ascending order
+	 * @return the cost of the given traffic, exchanged by the given executors where they are currently deployed
+	 */
+	private double getCurrentTrafficCost(CostModel costModel, Executor source, Executor destination, int traffic, Map<String, Integer> numaNodeMap, Map<String, List<Integer>> portMap) {
+		boolean sameNode = source.getNode().equals(destination.getNode());
+		boolean sameSlot = sameNode && source.getPort() == destination.getPort();
+		boolean sameNumaNode = sameSlot || (sameNode && getNumaNode(source, numaNodeMap, portMap) == getNumaNode(destination, numaNodeMap, portMap));
+		logger.debug(
+			"Executors " + source + " and " + destination + 
+			" are currently deployed " + (sameSlot ? "in the same slot" : (sameNumaNode ? "on the same NUMA node" : (sameNode ? "on distinct NUMA nodes of the same node" : "on distinct nodes"))) + ", with a traffic of " + traffic + " tuple/s");
+		if (sameSlot)
+			return costModel.getCost(traffic, 0, 0, 0);
+		if (sameNumaNode)
+			return costModel.getCost(0, traffic, 0, 0);
+		if (sameNode)
+			return costModel.getCost(0, 0, traffic, 0);
+		return costModel.getCost(0, 0, 0, traffic);
+	}
+	
+	/**
+	 * the worker listening on the i-th port of a node (ports in ascending order) is bound to NUMA node i % numaNodeCount,
+	 * the same way the scheduler binds slots to NUMA nodes
+	 * @param executor
+	 * @param numaNodeMap node -> number of its NUMA nodes
+	 * @param portMap node -> ports of its supervisor in ascending order
+	 * @return the NUMA node the worker of the given executor is bound to, 0 if the node is not NUMA or not known
+	 */
+	private int getNumaNode(Executor executor, Map<String, Integer> numaNodeMap, Map<String, List<Integer>> portMap) {
+		Integer numaNodeCount = numaNodeMap.get(executor.getNode());
+		List<Integer> ports = portMap.get(executor.getNode());
+		if (numaNodeCount == null || numaNodeCount <= 1 || ports == null)
+			return 0;
+		return Math.max(0, ports.indexOf(executor.getPort())) % numaNodeCount;
+	}
+	
+	/**
+	 * @return level -> measured cost of a tuple exchanged at that level
+	 * @throws Exception
+	 */
+	public Map<String, Float> getCosts() throws Exception {
+		Connection connection = null;
+		Statement statement = null;
+		ResultSet resultSet = null;
+		Map<String, Float> costMap = new HashMap<String, Float>();
+		try {
+			connection = getConnection();
+			statement = connection.createStatement();
+			String sql = "select level, cost from cost";
+			logger.debug("SQL script: " + sql);
+			resultSet = statement.executeQuery(sql);
+			while (resultSet.next())
+				costMap.put(resultSet.getString(1), resultSet.getFloat(2));
+		} catch (Exception e) {
+			logger.error("An error occurred getting the costs", e);
 			throw e;
 		} finally {
 			if (resultSet != null)
@@ -611,6 +1281,6 @@ public class DataManager {
 			if (connection != null)
 				connection.close();
 		}
-		return currentInterNodeTraffic;
+		return costMap;
 	}
 }
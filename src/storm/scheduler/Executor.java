@@ -17,7 +17,12 @@ public class Executor {
 	private int beginTask;
 	private int endTask;
 	private long load;
+	private long allocationRate; // bytes allocated per second
+	private long ioRate; // bytes read from and written to storage per second
+	private float blockedFraction; // fraction of time blocked waiting to enter a monitor
+	private long heapSize; // bytes of heap retained by the state of this executor
 	private String node;
+	private int port;
 	private String topologyID;
 	
 	public Executor() {
@@ -68,6 +73,51 @@ public class Executor {
 	public void setLoad(long load) {
 		this.load = load;
 	}
+	
+	public long getAllocationRate() {
+		return allocationRate;
+	}
+	
+	public void setAllocationRate(long allocationRate) {
+		this.allocationRate = allocationRate;
+	}
+
+	public long getIORate() {
+		return ioRate;
+	}
+	
+	public void setIORate(long ioRate) {
+		this.ioRate = ioRate;
+	}
+
+	public long getHeapSize() {
+		return heapSize;
+	}
+	
+	public void setHeapSize(long heapSize) {
+		this.heapSize = heapSize;
+	}
+	
+	/**
+	 * the network is not used by the executor on its own, but by its traffic towards executors on other nodes, which is tracked by TrafficManager
+	 * @return the resources used by this executor
+	 */
+	public ResourceVector getResources() {
+		ResourceVector resources = new ResourceVector();
+		resources.set(ResourceVector.CPU, load);
+		resources.set(ResourceVector.HEAP, heapSize);
+		resources.set(ResourceVector.ALLOCATION, allocationRate);
+		resources.set(ResourceVector.IO, ioRate);
+		return resources;
+	}
+	
+	public float getBlockedFraction() {
+		return blockedFraction;
+	}
+	
+	public void setBlockedFraction(float blockedFraction) {
+		this.blockedFraction = blockedFraction;
+	}
 
 	@Override
 	public int hashCode() {
@@ -102,6 +152,17 @@ public class Executor {
 		this.node = node;
 	}
 
+	/**
+	 * @return the port of the worker the executor is currently running in
+	 */
+	public int getPort() {
+		return port;
+	}
+
+	public void setPort(int port) {
+		this.port = port;
+	}
+
 	public String getTopologyID() {
 		return topologyID;
 	}
@@ -15,6 +15,7 @@ public class ExecutorPair {
 	private final Executor source;
 	private final Executor destination;
 	private int traffic;
+	private long bytes; // bytes per second, whatever the unit of traffic
 	
 	public static long getKey(Executor source, Executor destination) {
 		return source.getBeginTask() << 32 + destination.getBeginTask();
@@ -40,6 +41,17 @@ public class ExecutorPair {
 	public void addTraffic(int traffic) {
 		this.traffic += traffic;
 	}
+	
+	/**
+	 * @return bytes per second exchanged by the executors of this pair, which flow through the network when they run on distinct nodes
+	 */
+	public long getBytes() {
+		return bytes;
+	}
+	
+	public void addBytes(long bytes) {
+		this.bytes += bytes;
+	}
 
 	@Override
 	public int hashCode() {
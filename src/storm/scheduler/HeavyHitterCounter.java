@@ -0,0 +1,119 @@
+/*******************************************************************************
+* Copyright (c) 2013 Leonardo Aniello, Roberto Baldoni, Leonardo Querzoni.
+* All rights reserved. This program and the accompanying materials
+* are made available under the terms of the Eclipse Public License v1.0
+* which accompanies this distribution, and is available at
+* http://www.eclipse.org/legal/epl-v10.html
+*
+* Contributors:
+* Leonardo Aniello, Roberto Baldoni, Leonardo Querzoni
+*******************************************************************************/
+package storm.scheduler;
+
+/**
+ * Space-Saving sketch counting tuples per task id with a fixed number of counters:
+ * when all the counters are in use, a task not monitored yet replaces the one with the lowest count and inherits it as error,
+ * so any task getting more than total/capacity tuples is guaranteed to be monitored and counts are overestimated by at most their error;
+ * not thread safe, it is meant to be updated by the thread of a single executor
+ * @author Leonardo
+ *
+ */
+public class HeavyHitterCounter {
+	
+	private final int[] keys;
+	private final long[] counts;
+	private final long[] errors;
+	private int size;
+	
+	/**
+	 * @param capacity number of task ids monitored at the same time
+	 */
+	public HeavyHitterCounter(int capacity) {
+		if (capacity < 1)
+			throw new RuntimeException("Wrong capacity value: " + capacity);
+		keys = new int[capacity];
+		counts = new long[capacity];
+		errors = new long[capacity];
+	}
+	
+	/**
+	 * adds the given amount to the count of the given task
+	 * @param taskId
+	 * @param amount
+	 */
+	public void add(int taskId, long amount) {
+		int min = 0;
+		for (int i = 0; i < size; i++) {
+			if (keys[i] == taskId) {
+				counts[i] += amount;
+				return;
+			}
+			if (counts[i] < counts[min])
+				min = i;
+		}
+		if (size < keys.length) {
+			keys[size] = taskId;
+			counts[size] = amount;
+			errors[size] = 0;
+			size++;
+		} else {
+			keys[min] = taskId;
+			errors[min] = counts[min];
+			counts[min] += amount;
+		}
+	}
+	
+	/**
+	 * @param taskId
+	 * @return the count of the given task, 0 if not monitored
+	 */
+	public long get(int taskId) {
+		for (int i = 0; i < size; i++)
+			if (keys[i] == taskId)
+				return counts[i];
+		return 0;
+	}
+	
+	/**
+	 * @param taskId
+	 * @return how much the count of the given task may be overestimated, 0 if it is exact
+	 */
+	public long getError(int taskId) {
+		for (int i = 0; i < size; i++)
+			if (keys[i] == taskId)
+				return errors[i];
+		return 0;
+	}
+	
+	/**
+	 * @param k
+	 * @return at most k monitored task ids, sorted by count descending
+	 */
+	public int[] getTopTaskIds(int k) {
+		int[] indexes = new int[size];
+		for (int i = 0; i < size; i++) {
+			// insertion sort, the sketch is small
+			int j = i;
+			while (j > 0 && counts[indexes[j - 1]] < counts[i]) {
+				indexes[j] = indexes[j - 1];
+				j--;
+			}
+			indexes[j] = i;
+		}
+		int[] taskIds = new int[Math.min(k, size)];
+		for (int i = 0; i < taskIds.length; i++)
+			taskIds[i] = keys[indexes[i]];
+		return taskIds;
+	}
+	
+	public int size() {
+		return size;
+	}
+	
+	/**
+	 * resets all the counters for the next time slot
+	 */
+	public void clear() {
+		size = 0;
+	}
+}
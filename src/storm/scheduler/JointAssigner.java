@@ -0,0 +1,239 @@
+/*******************************************************************************
+* Copyright (c) 2013 Leonardo Aniello, Roberto Baldoni, Leonardo Querzoni.
+* All rights reserved. This program and the accompanying materials
+* are made available under the terms of the Eclipse Public License v1.0
+* which accompanies this distribution, and is available at
+* http://www.eclipse.org/legal/epl-v10.html
+*
+* Contributors:
+* Leonardo Aniello, Roberto Baldoni, Leonardo Querzoni
+*******************************************************************************/
+package storm.scheduler;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.log4j.Logger;
+
+/**
+ * assigns executors directly to (node, slot) pairs in a single phase;
+ * each executor goes where the cost of the traffic towards the executors already assigned is the lowest,
+ * so that cheap inter-slot traffic (same node) can be told apart from expensive inter-node traffic
+ * @author Leonardo
+ *
+ */
+public class JointAssigner {
+	
+	private final Map<String, Topology> topologyMap; // topology ID -> topology
+	private final NodeManager nodeManager;
+	private final TrafficManager trafficManager;
+	private final CostModel costModel;
+	private Logger logger;
+	
+	/**
+	 * slot -> the node it is going to be assigned to
+	 */
+	private Map<Slot, Node> slotToNodeMap;
+	
+	/**
+	 * node -> resources used by the executors assigned to its slots
+	 */
+	private Map<Node, ResourceVector> nodeResourceMap;
+	
+	/**
+	 * node -> number of slots still available
+	 */
+	private Map<Node, Integer> availableSlotCountMap;
+	
+	public JointAssigner(List<Topology> topologyList, NodeManager nodeManager, TrafficManager trafficManager, CostModel costModel) {
+		this.nodeManager = nodeManager;
+		this.trafficManager = trafficManager;
+		this.costModel = costModel;
+		logger = Logger.getLogger(JointAssigner.class);
+		topologyMap = new HashMap<String, Topology>();
+		for (Topology topology : topologyList)
+			topologyMap.put(topology.getTopologyID(), topology);
+		slotToNodeMap = new HashMap<Slot, Node>();
+		nodeResourceMap = new HashMap<Node, ResourceVector>();
+		availableSlotCountMap = new HashMap<Node, Integer>();
+		for (Node node : nodeManager.getNodes()) {
+			nodeResourceMap.put(node, new ResourceVector(node.getResources()));
+			availableSlotCountMap.put(node, node.getAvailableSlotCount());
+		}
+	}
+	
+	/**
+	 * assigns the executors of the given pairs and moves an executor to each slot left empty, as the first phase does,
+	 * then assigns the used slots to their nodes so that the traffic manager tracks the resulting assignment
+	 * @param executorPairList the executor pairs of all the topologies, in the order they have to be considered
+	 */
+	public void assign(List<ExecutorPair> executorPairList) {
+		for (ExecutorPair executorPair : executorPairList) {
+			logger.debug("Executor pair: " + executorPair);
+			assign(executorPair.getSource());
+			assign(executorPair.getDestination());
+		}
+		
+		for (Topology topology : topologyMap.values())
+			if (!topology.getUsedSlots().isEmpty())
+				fillEmptySlots(topology);
+		
+		for (Topology topology : topologyMap.values())
+			trafficManager.addTopology(topology);
+		trafficManager.compileInterSlotTraffic();
+		for (Slot slot : slotToNodeMap.keySet())
+			slotToNodeMap.get(slot).assign(slot);
+	}
+	
+	/**
+	 * assigns the given executor, if not assigned yet, to the (node, slot) pair with the lowest traffic cost;
+	 * ties are broken in favour of the node with the lowest share of its dominant resource
+	 * @param executor
+	 */
+	private void assign(Executor executor) {
+		Topology topology = topologyMap.get(executor.getTopologyID());
+		if (topology.getSlot(executor) != null)
+			return;
+		
+		Slot bestSlot = null;
+		Node bestNode = null;
+		double bestCost = -1;
+		
+		// slots of the topology already in use
+		Slot emptySlot = null;
+		for (Slot slot : topology.getSlots()) {
+			Node node = slotToNodeMap.get(slot);
+			if (node == null) {
+				if (emptySlot == null)
+					emptySlot = slot;
+				continue;
+			}
+			if (slot.canAccept(executor) && canSustainLoad(node, executor)) {
+				double cost = getCost(executor, topology, slot, node);
+				if (isBetter(cost, node, bestCost, bestNode)) {
+					bestSlot = slot;
+					bestNode = node;
+					bestCost = cost;
+				}
+			}
+		}
+		
+		// empty slots of a topology are interchangeable, so a single one is tried on each node able to get it
+		if (emptySlot != null && emptySlot.canAccept(executor)) {
+			int maxSlotsPerNode = topology.getMaxNumberOfSlotsPerNode(nodeManager.getNodeCount());
+			for (Node node : nodeManager.getNodes()) {
+				if (availableSlotCountMap.get(node) > 0 && getTopologySlotCount(node, topology) < maxSlotsPerNode && canSustainLoad(node, executor)) {
+					double cost = getCost(executor, topology, emptySlot, node);
+					if (isBetter(cost, node, bestCost, bestNode)) {
+						bestSlot = emptySlot;
+						bestNode = node;
+						bestCost = cost;
+					}
+				}
+			}
+		}
+		
+		if (bestSlot == null)
+			throw new RuntimeException("Cannot find a slot able to get executor " + executor + " for topology " + topology);
+		
+		if (!slotToNodeMap.containsKey(bestSlot)) {
+			slotToNodeMap.put(bestSlot, bestNode);
+			availableSlotCountMap.put(bestNode, availableSlotCountMap.get(bestNode) - 1);
+		}
+		bestSlot.assign(executor);
+		nodeResourceMap.get(bestNode).add(executor.getResources());
+		logger.info("Executor " + executor + " assigned to slot " + bestSlot + " on node " + bestNode.getName() + " (traffic cost: " + bestCost + ")");
+	}
+	
+	/**
+	 * moves to each empty slot of the given topology the executor, taken from a slot with more than one executor, whose move costs the least;
+	 * the empty slot goes to the node where such cost is the lowest
+	 * @param topology
+	 */
+	private void fillEmptySlots(Topology topology) {
+		int maxSlotsPerNode = topology.getMaxNumberOfSlotsPerNode(nodeManager.getNodeCount());
+		for (Slot emptySlot : topology.getEmptySlots()) {
+			logger.debug("Find an executor to assign to slot " + emptySlot);
+			Executor bestExecutor = null;
+			Slot bestSlot = null;
+			Node bestNode = null;
+			double bestDelta = 0;
+			for (Slot usedSlot : topology.getUsedSlots()) {
+				if (usedSlot.getExecutors().size() < 2)
+					continue;
+				Node usedNode = slotToNodeMap.get(usedSlot);
+				for (Executor executor : new ArrayList<Executor>(usedSlot.getExecutors())) {
+					if (!emptySlot.canAccept(executor))
+						continue;
+					usedSlot.remove(executor);
+					nodeResourceMap.get(usedNode).subtract(executor.getResources());
+					double currentCost = getCost(executor, topology, usedSlot, usedNode);
+					for (Node node : nodeManager.getNodes()) {
+						if (availableSlotCountMap.get(node) > 0 && getTopologySlotCount(node, topology) < maxSlotsPerNode && canSustainLoad(node, executor)) {
+							double delta = getCost(executor, topology, emptySlot, node) - currentCost;
+							if (isBetter(delta, node, bestDelta, bestNode)) {
+								bestExecutor = executor;
+								bestSlot = usedSlot;
+								bestNode = node;
+								bestDelta = delta;
+							}
+						}
+					}
+					nodeResourceMap.get(usedNode).add(executor.getResources());
+					usedSlot.assign(executor);
+				}
+			}
+			
+			if (bestExecutor != null) {
+				bestSlot.remove(bestExecutor);
+				nodeResourceMap.get(slotToNodeMap.get(bestSlot)).subtract(bestExecutor.getResources());
+				slotToNodeMap.put(emptySlot, bestNode);
+				availableSlotCountMap.put(bestNode, availableSlotCountMap.get(bestNode) - 1);
+				emptySlot.assign(bestExecutor);
+				nodeResourceMap.get(bestNode).add(bestExecutor.getResources());
+				logger.info("Executor " + bestExecutor + " moved from slot " + bestSlot + " to slot " + emptySlot + " on node " + bestNode.getName() + " (traffic cost variation: " + bestDelta + ")");
+			} else {
+				logger.warn("Cannot find an executor to move to slot " + emptySlot);
+			}
+		}
+	}
+	
+	/**
+	 * @param executor
+	 * @param topology
+	 * @param slot
+	 * @param node
+	 * @return the cost of the traffic between the given executor, if placed in the given slot and node, and the executors already assigned
+	 */
+	private double getCost(Executor executor, Topology topology, Slot slot, Node node) {
+		double cost = 0;
+		for (ExecutorPair executorPair : topology.getTrafficManager().getInterExecutorTrafficList(executor)) {
+			Executor otherExecutor = executorPair.getSource();
+			if (otherExecutor.equals(executor))
+				otherExecutor = executorPair.getDestination();
+			Slot otherSlot = topology.getSlot(otherExecutor);
+			if (otherSlot != null)
+				cost += costModel.getCost(executorPair.getTraffic(), otherSlot.equals(slot), slotToNodeMap.get(otherSlot).equals(node));
+		}
+		return cost;
+	}
+	
+	private boolean isBetter(double cost, Node node, double bestCost, Node bestNode) {
+		return bestNode == null || cost < bestCost ||
+			(cost == bestCost && nodeManager.getDominantShare(node, nodeResourceMap.get(node)) < nodeManager.getDominantShare(bestNode, nodeResourceMap.get(bestNode)));
+	}
+	
+	private boolean canSustainLoad(Node node, Executor executor) {
+		return nodeResourceMap.get(node).canFit(executor.getResources(), node.getCapacityVector());
+	}
+	
+	private int getTopologySlotCount(Node node, Topology topology) {
+		int n = 0;
+		for (Slot slot : slotToNodeMap.keySet())
+			if (slot.getTopology().equals(topology) && slotToNodeMap.get(slot).equals(node))
+				n++;
+		return n;
+	}
+}
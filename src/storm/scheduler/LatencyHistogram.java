@@ -0,0 +1,128 @@
+/*******************************************************************************
+* Copyright (c) 2013 Leonardo Aniello, Roberto Baldoni, Leonardo Querzoni.
+* All rights reserved. This program and the accompanying materials
+* are made available under the terms of the Eclipse Public License v1.0
+* which accompanies this distribution, and is available at
+* http://www.eclipse.org/legal/epl-v10.html
+*
+* Contributors:
+* Leonardo Aniello, Roberto Baldoni, Leonardo Querzoni
+*******************************************************************************/
+package storm.scheduler;
+
+/**
+ * log-linear histogram of latencies in microseconds: values below 16 get a bucket each,
+ * then every power of 2 is split into 16 linear buckets, so that the relative error stays below 1/16;
+ * buckets are fixed, so recording a value takes constant time and never allocates
+ * @author Leonardo
+ *
+ */
+public class LatencyHistogram {
+	
+	private static final int SUB_BUCKET_BITS = 4;
+	private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+	private static final int MAX_EXPONENT = 36; // about 19 hours in microseconds, longer latencies are recorded as this
+	private static final int BUCKET_COUNT = (MAX_EXPONENT - SUB_BUCKET_BITS + 2) * SUB_BUCKET_COUNT;
+	private static final long MAX_VALUE = (1L << (MAX_EXPONENT + 1)) - 1;
+	
+	private final long[] buckets;
+	private long count;
+	private long max;
+	
+	public LatencyHistogram() {
+		buckets = new long[BUCKET_COUNT];
+	}
+	
+	/**
+	 * @param value latency in microseconds
+	 */
+	public void record(long value) {
+		if (value < 0)
+			value = 0;
+		if (value > MAX_VALUE)
+			value = MAX_VALUE;
+		buckets[indexOf(value)]++;
+		count++;
+		if (value > max)
+			max = value;
+	}
+	
+	/**
+	 * adds all the latencies recorded by the given histogram to this one
+	 * @param histogram
+	 */
+	public void add(LatencyHistogram histogram) {
+		for (int i = 0; i < BUCKET_COUNT; i++)
+			buckets[i] += histogram.buckets[i];
+		count += histogram.count;
+		if (histogram.max > max)
+			max = histogram.max;
+	}
+	
+	public void clear() {
+		for (int i = 0; i < BUCKET_COUNT; i++)
+			buckets[i] = 0;
+		count = 0;
+		max = 0;
+	}
+	
+	/**
+	 * @return a copy of this histogram
+	 */
+	public LatencyHistogram copy() {
+		LatencyHistogram histogram = new LatencyHistogram();
+		histogram.add(this);
+		return histogram;
+	}
+	
+	/**
+	 * @param percentile between 0 and 100
+	 * @return the upper bound of the bucket including the given percentile, in microseconds, 0 if nothing has been recorded
+	 */
+	public long getPercentile(double percentile) {
+		if (percentile < 0 || percentile > 100)
+			throw new RuntimeException("Wrong percentile value: " + percentile);
+		if (count == 0)
+			return 0;
+		long rank = Math.max(1, (long)Math.ceil(percentile / 100 * count));
+		long n = 0;
+		for (int i = 0; i < BUCKET_COUNT; i++) {
+			n += buckets[i];
+			if (n >= rank)
+				return Math.min(getUpperBound(i), max);
+		}
+		return max;
+	}
+	
+	public long getCount() {
+		return count;
+	}
+	
+	/**
+	 * @return the highest latency recorded, in microseconds
+	 */
+	public long getMax() {
+		return max;
+	}
+	
+	private static int indexOf(long value) {
+		if (value < SUB_BUCKET_COUNT)
+			return (int)value;
+		int exponent = 63 - Long.numberOfLeadingZeros(value);
+		int subBucket = (int)(value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKET_COUNT - 1);
+		return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKET_COUNT + subBucket;
+	}
+	
+	private static long getUpperBound(int index) {
+		if (index < SUB_BUCKET_COUNT)
+			return index;
+		int exponent = index / SUB_BUCKET_COUNT + SUB_BUCKET_BITS - 1;
+		long subBucket = index % SUB_BUCKET_COUNT;
+		return ((SUB_BUCKET_COUNT + subBucket + 1) << (exponent - SUB_BUCKET_BITS)) - 1;
+	}
+	
+	@Override
+	public String toString() {
+		return "{count: " + count + ", p50: " + getPercentile(50) + " us, p99: " + getPercentile(99) + " us, max: " + max + " us}";
+	}
+}
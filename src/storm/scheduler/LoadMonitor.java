@@ -10,23 +10,108 @@
 *******************************************************************************/
 package storm.scheduler;
 
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
 import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.MemoryUsage;
+import java.lang.management.ThreadInfo;
 import java.lang.management.ThreadMXBean;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Map;
-import java.util.Set;
 
 import cpuinfo.CPUInfo;
 
+/**
+ * samples the CPU time of the registered threads; threads are kept in primitive arrays indexed by registration slot,
+ * and all of them are sampled with a single call when the JVM provides the bulk API, so that the cost of a sample doesn't depend on boxing and map lookups;
+ * the CPU time of the rest of the worker (transfer and receive threads, GC, JIT) is sampled as well and classified as overhead
+ * @author Leonardo
+ *
+ */
 public class LoadMonitor {
 	
 	private static final int SECS_TO_NANOSECS = 1000000000;
+	private static final int INITIAL_CAPACITY = 16;
+	private static final String THREAD_SELF_DIR = "/proc/thread-self";
+	private static final String THREAD_IO_FILE = "/proc/self/task/%d/io";
+	
+	// contention stats of a thread, as provided by ThreadInfo
+	private static final int BLOCKED_TIME = 0; // ms spent waiting to enter a monitor
+	private static final int BLOCKED_COUNT = 1;
+	private static final int WAITED_TIME = 2; // ms spent in wait(), join(), park(), the input queue of an idle executor included
+	private static final int WAITED_COUNT = 3;
+	private static final int CONTENTION_STATS = 4;
+	
+	public static final String TRANSFER_OVERHEAD = "transfer"; // threads sending tuples to other workers, serialization included
+	public static final String RECEIVE_OVERHEAD = "receive"; // threads receiving tuples from other workers, deserialization included
+	public static final String NATIVE_OVERHEAD = "gc/jit"; // threads not visible to the JVM, such as GC and JIT compiler threads
+	public static final String OTHER_OVERHEAD = "other";
+	private static final String[] OVERHEAD_CATEGORIES = {TRANSFER_OVERHEAD, RECEIVE_OVERHEAD, NATIVE_OVERHEAD, OTHER_OVERHEAD};
+	private static final int TRANSFER = 0;
+	private static final int RECEIVE = 1;
+	private static final int NATIVE = 2;
+	private static final int OTHER = 3;
 
 	private static LoadMonitor instance = null;
 	
-	private final long cpuSpeed; // Hz
+	/**
+	 * nominal Hz, so that loads are expressed in cycles at nominal speed whatever the current frequency;
+	 * it is the average speed of the allowed processors, so that loads are on the same scale as the capacity of the node
+	 */
+	private long cpuSpeed;
+	
+	private final ThreadMXBean threadBean;
+	
+	/**
+	 * null if the JVM doesn't support sampling many threads with a single call
+	 */
+	private final com.sun.management.ThreadMXBean bulkThreadBean;
+	
+	private long[] threadIds; // registration slot -> thread id
+	private long[] cpuTimes; // registration slot -> CPU time at the latest sample, in ns
+	private long[] loads; // registration slot -> CPU cycles consumed between the latest two samples
+	private long[] allocatedBytes; // registration slot -> bytes allocated at the latest sample
+	private long[] allocations; // registration slot -> bytes allocated between the latest two samples
+	private int[] nativeThreadIds; // registration slot -> id of the thread for the OS, -1 if unknown
+	private long[] ioBytes; // registration slot -> bytes read from and written to storage at the latest sample
+	private long[] ioLoads; // registration slot -> bytes read from and written to storage between the latest two samples
+	private long[][] contentionStats; // registration slot -> contention stats at the latest sample
+	private long[][] contentions; // registration slot -> contention stats between the latest two samples
+	private int threadCount;
 	
-	Map<Long, Long> loadHistory;
+	/**
+	 * exactly threadCount ids, as required by the bulk API; rebuilt only when a thread is registered
+	 */
+	private long[] sampledThreadIds;
+	private long[] sortedThreadIds; // sampledThreadIds sorted, to tell registered threads apart from the others
+	
+	/**
+	 * null if the JVM doesn't provide the CPU time of the whole process
+	 */
+	private final com.sun.management.OperatingSystemMXBean osBean;
+	private long processCpuTime; // at the latest sample, in ns
+	
+	/*
+	 * threads not registered at the latest sample, sorted by id, with their CPU time in ns and overhead category;
+	 * the next arrays are filled in by the following sample, then swapped with these ones
+	 */
+	private long[] otherThreadIds;
+	private long[] otherCpuTimes;
+	private int[] otherCategories;
+	private int otherThreadCount;
+	private long[] nextThreadIds;
+	private long[] nextCpuTimes;
+	private int[] nextCategories;
+	private boolean overheadSampled; // false until the first sample, which only sets the CPU time baseline of the threads
+	
+	/**
+	 * category -> CPU cycles consumed by threads not registered between the latest two samples
+	 */
+	private long[] overheadLoads;
 	
 	public static LoadMonitor getInstance() {
 		if (instance == null)
@@ -35,31 +120,416 @@ public class LoadMonitor {
 	}
 	
 	private LoadMonitor() {
-		cpuSpeed = CPUInfo.getInstance().getCoreInfo(0).getSpeed();
+		cpuSpeed = CPUInfo.getInstance().getProcessorSpeed();
+		threadBean = ManagementFactory.getThreadMXBean();
+		if (threadBean instanceof com.sun.management.ThreadMXBean)
+			bulkThreadBean = (com.sun.management.ThreadMXBean)threadBean;
+		else
+			bulkThreadBean = null;
+		threadIds = new long[INITIAL_CAPACITY];
+		cpuTimes = new long[INITIAL_CAPACITY];
+		loads = new long[INITIAL_CAPACITY];
+		allocatedBytes = new long[INITIAL_CAPACITY];
+		allocations = new long[INITIAL_CAPACITY];
+		nativeThreadIds = new int[INITIAL_CAPACITY];
+		ioBytes = new long[INITIAL_CAPACITY];
+		ioLoads = new long[INITIAL_CAPACITY];
+		contentionStats = new long[INITIAL_CAPACITY][CONTENTION_STATS];
+		contentions = new long[INITIAL_CAPACITY][CONTENTION_STATS];
+		sampledThreadIds = new long[0];
+		sortedThreadIds = new long[0];
+		if (threadBean.isThreadContentionMonitoringSupported() && !threadBean.isThreadContentionMonitoringEnabled())
+			threadBean.setThreadContentionMonitoringEnabled(true);
+		if (bulkThreadBean != null && bulkThreadBean.isThreadAllocatedMemorySupported() && !bulkThreadBean.isThreadAllocatedMemoryEnabled())
+			bulkThreadBean.setThreadAllocatedMemoryEnabled(true);
+		if (ManagementFactory.getOperatingSystemMXBean() instanceof com.sun.management.OperatingSystemMXBean) {
+			osBean = (com.sun.management.OperatingSystemMXBean)ManagementFactory.getOperatingSystemMXBean();
+			processCpuTime = osBean.getProcessCpuTime();
+		} else
+			osBean = null;
+		otherThreadIds = new long[INITIAL_CAPACITY];
+		otherCpuTimes = new long[INITIAL_CAPACITY];
+		otherCategories = new int[INITIAL_CAPACITY];
+		nextThreadIds = new long[INITIAL_CAPACITY];
+		nextCpuTimes = new long[INITIAL_CAPACITY];
+		nextCategories = new int[INITIAL_CAPACITY];
+		overheadLoads = new long[OVERHEAD_CATEGORIES.length];
+	}
+	
+	/**
+	 * starts monitoring the given thread, if not monitored yet, without disk I/O accounting
+	 * @param threadId
+	 * @return the registration slot of the thread
+	 */
+	public synchronized int registerThread(long threadId) {
+		return registerThread(threadId, -1);
+	}
+	
+	/**
+	 * starts monitoring the given thread, if not monitored yet
+	 * @param threadId
+	 * @param nativeThreadId the id of the thread for the OS, as returned by getCurrentNativeThreadId(), -1 if unknown
+	 * @return the registration slot of the thread
+	 */
+	public synchronized int registerThread(long threadId, int nativeThreadId) {
+		for (int i = 0; i < threadCount; i++)
+			if (threadIds[i] == threadId)
+				return i;
+		if (threadCount == threadIds.length) {
+			threadIds = Arrays.copyOf(threadIds, threadCount * 2);
+			cpuTimes = Arrays.copyOf(cpuTimes, threadCount * 2);
+			loads = Arrays.copyOf(loads, threadCount * 2);
+			allocatedBytes = Arrays.copyOf(allocatedBytes, threadCount * 2);
+			allocations = Arrays.copyOf(allocations, threadCount * 2);
+			nativeThreadIds = Arrays.copyOf(nativeThreadIds, threadCount * 2);
+			ioBytes = Arrays.copyOf(ioBytes, threadCount * 2);
+			ioLoads = Arrays.copyOf(ioLoads, threadCount * 2);
+			contentionStats = Arrays.copyOf(contentionStats, threadCount * 2);
+			contentions = Arrays.copyOf(contentions, threadCount * 2);
+			for (int i = threadCount; i < threadCount * 2; i++) {
+				contentionStats[i] = new long[CONTENTION_STATS];
+				contentions[i] = new long[CONTENTION_STATS];
+			}
+		}
+		threadIds[threadCount] = threadId;
+		cpuTimes[threadCount] = Math.max(0, threadBean.getThreadCpuTime(threadId));
+		loads[threadCount] = 0;
+		allocatedBytes[threadCount] = isAllocationSampled() ? Math.max(0, bulkThreadBean.getThreadAllocatedBytes(threadId)) : 0;
+		allocations[threadCount] = 0;
+		nativeThreadIds[threadCount] = nativeThreadId;
+		ioBytes[threadCount] = Math.max(0, readIOBytes(nativeThreadId));
+		ioLoads[threadCount] = 0;
+		readContentionStats(threadBean.getThreadInfo(threadId), contentionStats[threadCount]);
+		Arrays.fill(contentions[threadCount], 0);
+		threadCount++;
+		sampledThreadIds = Arrays.copyOf(threadIds, threadCount);
+		sortedThreadIds = Arrays.copyOf(threadIds, threadCount);
+		Arrays.sort(sortedThreadIds);
+		return threadCount - 1;
+	}
+		
+	/**
+	 * samples the CPU time of all the registered threads, the load of each thread is then available through getLoad(),
+	 * and the CPU time of the rest of the worker, available through getOverheadLoads()
+	 */
+	public synchronized void sample() {
+		cpuSpeed = CPUInfo.getInstance().getProcessorSpeed(); // the allowed processors can change at runtime
+		sampleExecutors();
+		sampleOverhead();
+	}
+	
+	private void sampleExecutors() {
+		long[] currentCpuTimes = null;
+		if (bulkThreadBean != null) {
+			try {
+				currentCpuTimes = bulkThreadBean.getThreadCpuTime(sampledThreadIds);
+			} catch (UnsupportedOperationException e) {
+				// fall back to sampling one thread at a time
+			}
+		}
+		for (int i = 0; i < threadCount; i++) {
+			long cpuTime = (currentCpuTimes != null) ? currentCpuTimes[i] : threadBean.getThreadCpuTime(threadIds[i]);
+			if (cpuTime < 0) {
+				// the thread is not alive anymore
+				loads[i] = 0;
+				continue;
+			}
+			double deltaTime = (double)(cpuTime - cpuTimes[i]) / SECS_TO_NANOSECS; // sec
+			loads[i] = (long)(deltaTime * cpuSpeed);
+			cpuTimes[i] = cpuTime;
+		}
+		
+		if (isAllocationSampled()) {
+			long[] currentAllocatedBytes = bulkThreadBean.getThreadAllocatedBytes(sampledThreadIds);
+			for (int i = 0; i < threadCount; i++) {
+				if (currentAllocatedBytes[i] < 0) {
+					// the thread is not alive anymore
+					allocations[i] = 0;
+					continue;
+				}
+				allocations[i] = currentAllocatedBytes[i] - allocatedBytes[i];
+				allocatedBytes[i] = currentAllocatedBytes[i];
+			}
+		}
+		
+		for (int i = 0; i < threadCount; i++) {
+			long currentIOBytes = readIOBytes(nativeThreadIds[i]);
+			if (currentIOBytes < 0) {
+				// not available, or the thread is not alive anymore
+				ioLoads[i] = 0;
+				continue;
+			}
+			ioLoads[i] = currentIOBytes - ioBytes[i];
+			ioBytes[i] = currentIOBytes;
+		}
+		
+		ThreadInfo[] threadInfos = threadBean.getThreadInfo(sampledThreadIds);
+		long[] currentContentionStats = new long[CONTENTION_STATS];
+		for (int i = 0; i < threadCount; i++) {
+			if (!readContentionStats(threadInfos[i], currentContentionStats)) {
+				Arrays.fill(contentions[i], 0);
+				continue;
+			}
+			for (int j = 0; j < CONTENTION_STATS; j++) {
+				contentions[i][j] = currentContentionStats[j] - contentionStats[i][j];
+				contentionStats[i][j] = currentContentionStats[j];
+			}
+		}
+	}
+	
+	/**
+	 * @param threadInfo
+	 * @param stats filled in with the contention stats of the thread, zeroes if not available
+	 * @return false if the thread is not alive anymore or contention monitoring is not available
+	 */
+	private boolean readContentionStats(ThreadInfo threadInfo, long[] stats) {
+		if (threadInfo == null || threadInfo.getBlockedTime() < 0) {
+			Arrays.fill(stats, 0);
+			return false;
+		}
+		stats[BLOCKED_TIME] = threadInfo.getBlockedTime();
+		stats[BLOCKED_COUNT] = threadInfo.getBlockedCount();
+		stats[WAITED_TIME] = threadInfo.getWaitedTime();
+		stats[WAITED_COUNT] = threadInfo.getWaitedCount();
+		return true;
+	}
+	
+	/**
+	 * /proc/thread-self links to /proc/<pid>/task/<tid>, so it has to be invoked by the thread to identify
+	 * @return the id for the OS of the calling thread, -1 if not available (not Linux, or kernel older than 3.17)
+	 */
+	public static int getCurrentNativeThreadId() {
+		try {
+			String path = new File(THREAD_SELF_DIR).getCanonicalPath();
+			return Integer.parseInt(path.substring(path.lastIndexOf('/') + 1));
+		} catch (Exception e) {
+			return -1;
+		}
+	}
+	
+	/**
+	 * @param nativeThreadId
+	 * @return the bytes the given thread caused to be read from and written to storage, -1 if not available
+	 */
+	private long readIOBytes(int nativeThreadId) {
+		if (nativeThreadId < 0)
+			return -1;
+		BufferedReader br = null;
+		try {
+			br = new BufferedReader(new FileReader(String.format(THREAD_IO_FILE, nativeThreadId)));
+			long bytes = 0;
+			String line = null;
+			while ((line = br.readLine()) != null)
+				if (line.startsWith("read_bytes:") || line.startsWith("write_bytes:"))
+					bytes += Long.parseLong(line.substring(line.indexOf(':') + 1).trim());
+			return bytes;
+		} catch (Exception e) {
+			return -1;
+		} finally {
+			try {
+				if (br != null)
+					br.close();
+			} catch (Exception e) {
+				// nothing to do
+			}
+		}
 	}
 	
-	public Map<Long, Long> getLoadInfo(Set<Long> threadIds) {
-		// get current load
-		Map<Long, Long> currentLoadInfo = new HashMap<Long, Long>();
-		ThreadMXBean threadBean = ManagementFactory.getThreadMXBean();
-		for (long id : threadIds)
-			currentLoadInfo.put(id, threadBean.getThreadCpuTime(id));
+	private boolean isAllocationSampled() {
+		return bulkThreadBean != null && bulkThreadBean.isThreadAllocatedMemorySupported() && bulkThreadBean.isThreadAllocatedMemoryEnabled();
+	}
+		
+	/**
+	 * the overhead of the threads visible to the JVM is classified by thread name;
+	 * what the process consumed beyond the threads visible to the JVM is GC and JIT compilation
+	 */
+	private void sampleOverhead() {
+		long executorLoad = 0;
+		for (int i = 0; i < threadCount; i++)
+			executorLoad += loads[i];
 		
-		// compute difference wrt history
-		Map<Long, Long> loadInfo = new HashMap<Long, Long>();
-		for (long id : threadIds) {
-			// Long oldObj = (loadHistory != null)?loadHistory.get(id):0;
-			// long old = (oldObj != null)?oldObj.longValue():0;
-			long old = 0;
-			if (loadHistory != null && loadHistory.get(id) != null)
-				old = loadHistory.get(id);
-			double deltaTime = (double)(currentLoadInfo.get(id) - old) / SECS_TO_NANOSECS; // sec
-			loadInfo.put(id, (long)(deltaTime * cpuSpeed));
+		// thread ids are sorted, so that the previous sample of each thread is found by walking both lists together
+		long[] allThreadIds = threadBean.getAllThreadIds();
+		Arrays.sort(allThreadIds);
+		long[] currentCpuTimes = null;
+		if (bulkThreadBean != null) {
+			try {
+				currentCpuTimes = bulkThreadBean.getThreadCpuTime(allThreadIds);
+			} catch (UnsupportedOperationException e) {
+				// fall back to sampling one thread at a time
+			}
+		}
+		if (nextThreadIds.length < allThreadIds.length) {
+			nextThreadIds = new long[allThreadIds.length * 2];
+			nextCpuTimes = new long[allThreadIds.length * 2];
+			nextCategories = new int[allThreadIds.length * 2];
 		}
 		
-		// replace history with current
-		loadHistory = currentLoadInfo;
+		Arrays.fill(overheadLoads, 0);
+		long javaThreadLoad = executorLoad;
+		int nextThreadCount = 0;
+		int previous = 0;
+		for (int i = 0; i < allThreadIds.length; i++) {
+			long threadId = allThreadIds[i];
+			if (Arrays.binarySearch(sortedThreadIds, threadId) >= 0)
+				continue;
+			long cpuTime = (currentCpuTimes != null) ? currentCpuTimes[i] : threadBean.getThreadCpuTime(threadId);
+			if (cpuTime < 0)
+				continue; // the thread is not alive anymore
+			while (previous < otherThreadCount && otherThreadIds[previous] < threadId)
+				previous++;
+			long lastCpuTime = 0;
+			int category;
+			if (previous < otherThreadCount && otherThreadIds[previous] == threadId) {
+				lastCpuTime = otherCpuTimes[previous];
+				category = otherCategories[previous];
+			} else {
+				// a thread started since the latest sample, its name is read only once
+				category = getOverheadCategory(threadBean.getThreadInfo(threadId));
+			}
+			nextThreadIds[nextThreadCount] = threadId;
+			nextCpuTimes[nextThreadCount] = cpuTime;
+			nextCategories[nextThreadCount] = category;
+			nextThreadCount++;
+			long load = (long)((double)(cpuTime - lastCpuTime) / SECS_TO_NANOSECS * cpuSpeed);
+			overheadLoads[category] += load;
+			javaThreadLoad += load;
+		}
+		long[] tmpThreadIds = otherThreadIds;
+		long[] tmpCpuTimes = otherCpuTimes;
+		int[] tmpCategories = otherCategories;
+		otherThreadIds = nextThreadIds;
+		otherCpuTimes = nextCpuTimes;
+		otherCategories = nextCategories;
+		otherThreadCount = nextThreadCount;
+		nextThreadIds = tmpThreadIds;
+		nextCpuTimes = tmpCpuTimes;
+		nextCategories = tmpCategories;
 		
-		return loadInfo;
+		long processLoad = 0;
+		if (osBean != null) {
+			long currentProcessCpuTime = osBean.getProcessCpuTime();
+			processLoad = (long)((double)(currentProcessCpuTime - processCpuTime) / SECS_TO_NANOSECS * cpuSpeed);
+			processCpuTime = currentProcessCpuTime;
+		}
+		
+		if (!overheadSampled) {
+			// the CPU time of the threads and of the process since they started is not overhead of this sample
+			overheadSampled = true;
+			Arrays.fill(overheadLoads, 0);
+			return;
+		}
+		if (osBean != null)
+			overheadLoads[NATIVE] = Math.max(0, processLoad - javaThreadLoad);
+	}
+	
+	/**
+	 * @param threadInfo
+	 * @return the category of overhead of a thread not running an executor, based on the names Storm gives to worker threads
+	 */
+	private int getOverheadCategory(ThreadInfo threadInfo) {
+		if (threadInfo == null)
+			return OTHER;
+		String name = threadInfo.getThreadName().toLowerCase();
+		if (name.contains("transfer") || name.contains("send"))
+			return TRANSFER;
+		if (name.contains("receive") || name.contains("virtual-port") || name.contains("zmq") || name.contains("netty"))
+			return RECEIVE;
+		return OTHER;
+	}
+	
+	/**
+	 * @return category -> CPU cycles consumed by the threads of the worker not running executors between the latest two samples
+	 */
+	public synchronized Map<String, Long> getOverheadLoads() {
+		Map<String, Long> overheadLoadMap = new HashMap<String, Long>();
+		for (int i = 0; i < OVERHEAD_CATEGORIES.length; i++)
+			overheadLoadMap.put(OVERHEAD_CATEGORIES[i], overheadLoads[i]);
+		return overheadLoadMap;
+	}
+		
+	public synchronized int getThreadCount() {
+		return threadCount;
+	}
+		
+	/**
+	 * @param slot
+	 * @return the id of the thread registered in the given slot
+	 */
+	public synchronized long getThreadId(int slot) {
+		return threadIds[slot];
+	}
+	
+	/**
+	 * @param slot
+	 * @return the CPU cycles consumed by the thread registered in the given slot between the latest two samples
+	 */
+	public synchronized long getLoad(int slot) {
+		return loads[slot];
+	}
+	
+	/**
+	 * @param slot
+	 * @return the bytes allocated by the thread registered in the given slot between the latest two samples, 0 if the JVM cannot measure it
+	 */
+	public synchronized long getAllocation(int slot) {
+		return allocations[slot];
+	}
+	
+	/**
+	 * @param slot
+	 * @return the bytes read from and written to storage by the thread registered in the given slot between the latest two samples,
+	 * 0 if the OS cannot account for it
+	 */
+	public synchronized long getIOLoad(int slot) {
+		return ioLoads[slot];
+	}
+	
+	/**
+	 * @param slot
+	 * @return the ms the thread registered in the given slot has been blocked waiting to enter a monitor between the latest two samples
+	 */
+	public synchronized long getBlockedTime(int slot) {
+		return contentions[slot][BLOCKED_TIME];
+	}
+	
+	public synchronized long getBlockedCount(int slot) {
+		return contentions[slot][BLOCKED_COUNT];
+	}
+	
+	/**
+	 * @param slot
+	 * @return the ms the thread registered in the given slot has been waiting between the latest two samples,
+	 * which includes the time an idle executor waits for tuples
+	 */
+	public synchronized long getWaitedTime(int slot) {
+		return contentions[slot][WAITED_TIME];
+	}
+	
+	public synchronized long getWaitedCount(int slot) {
+		return contentions[slot][WAITED_COUNT];
+	}
+	
+	/**
+	 * the heap still used after the latest collection of each pool is made of live objects, mostly the state kept by executors
+	 * @return bytes of heap of this worker surviving garbage collection, 0 if no collection has occurred yet
+	 */
+	public long getLiveHeap() {
+		long liveHeap = 0;
+		for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+			if (pool.getType() != MemoryType.HEAP || !pool.isValid())
+				continue;
+			MemoryUsage usage = pool.getCollectionUsage();
+			if (usage != null)
+				liveHeap += usage.getUsed();
+		}
+		return liveHeap;
+	}
+	
+	/**
+	 * @return the max bytes of heap of this worker, as set by -Xmx, -1 if not defined
+	 */
+	public long getMaxHeap() {
+		return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getMax();
 	}
 }
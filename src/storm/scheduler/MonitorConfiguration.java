@@ -19,8 +19,14 @@ public class MonitorConfiguration {
 
 	private static MonitorConfiguration instance = null;
 	
+	private static final int DEFAULT_TUPLE_SIZE_SAMPLING_INTERVAL = 100;
+	private static final int DEFAULT_CAPACITY_CHECK_INTERVAL = 60;
+	
 	private int timeWindowSlotCount;
 	private int timeWindowSlotLength;
+	private int tupleSizeSamplingInterval;
+	private boolean latencyMonitoring;
+	private int capacityCheckInterval;
 	
 	private Logger logger;
 	
@@ -36,6 +42,9 @@ public class MonitorConfiguration {
 			
 			timeWindowSlotCount = Integer.parseInt(properties.getProperty("time.window.slot.count"));
 			timeWindowSlotLength = Integer.parseInt(properties.getProperty("time.window.slot.length"));
+			tupleSizeSamplingInterval = Integer.parseInt(properties.getProperty("tuple.size.sampling.interval", "" + DEFAULT_TUPLE_SIZE_SAMPLING_INTERVAL));
+			latencyMonitoring = Boolean.parseBoolean(properties.getProperty("latency.monitoring", "false"));
+			capacityCheckInterval = Integer.parseInt(properties.getProperty("capacity.check.interval", "" + DEFAULT_CAPACITY_CHECK_INTERVAL));
 		} catch (Exception e) {
 			logger.error("Error loading MonitorConfiguration configuration from file", e);
 		}
@@ -61,4 +70,25 @@ public class MonitorConfiguration {
 	public int getTimeWindowSlotCount() {
 		return timeWindowSlotCount;
 	}
+	
+	/*
+	 * @Return the number of tuples received between two estimates of the size of a tuple
+	 */
+	public int getTupleSizeSamplingInterval() {
+		return tupleSizeSamplingInterval;
+	}
+	
+	/*
+	 * @Return true if the time spent by bolts in execute() has to be measured
+	 */
+	public boolean isLatencyMonitoring() {
+		return latencyMonitoring;
+	}
+	
+	/*
+	 * @Return the interval between two checks of the CPU limits of the worker (cgroup quota, cpuset, affinity), in seconds
+	 */
+	public int getCapacityCheckInterval() {
+		return capacityCheckInterval;
+	}
 }
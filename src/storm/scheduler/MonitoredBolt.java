@@ -0,0 +1,71 @@
+/*******************************************************************************
+* Copyright (c) 2013 Leonardo Aniello, Roberto Baldoni, Leonardo Querzoni.
+* All rights reserved. This program and the accompanying materials
+* are made available under the terms of the Eclipse Public License v1.0
+* which accompanies this distribution, and is available at
+* http://www.eclipse.org/legal/epl-v10.html
+*
+* Contributors:
+* Leonardo Aniello, Roberto Baldoni, Leonardo Querzoni
+*******************************************************************************/
+package storm.scheduler;
+
+import java.util.Map;
+
+import backtype.storm.task.OutputCollector;
+import backtype.storm.task.TopologyContext;
+import backtype.storm.topology.IRichBolt;
+import backtype.storm.topology.OutputFieldsDeclarer;
+import backtype.storm.tuple.Tuple;
+
+/**
+ * wraps a bolt so that both the tuples it receives and the ones it emits are monitored,
+ * without any change to the code of the bolt
+ * @author Leonardo
+ *
+ */
+public class MonitoredBolt implements IRichBolt {
+	
+	private static final long serialVersionUID = 1L;
+	
+	private final IRichBolt delegate;
+	private transient TaskMonitor taskMonitor;
+	
+	public MonitoredBolt(IRichBolt delegate) {
+		this.delegate = delegate;
+	}
+	
+	@SuppressWarnings("rawtypes")
+	@Override
+	public void prepare(Map stormConf, TopologyContext context, OutputCollector collector) {
+		WorkerMonitor.getInstance().setContextInfo(context);
+		taskMonitor = new TaskMonitor(context.getThisTaskId(), context.getThisComponentId(), Utils.getTrafficSamplingInterval(stormConf), Utils.getHeavyHitterCount(stormConf));
+		delegate.prepare(stormConf, context, new OutputCollector(new MonitoredOutputCollector(collector, taskMonitor)));
+	}
+	
+	@Override
+	public void execute(Tuple input) {
+		taskMonitor.notifyTupleReceived(input);
+		if (taskMonitor.isLatencyMonitoring()) {
+			long begin = System.nanoTime();
+			delegate.execute(input);
+			taskMonitor.notifyTupleExecuted(System.nanoTime() - begin);
+		} else
+			delegate.execute(input);
+	}
+	
+	@Override
+	public void cleanup() {
+		delegate.cleanup();
+	}
+	
+	@Override
+	public void declareOutputFields(OutputFieldsDeclarer declarer) {
+		delegate.declareOutputFields(declarer);
+	}
+	
+	@Override
+	public Map<String, Object> getComponentConfiguration() {
+		return delegate.getComponentConfiguration();
+	}
+}
@@ -0,0 +1,63 @@
+/*******************************************************************************
+* Copyright (c) 2013 Leonardo Aniello, Roberto Baldoni, Leonardo Querzoni.
+* All rights reserved. This program and the accompanying materials
+* are made available under the terms of the Eclipse Public License v1.0
+* which accompanies this distribution, and is available at
+* http://www.eclipse.org/legal/epl-v10.html
+*
+* Contributors:
+* Leonardo Aniello, Roberto Baldoni, Leonardo Querzoni
+*******************************************************************************/
+package storm.scheduler;
+
+import java.util.Collection;
+import java.util.List;
+
+import backtype.storm.task.IOutputCollector;
+import backtype.storm.tuple.Tuple;
+
+/**
+ * decorates the output collector of a bolt so that the tuples it emits are counted per destination task;
+ * use it as new OutputCollector(new MonitoredOutputCollector(collector, taskMonitor))
+ * @author Leonardo
+ *
+ */
+public class MonitoredOutputCollector implements IOutputCollector {
+	
+	private final IOutputCollector delegate;
+	private final TaskMonitor taskMonitor;
+	
+	public MonitoredOutputCollector(IOutputCollector delegate, TaskMonitor taskMonitor) {
+		this.delegate = delegate;
+		this.taskMonitor = taskMonitor;
+	}
+	
+	@Override
+	public List<Integer> emit(String streamId, Collection<Tuple> anchors, List<Object> tuple) {
+		List<Integer> taskIds = delegate.emit(streamId, anchors, tuple);
+		if (taskIds != null)
+			taskMonitor.notifyTupleEmitted(streamId, taskIds);
+		return taskIds;
+	}
+	
+	@Override
+	public void emitDirect(int taskId, String streamId, Collection<Tuple> anchors, List<Object> tuple) {
+		delegate.emitDirect(taskId, streamId, anchors, tuple);
+		taskMonitor.notifyTupleEmitted(streamId, taskId);
+	}
+	
+	@Override
+	public void ack(Tuple input) {
+		delegate.ack(input);
+	}
+	
+	@Override
+	public void fail(Tuple input) {
+		delegate.fail(input);
+	}
+	
+	@Override
+	public void reportError(Throwable error) {
+		delegate.reportError(error);
+	}
+}
@@ -0,0 +1,82 @@
+/*******************************************************************************
+* Copyright (c) 2013 Leonardo Aniello, Roberto Baldoni, Leonardo Querzoni.
+* All rights reserved. This program and the accompanying materials
+* are made available under the terms of the Eclipse Public License v1.0
+* which accompanies this distribution, and is available at
+* http://www.eclipse.org/legal/epl-v10.html
+*
+* Contributors:
+* Leonardo Aniello, Roberto Baldoni, Leonardo Querzoni
+*******************************************************************************/
+package storm.scheduler;
+
+import java.util.Map;
+
+import backtype.storm.spout.SpoutOutputCollector;
+import backtype.storm.task.TopologyContext;
+import backtype.storm.topology.IRichSpout;
+import backtype.storm.topology.OutputFieldsDeclarer;
+
+/**
+ * wraps a spout so that the tuples it emits are monitored, without any change to the code of the spout
+ * @author Leonardo
+ *
+ */
+public class MonitoredSpout implements IRichSpout {
+	
+	private static final long serialVersionUID = 1L;
+	
+	private final IRichSpout delegate;
+	
+	public MonitoredSpout(IRichSpout delegate) {
+		this.delegate = delegate;
+	}
+	
+	@SuppressWarnings("rawtypes")
+	@Override
+	public void open(Map conf, TopologyContext context, SpoutOutputCollector collector) {
+		WorkerMonitor.getInstance().setContextInfo(context);
+		TaskMonitor taskMonitor = new TaskMonitor(context.getThisTaskId(), context.getThisComponentId(), Utils.getTrafficSamplingInterval(conf), Utils.getHeavyHitterCount(conf));
+		delegate.open(conf, context, new SpoutOutputCollector(new MonitoredSpoutOutputCollector(collector, taskMonitor)));
+	}
+	
+	@Override
+	public void close() {
+		delegate.close();
+	}
+	
+	@Override
+	public void activate() {
+		delegate.activate();
+	}
+	
+	@Override
+	public void deactivate() {
+		delegate.deactivate();
+	}
+	
+	@Override
+	public void nextTuple() {
+		delegate.nextTuple();
+	}
+	
+	@Override
+	public void ack(Object msgId) {
+		delegate.ack(msgId);
+	}
+	
+	@Override
+	public void fail(Object msgId) {
+		delegate.fail(msgId);
+	}
+	
+	@Override
+	public void declareOutputFields(OutputFieldsDeclarer declarer) {
+		delegate.declareOutputFields(declarer);
+	}
+	
+	@Override
+	public Map<String, Object> getComponentConfiguration() {
+		return delegate.getComponentConfiguration();
+	}
+}
@@ -0,0 +1,51 @@
+/*******************************************************************************
+* Copyright (c) 2013 Leonardo Aniello, Roberto Baldoni, Leonardo Querzoni.
+* All rights reserved. This program and the accompanying materials
+* are made available under the terms of the Eclipse Public License v1.0
+* which accompanies this distribution, and is available at
+* http://www.eclipse.org/legal/epl-v10.html
+*
+* Contributors:
+* Leonardo Aniello, Roberto Baldoni, Leonardo Querzoni
+*******************************************************************************/
+package storm.scheduler;
+
+import java.util.List;
+
+import backtype.storm.spout.ISpoutOutputCollector;
+
+/**
+ * decorates the output collector of a spout so that the tuples it emits are counted per destination task;
+ * use it as new SpoutOutputCollector(new MonitoredSpoutOutputCollector(collector, taskMonitor))
+ * @author Leonardo
+ *
+ */
+public class MonitoredSpoutOutputCollector implements ISpoutOutputCollector {
+	
+	private final ISpoutOutputCollector delegate;
+	private final TaskMonitor taskMonitor;
+	
+	public MonitoredSpoutOutputCollector(ISpoutOutputCollector delegate, TaskMonitor taskMonitor) {
+		this.delegate = delegate;
+		this.taskMonitor = taskMonitor;
+	}
+	
+	@Override
+	public List<Integer> emit(String streamId, List<Object> tuple, Object messageId) {
+		List<Integer> taskIds = delegate.emit(streamId, tuple, messageId);
+		if (taskIds != null)
+			taskMonitor.notifyTupleEmitted(streamId, taskIds);
+		return taskIds;
+	}
+	
+	@Override
+	public void emitDirect(int taskId, String streamId, List<Object> tuple, Object messageId) {
+		delegate.emitDirect(taskId, streamId, tuple, messageId);
+		taskMonitor.notifyTupleEmitted(streamId, taskId);
+	}
+	
+	@Override
+	public void reportError(Throwable error) {
+		delegate.reportError(error);
+	}
+}
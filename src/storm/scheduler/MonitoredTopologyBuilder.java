@@ -0,0 +1,40 @@
+/*******************************************************************************
+* Copyright (c) 2013 Leonardo Aniello, Roberto Baldoni, Leonardo Querzoni.
+* All rights reserved. This program and the accompanying materials
+* are made available under the terms of the Eclipse Public License v1.0
+* which accompanies this distribution, and is available at
+* http://www.eclipse.org/legal/epl-v10.html
+*
+* Contributors:
+* Leonardo Aniello, Roberto Baldoni, Leonardo Querzoni
+*******************************************************************************/
+package storm.scheduler;
+
+import backtype.storm.topology.BoltDeclarer;
+import backtype.storm.topology.IRichBolt;
+import backtype.storm.topology.IRichSpout;
+import backtype.storm.topology.SpoutDeclarer;
+import backtype.storm.topology.TopologyBuilder;
+
+/**
+ * drop-in replacement of TopologyBuilder that wraps every bolt and spout so that their traffic is monitored;
+ * the overloads without parallelism hint end up in the ones overridden here
+ * @author Leonardo
+ *
+ */
+public class MonitoredTopologyBuilder extends TopologyBuilder {
+	
+	@Override
+	public BoltDeclarer setBolt(String id, IRichBolt bolt, Number parallelismHint) {
+		if (!(bolt instanceof MonitoredBolt))
+			bolt = new MonitoredBolt(bolt);
+		return super.setBolt(id, bolt, parallelismHint);
+	}
+	
+	@Override
+	public SpoutDeclarer setSpout(String id, IRichSpout spout, Number parallelismHint) {
+		if (!(spout instanceof MonitoredSpout))
+			spout = new MonitoredSpout(spout);
+		return super.setSpout(id, spout, parallelismHint);
+	}
+}
@@ -11,6 +11,7 @@
 package storm.scheduler;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -20,29 +21,73 @@ public class Node {
 	private final String name;
 	private final long capacity;
 	private final int cores;
-	private long load;
+	private final int numaNodes; // slots of this node are bound to NUMA nodes, 1 if the node is not NUMA
+	private ResourceVector resources; // resources used by the slots of this node
+	private long ioCapacity; // bytes per second the storage of this node can sustain, 0 if not limited
+	private long networkCapacity; // bytes per second the network interfaces of this node can sustain, 0 if not limited
 	private int totalSlotCount;
 	private int availableSlotCount;
 	private Map<Integer, Slot> slotMap; // slot.hashcode() -> slot
 	private int nodeCount;
+	private TrafficManager trafficManager; // keeps inter-node traffic stats updated as slots are assigned
 	
 	public Node(String name, long capacity, int cores) {
+		this(name, capacity, cores, 1);
+	}
+	
+	public Node(String name, long capacity, int cores, int numaNodes) {
 		this.name = name;
 		this.capacity = capacity;
 		this.cores = cores;
+		this.numaNodes = Math.max(1, numaNodes);
+		resources = new ResourceVector();
 		slotMap = new HashMap<Integer, Slot>();
 	}
 	
+	/**
+	 * creates a copy of the given node, with the same configuration and no slot assigned, whose assignments are tracked by the given traffic manager
+	 * @param node
+	 * @param trafficManager
+	 */
+	public Node(Node node, TrafficManager trafficManager) {
+		this(node.name, node.capacity, node.cores, node.numaNodes);
+		resources = new ResourceVector(node.resources);
+		ioCapacity = node.ioCapacity;
+		networkCapacity = node.networkCapacity;
+		setTotalSlots(node.totalSlotCount);
+		nodeCount = node.nodeCount;
+		this.trafficManager = trafficManager;
+	}
+	
 	public void setNodeCount(int nodeCount) {
 		this.nodeCount = nodeCount;
 	}
 
 	public long getLoad() {
-		return load;
+		return resources.get(ResourceVector.CPU);
 	}
 	
 	public void addLoad(long load) {
-		this.load += load;
+		resources.set(ResourceVector.CPU, getLoad() + load);
+	}
+	
+	public ResourceVector getResources() {
+		return resources;
+	}
+	
+	/**
+	 * @return bytes per second exchanged by the slots of this node with slots of other nodes
+	 */
+	public long getNetworkRate() {
+		return resources.get(ResourceVector.NETWORK);
+	}
+	
+	/**
+	 * invoked by the traffic manager, as the network used by a node depends on where the slots its slots communicate with are assigned
+	 * @param bytes bytes per second added to the inter-node traffic of this node, negative if removed
+	 */
+	public void addNetworkRate(long bytes) {
+		resources.set(ResourceVector.NETWORK, getNetworkRate() + bytes);
 	}
 	
 	public boolean contains(Slot slot) {
@@ -50,7 +95,7 @@ public class Node {
 	}
 	
 	public boolean canAssign(Slot slot) {
-		return !contains(slot) && hasAvailableSlots() && canSustainLoad(slot.getLoad()) &&
+		return !contains(slot) && hasAvailableSlots() && canSustain(slot.getResources()) && canSustainNetwork(Collections.singletonList(slot)) &&
 				getTopologySlotCount(slot.getTopology().getTopologyID()) < slot.getTopology().getMaxNumberOfSlotsPerNode(nodeCount);
 	}
 	
@@ -63,21 +108,21 @@ public class Node {
 			throw new RuntimeException("Slot " + slot + " already assigned to this node");
 		if (!hasAvailableSlots())
 			throw new RuntimeException("No more slots available for this node");
-		if (!canSustainLoad(slot.getLoad()))
-			throw new RuntimeException("This node cannot sustain the load of slot " + slot);
+		if (!canSustain(slot.getResources()))
+			throw new RuntimeException("This node cannot sustain the resources " + slot.getResources() + " of slot " + slot);
 		slotMap.put(slot.hashCode(), slot);
-		this.load += load;
+		resources.add(slot.getResources());
 		availableSlotCount--;
-		TrafficManager.getInstance().slotAssigned(this, slot);
+		trafficManager.slotAssigned(this, slot);
 	}
 	
 	public void remove(Slot slot) {
 		if (!contains(slot))
 			throw new RuntimeException("Cannot remove slot " + slot + " from this node it is not contained here");
 		slotMap.remove(slot.hashCode());
-		this.load -= load;
+		resources.subtract(slot.getResources());
 		availableSlotCount++;
-		TrafficManager.getInstance().slotRemoved(this, slot);
+		trafficManager.slotRemoved(this, slot);
 	}
 
 	public int getTotalSlots() {
@@ -97,8 +142,50 @@ public class Node {
 		return availableSlotCount;
 	}
 	
-	public boolean canSustainLoad(long load) {
-		return this.load + load <= capacity;
+	/**
+	 * @param demand
+	 * @return true if this node can sustain the given additional resources
+	 */
+	public boolean canSustain(ResourceVector demand) {
+		return resources.canFit(demand, getCapacityVector());
+	}
+	
+	/**
+	 * @param slotList slots not assigned yet
+	 * @return true if the network of this node, and of the nodes the given slots would exchange bytes with, can sustain the additional inter-node traffic
+	 */
+	public boolean canSustainNetwork(List<Slot> slotList) {
+		return trafficManager == null || trafficManager.canSustainNetwork(this, slotList);
+	}
+	
+	/**
+	 * heap and allocation rate are limited per slot rather than per node
+	 * @return the resources available to the slots of this node, a negative value for the resources that are not limited
+	 */
+	public ResourceVector getCapacityVector() {
+		ResourceVector capacityVector = ResourceVector.unlimited();
+		capacityVector.set(ResourceVector.CPU, capacity);
+		if (networkCapacity > 0)
+			capacityVector.set(ResourceVector.NETWORK, networkCapacity);
+		if (ioCapacity > 0)
+			capacityVector.set(ResourceVector.IO, ioCapacity);
+		return capacityVector;
+	}
+	
+	public void setIOCapacity(long ioCapacity) {
+		this.ioCapacity = ioCapacity;
+	}
+	
+	public long getIOCapacity() {
+		return ioCapacity;
+	}
+	
+	public void setNetworkCapacity(long networkCapacity) {
+		this.networkCapacity = networkCapacity;
+	}
+	
+	public long getNetworkCapacity() {
+		return networkCapacity;
 	}
 	
 	public String getName() {
@@ -136,13 +223,25 @@ public class Node {
 
 	@Override
 	public String toString() {
-		return name + " [cores: " + cores + ", current load: " + load + "/" + capacity + "; available slots: " + availableSlotCount + "/" + totalSlotCount + "]";
+		return name + " [cores: " + cores + (numaNodes > 1 ? ", NUMA nodes: " + numaNodes : "") + ", current load: " + getLoad() + "/" + capacity + "; available slots: " + availableSlotCount + "/" + totalSlotCount + "]";
 	}
 
 	public int getCores() {
 		return cores;
 	}
 	
+	public int getNumaNodeCount() {
+		return numaNodes;
+	}
+	
+	/**
+	 * slots are spread evenly across NUMA nodes, so that each of them gets its share of cores and memory
+	 * @return the max number of slots that can be bound to a NUMA node of this node
+	 */
+	public int getMaxSlotsPerNumaNode() {
+		return (totalSlotCount + numaNodes - 1) / numaNodes;
+	}
+	
 	public int getTopologySlotCount(String topologyId) {
 		int n = 0;
 		for (Slot slot : slotMap.values())
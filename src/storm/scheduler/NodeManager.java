@@ -10,7 +10,10 @@
 *******************************************************************************/
 package storm.scheduler;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -32,6 +35,11 @@ public class NodeManager {
 	 */
 	private Map<String, Integer> maxSlotsPerNodePerTopologyMap;
 	
+	/**
+	 * resources used by all the executors of all the topologies, to weigh the resources that nodes don't limit
+	 */
+	private ResourceVector totalResources;
+	
 	private Logger logger;
 	
 	public NodeManager(List<Topology> topologyList, Cluster cluster) {
@@ -55,7 +63,9 @@ public class NodeManager {
 			}
 			
 			maxSlotsPerNodePerTopologyMap = new HashMap<String, Integer>();
+			totalResources = new ResourceVector();
 			for (Topology topology : topologyList) {
+				totalResources.add(topology.getTotalResources());
 				int slotsPerNode = topology.getMaxNumberOfSlotsPerNode(nodeMap.keySet().size());
 				maxSlotsPerNodePerTopologyMap.put(topology.getTopologyID(), slotsPerNode);
 				logger.info("Max number of slots per node for topology " + topology.getTopologyID() + ": " + slotsPerNode);
@@ -66,6 +76,20 @@ public class NodeManager {
 		}
 	}
 	
+	/**
+	 * creates a copy of the given node manager, with the same nodes and no slot assigned to them, whose assignments are tracked by the given traffic manager
+	 * @param nodeManager
+	 * @param trafficManager
+	 */
+	public NodeManager(NodeManager nodeManager, TrafficManager trafficManager) {
+		logger = nodeManager.logger;
+		nodeMap = new HashMap<String, Node>();
+		for (Node node : nodeManager.nodeMap.values())
+			nodeMap.put(node.getName(), new Node(node, trafficManager));
+		maxSlotsPerNodePerTopologyMap = nodeManager.maxSlotsPerNodePerTopologyMap;
+		totalResources = nodeManager.totalResources;
+	}
+	
 	public void setTotalSlots(String nodeName, int totalSlots) {
 		Node node = nodeMap.get(nodeName);
 		if (node != null)
@@ -77,42 +101,73 @@ public class NodeManager {
 	}
 	
 	public Node getLeastLoadedNode(Slot slot) {
-		return getLeastLoadedNode(1, slot.getLoad(), slot.getTopology().getTopologyID(), null);
+		return getLeastLoadedNode(1, slot.getResources(), Collections.singletonList(slot), slot.getTopology().getTopologyID(), null);
 	}
 	
 	public Node getLeastLoadedNode(Slot s1, Slot s2) {
 		// we're assuming that the slots are for the same topology
-		return getLeastLoadedNode(2, s1.getLoad() + s2.getLoad(), s1.getTopology().getTopologyID(), null);
+		ResourceVector demand = new ResourceVector(s1.getResources());
+		demand.add(s2.getResources());
+		return getLeastLoadedNode(2, demand, Arrays.asList(s1, s2), s1.getTopology().getTopologyID(), null);
 	}
 	
 	public Node getLeastLoadedNode(SlotPair slotPair) {
-		long load = Math.max(slotPair.getFirst().getLoad(), slotPair.getSecond().getLoad());
-		return getLeastLoadedNode(1, load, slotPair.getFirst().getTopology().getTopologyID(), null);
+		// either slot is going to be assigned, the network is checked when the actual assignment is tried
+		ResourceVector demand = ResourceVector.max(slotPair.getFirst().getResources(), slotPair.getSecond().getResources());
+		return getLeastLoadedNode(1, demand, new ArrayList<Slot>(), slotPair.getFirst().getTopology().getTopologyID(), null);
 	}
 	
 	public Node getUnusedNode(List<Node> usedNodeList, Slot slot) {
-		return getLeastLoadedNode(1, slot.getLoad(), slot.getTopology().getTopologyID(), usedNodeList);
+		return getLeastLoadedNode(1, slot.getResources(), Collections.singletonList(slot), slot.getTopology().getTopologyID(), usedNodeList);
 	}
 
-	private Node getLeastLoadedNode(int slotCount, long totalLoad, String topologyId, List<Node> nodeBlackList) {
+	/**
+	 * the load of a node is the share of its dominant resource, with respect to the capacity of the node,
+	 * or to the overall demand for the resources the node doesn't limit
+	 * @param slotCount
+	 * @param demand resources used by the slots, the network excluded as it depends on the node
+	 * @param slotList slots whose inter-node traffic has to be sustained by the network of the node
+	 * @param topologyId
+	 * @param nodeBlackList
+	 */
+	private Node getLeastLoadedNode(int slotCount, ResourceVector demand, List<Slot> slotList, String topologyId, List<Node> nodeBlackList) {
 		Node leastLoaded = null;
+		double leastShare = 0;
 		for (Node node : nodeMap.values()) {
-			if (node.getAvailableSlotCount() >= slotCount && node.canSustainLoad(totalLoad) && // can accept the slot
+			if (node.getAvailableSlotCount() >= slotCount && node.canSustain(demand) && node.canSustainNetwork(slotList) && // can accept the slot
 				node.getTopologySlotCount(topologyId) + slotCount <= maxSlotsPerNodePerTopologyMap.get(topologyId) && // constraint on the number of slots per node for that topology
 				(nodeBlackList == null || !nodeBlackList.contains(node)) && // node not blacklisted
-				(leastLoaded == null || leastLoaded.getLoad() > node.getLoad())) // least loaded
+				(leastLoaded == null || leastShare > getDominantShare(node))) // least loaded
 			{
 				// logger.info("+++ getLeastLoadedNode - BEGIN");
 				// logger.info("input> slotCount: " + slotCount + ", totalLoad: " + totalLoad + ", topologyId: " + topologyId);
 				// logger.info("number of topology slots in node " + node + ": " + node.getTopologySlotCount(topologyId));
 				// logger.info("max number of slots per node for topology " + topologyId + ": " + maxSlotsPerNodePerTopologyMap.get(topologyId));
 				leastLoaded = node;
+				leastShare = getDominantShare(node);
 				// logger.info("+++ getLeastLoadedNode - END");
 			}
 		}
 		return leastLoaded;
 	}
 	
+	/**
+	 * @param node
+	 * @return the share of the dominant resource of the given node
+	 */
+	public double getDominantShare(Node node) {
+		return getDominantShare(node, node.getResources());
+	}
+	
+	/**
+	 * @param node
+	 * @param resources resources used by the slots of the given node
+	 * @return the share of the dominant resource of the given node, if it used the given resources
+	 */
+	public double getDominantShare(Node node, ResourceVector resources) {
+		return resources.getDominantShare(node.getCapacityVector(), totalResources);
+	}
+	
 	public int getNodeCount() {
 		return nodeMap.values().size();
 	}
@@ -12,8 +12,17 @@ package storm.scheduler;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import org.apache.log4j.Logger;
 
@@ -29,12 +38,60 @@ import backtype.storm.scheduler.WorkerSlot;
 public class OnlineScheduler implements IScheduler {
 	
 	private static final int DEFAULT_RESCHEDULE_TIMEOUT = 180; // s
+	private static final int DEFAULT_MULTI_START_ATTEMPTS = 1;
+	private static final float DEFAULT_MULTI_START_PERTURBATION = 0.2f;
+	private static final float DEFAULT_SATURATION_THRESHOLD = 0.9f;
 	
 	private Logger logger = Logger.getLogger(OnlineScheduler.class);
 	private AssignmentTracker assignmentTracker = new AssignmentTracker();
 	
 	private long lastRescheduling;
 	
+	/*
+	 * the following settings apply to all the topologies, so they are read once from the configuration of nimbus
+	 */
+	
+	/**
+	 * number of placement attempts carried out in parallel, and how much the traffic order is perturbed in all the attempts but the first
+	 */
+	private int attemptCount = DEFAULT_MULTI_START_ATTEMPTS;
+	private float perturbation = DEFAULT_MULTI_START_PERTURBATION;
+	
+	/**
+	 * whether executors are assigned to nodes in a single phase
+	 */
+	private boolean jointPlacement;
+	
+	/**
+	 * how traffic is weighted according to the level it flows through, and whether it is measured in bytes rather than tuples
+	 */
+	private CostModel costModel;
+	private boolean byteTraffic;
+	
+	public OnlineScheduler() {
+		readConfiguration(backtype.storm.utils.Utils.readStormConfig());
+	}
+	
+	/**
+	 * @param conf the configuration of nimbus
+	 */
+	private void readConfiguration(Map<?, ?> conf) {
+		if (conf.get(Utils.MULTI_START_ATTEMPTS) != null)
+			attemptCount = Integer.parseInt(conf.get(Utils.MULTI_START_ATTEMPTS).toString());
+		if (conf.get(Utils.MULTI_START_PERTURBATION) != null)
+			perturbation = Float.parseFloat(conf.get(Utils.MULTI_START_PERTURBATION).toString());
+		if (conf.get(Utils.JOINT_PLACEMENT) != null)
+			jointPlacement = Boolean.parseBoolean(conf.get(Utils.JOINT_PLACEMENT).toString());
+		if (conf.get(Utils.BYTE_TRAFFIC) != null)
+			byteTraffic = Boolean.parseBoolean(conf.get(Utils.BYTE_TRAFFIC).toString());
+		if (attemptCount < 1)
+			throw new RuntimeException("Wrong number of attempts: " + attemptCount);
+		if (perturbation < 0 || perturbation > 1)
+			throw new RuntimeException("Wrong perturbation value: " + perturbation);
+		costModel = new CostModel(conf);
+		logger.info("Number of attempts: " + attemptCount + ", perturbation: " + perturbation + ", joint placement: " + jointPlacement + ", cost model: " + costModel + ", traffic measured in " + (byteTraffic ? "bytes" : "tuples"));
+	}
+	
 	@Override
 	public void schedule(Topologies topologies, Cluster cluster) {
 		
@@ -72,6 +129,11 @@ public class OnlineScheduler implements IScheduler {
 			List<String> topologiesToBeRemoved = new ArrayList<String>(dbTopologies);
 			List<String> stormTopologyList = new ArrayList<String>();
 			int trafficImprovement = 0;
+			// thresholds are set by each topology for its own executors
+			Map<String, Float> saturationThresholdMap = new HashMap<String, Float>(); // topology id -> fraction of time spent in execute() above which an executor is saturated
+			Map<String, Float> contentionThresholdMap = new HashMap<String, Float>(); // topology id -> fraction of time blocked on monitors above which an executor is contended
+			Map<String, Map<String, Float>> streamWeightMap = new HashMap<String, Map<String, Float>>();
+			Map<String, Map<Integer, String>> taskToComponentMap = new HashMap<String, Map<Integer, String>>();
 			for (TopologyDetails topology : topologies.getTopologies()) {
 				topologiesToBeRemoved.remove(topology.getId());
 				stormTopologyList.add(topology.getId());
@@ -79,7 +141,25 @@ public class OnlineScheduler implements IScheduler {
 				for (Object key : topology.getConf().keySet())
 					logger.debug("- " + key + ": " + topology.getConf().get(key));
 				trafficImprovement = Integer.parseInt(topology.getConf().get(Utils.TRAFFIC_IMPROVEMENT).toString());
+				float saturationThreshold = DEFAULT_SATURATION_THRESHOLD;
+				if (topology.getConf().get(Utils.SATURATION_THRESHOLD) != null)
+					saturationThreshold = Float.parseFloat(topology.getConf().get(Utils.SATURATION_THRESHOLD).toString());
+				if (saturationThreshold <= 0 || saturationThreshold > 1)
+					throw new RuntimeException("Wrong saturation threshold value: " + saturationThreshold);
+				saturationThresholdMap.put(topology.getId(), saturationThreshold);
+				if (topology.getConf().get(Utils.CONTENTION_THRESHOLD) != null) {
+					float contentionThreshold = Float.parseFloat(topology.getConf().get(Utils.CONTENTION_THRESHOLD).toString());
+					if (contentionThreshold != -1 && (contentionThreshold <= 0 || contentionThreshold > 1))
+						throw new RuntimeException("Wrong contention threshold value: " + contentionThreshold);
+					if (contentionThreshold > 0)
+						contentionThresholdMap.put(topology.getId(), contentionThreshold);
+				}
+				streamWeightMap.put(topology.getId(), Utils.getStreamWeights(topology.getConf()));
+				taskToComponentMap.put(topology.getId(), Utils.getTaskToComponent(topology.getExecutorToComponent()));
 			}
+			if (costModel.isMeasured())
+				costModel.setMeasuredCosts(DataManager.getInstance().getCosts());
+			logger.info("Cost model: " + costModel + ", traffic measured in " + (byteTraffic ? "bytes" : "tuples"));
 			logger.info("Storm Topologies: " + Utils.collectionToString(stormTopologyList));
 			
 			dbTopologies.removeAll(topologiesToBeRemoved);
@@ -92,21 +172,26 @@ public class OnlineScheduler implements IScheduler {
 			}
 			
 			// compute best scheduling
-			TrafficManager.getInstance().clear();
-			computeBestScheduling(dbTopologies, topologies, cluster);
-			Map<Node, List<Slot>> bestAssignment = TrafficManager.getInstance().getAssignments();
-			int bestInterNodeTraffic = TrafficManager.getInstance().computeInterNodeTraffic();
-			int currentInterNodeTraffic = DataManager.getInstance().getCurrentInterNodeTraffic();
-			List<Node> overloadedNodeList = DataManager.getInstance().getOverloadedNodes();
+			TrafficManager bestTrafficManager = computeBestScheduling(dbTopologies, topologies, cluster);
+			Map<Node, List<Slot>> bestAssignment = bestTrafficManager.getAssignments();
+			int bestInterNodeTraffic = bestTrafficManager.computeInterNodeTraffic();
+			double bestTrafficCost = bestTrafficManager.computeTrafficCost(costModel);
+			double currentTrafficCost = DataManager.getInstance().getCurrentTrafficCost(costModel, byteTraffic, streamWeightMap, taskToComponentMap, getPorts(cluster));
+			List<Node> overloadedNodeList = DataManager.getInstance().getOverloadedNodes(saturationThresholdMap);
+			List<String> contendedWorkerList = new ArrayList<String>();
+			if (!contentionThresholdMap.isEmpty())
+				contendedWorkerList = DataManager.getInstance().getContendedWorkers(contentionThresholdMap);
 			
 			// check if a rescheduling is required
 			logger.info("These nodes are currently overloaded: " + Utils.collectionToString(overloadedNodeList));
-			logger.info("Currently, the inter-node traffic is " + currentInterNodeTraffic + " tuple/s");
-			
+			logger.info("These workers currently host contending executors: " + Utils.collectionToString(contendedWorkerList));
+			logger.info("Currently, the traffic cost is " + currentTrafficCost);
+
 			if (bestAssignment != null) {
-				logger.info("The best assignment can lead to an inter-node traffic of " + bestInterNodeTraffic + " tuple/s");
+				logger.info("The best assignment can lead to an inter-node traffic of " + bestInterNodeTraffic + " tuple/s and a traffic cost of " + bestTrafficCost);
 				boolean reschedulingDueToOverloading = false;
 				boolean reschedulingDueToInterNodeTraffic = false;
+				boolean reschedulingDueToContention = false;
 				if (!overloadedNodeList.isEmpty()) {
 					logger.info("Check how the new assignment can offload some of the currently overloaded nodes");
 					for (Node node : overloadedNodeList) {
@@ -127,13 +212,24 @@ public class OnlineScheduler implements IScheduler {
 				}
 				if (reschedulingDueToOverloading)
 					logger.info("A rescheduling is required to offload currently overloaded nodes");
-				int trafficThreshold = (int)((float)currentInterNodeTraffic * (1 - (float)trafficImprovement / 100));
-				logger.info("Minimum traffic threshold is " + trafficThreshold + " tuple/s");
-				if (trafficThreshold  >= bestInterNodeTraffic) {
-					logger.info("A rescheduling is required to lower inter-node traffic");
+				if (!contendedWorkerList.isEmpty()) {
+					reschedulingDueToContention = true;
+					for (List<Slot> slotList : bestAssignment.values())
+						for (Slot slot : slotList)
+							if (slot.getContendedCount() > 1)
+								reschedulingDueToContention = false;
+					if (reschedulingDueToContention)
+						logger.info("A rescheduling is required to spread contending executors across workers");
+					else
+						logger.info("The best assignment cannot spread contending executors across workers");
+				}
+				double trafficThreshold = currentTrafficCost * (1 - (double)trafficImprovement / 100);
+				logger.info("Minimum traffic cost threshold is " + trafficThreshold);
+				if (trafficThreshold >= bestTrafficCost) {
+					logger.info("A rescheduling is required to lower the traffic cost");
 					reschedulingDueToInterNodeTraffic = true;
 				}
-				if (reschedulingDueToInterNodeTraffic || reschedulingDueToOverloading) {
+				if (reschedulingDueToInterNodeTraffic || reschedulingDueToOverloading || reschedulingDueToContention) {
 					logger.info("Let's apply the best assignment!!");
 					lastRescheduling = System.currentTimeMillis();
 					
@@ -146,12 +242,18 @@ public class OnlineScheduler implements IScheduler {
 					
 					for (Node node : bestAssignment.keySet()) {
 						SupervisorDetails supervisor = cluster.getSupervisorsByHost(node.getName()).get(0);
-						List<WorkerSlot> availableSlots = cluster.getAvailableSlots(supervisor);
-						int slotIndex = 0;
+						List<WorkerSlot> availableSlots = new ArrayList<WorkerSlot>(cluster.getAvailableSlots(supervisor));
+						Collections.sort(availableSlots, new Comparator<WorkerSlot>() {
+							@Override
+							public int compare(WorkerSlot ws1, WorkerSlot ws2) {
+								return ws1.getPort() - ws2.getPort();
+							}
+						});
+						List<WorkerSlot> freeSlots = new ArrayList<WorkerSlot>(availableSlots);
 						for (Slot slot : bestAssignment.get(node)) {
 							// all the executors in this slots belong to a specific topology;
 							// they all have to be put in a unique slot and assigned to the node in this scope
-							logger.info("Assigning executors of slot " + slot);
+							logger.info("Assigning executors of slot " + slot + (slot.getHeapHeadroom() >= 0 ? " (heap headroom: " + slot.getHeapHeadroom() + " bytes)" : ""));
 							String topology = slot.getTopology().getTopologyID();
 							List<ExecutorDetails> executorList = new ArrayList<ExecutorDetails>();
 							
@@ -166,9 +268,9 @@ public class OnlineScheduler implements IScheduler {
 								}
 							}
 							
-							cluster.assign(availableSlots.get(slotIndex), topology, executorList);
-							logger.info("We assigned executors:" + Utils.collectionToString(executorList) + " to slot: [" + availableSlots.get(slotIndex).getNodeId() + ", " + availableSlots.get(slotIndex).getPort() + "]");
-			                slotIndex++;
+							WorkerSlot workerSlot = getWorkerSlot(availableSlots, freeSlots, node, bestTrafficManager.getNumaNode(slot));
+							cluster.assign(workerSlot, topology, executorList);
+							logger.info("We assigned executors:" + Utils.collectionToString(executorList) + " to slot: [" + workerSlot.getNodeId() + ", " + workerSlot.getPort() + "]");
 			                
 						} /* end for (Slot slot : bestAssignment.get(node)) */
 						
@@ -177,7 +279,7 @@ public class OnlineScheduler implements IScheduler {
 					logger.info("Rescheduling completed, now reset all stats from DB");
 					DataManager.getInstance().removeTopologies(dbTopologies);
 					
-				} /* end if (reschedulingDueToInterNodeTraffic || reschedulingDueToOVerloading) */
+				} /* end if (reschedulingDueToInterNodeTraffic || reschedulingDueToOVerloading || reschedulingDueToContention) */
 			} else {
 				logger.info("No assignment has been simulated");
 			}
@@ -199,189 +301,437 @@ public class OnlineScheduler implements IScheduler {
 		}
 	}*/
 	
-	private void computeBestScheduling(List<String> dbTopologies, Topologies stormTopologies, Cluster cluster) throws Exception {
-		
-		logger.info("-- First phase --");
-		List<Topology> topologyList = new ArrayList<Topology>();
-		for (String topologyID : dbTopologies) {
-			logger.info("Topology ID: " + topologyID);
-			TopologyDetails topologyDetails = stormTopologies.getById(topologyID);
-			Topology topology = new Topology(topologyDetails);
-			topology.setTotalLoad(DataManager.getInstance().getTotalLoad(topologyID));
-			topologyList.add(topology);
-			// logger.info("Max number of executors per slot: " + topology.getMaxExecutorsPerSlot() + ", max load per slot: " + topology.getMaxLoadForASlot() + " cycle/s, slot count: " + topology.getSlots().size() + ", total load: " + topology.getTotalLoad() + " cycle/s, alfa: " + topology.getAlfa() + ", beta: " + topology.getBeta());
-			logger.info("Max number of executors per slot: " + topology.getMaxExecutorsPerSlot() + ", slot count: " + topology.getSlots().size() + ", total load: " + topology.getTotalLoad() + " cycle/s, alfa: " + topology.getAlfa() + ", beta: " + topology.getBeta());
-			/*if (Integer.parseInt(topologyDetails.getConf().get(Config.TOPOLOGY_ACKER_EXECUTORS).toString() ) != 0)
-				checkAckers(topologyID, cluster);*/
-			List<ExecutorPair> interExecutorTrafficList = TrafficManager.getInstance().getInterExecutorTrafficList(topologyID);
-			logger.info("Inter-executor traffic stats: " + Utils.collectionToString(interExecutorTrafficList));
-			if (interExecutorTrafficList.isEmpty()) {
-				logger.info("Traffic stats are not complete yet, skip this topology");
-			} else {
-				for (ExecutorPair executorPair : interExecutorTrafficList) {
-					logger.debug("Executor pair: " + executorPair);
-					List<Slot> slotList = topology.getContainingSlotList(executorPair.getSource(), executorPair.getDestination());
-					logger.debug("Slots that already contain either executors: " + Utils.collectionToString(slotList));
-					if (slotList.isEmpty()) {
-						logger.debug("Both executors have not been assigned yet, try to add them to the least loaded slot");
-						Slot leastLoadedSlot = topology.getLeastLoadedSlot(executorPair.getSource(), executorPair.getDestination());
-						if (leastLoadedSlot != null) {
-							logger.debug("Least loaded slot able to get both the executors: " + leastLoadedSlot);
-							leastLoadedSlot.assign(executorPair.getSource());
+	/**
+	 * @param cluster
+	 * @return host -> ports of its supervisor in ascending order, which determine the NUMA node each worker is bound to
+	 */
+	private Map<String, List<Integer>> getPorts(Cluster cluster) {
+		Map<String, List<Integer>> portMap = new HashMap<String, List<Integer>>();
+		for (SupervisorDetails supervisor : cluster.getSupervisors().values()) {
+			List<Integer> ports = new ArrayList<Integer>();
+			for (WorkerSlot workerSlot : cluster.getAssignableSlots(supervisor))
+				ports.add(workerSlot.getPort());
+			Collections.sort(ports);
+			portMap.put(supervisor.getHost(), ports);
+		}
+		return portMap;
+	}
+	
+	/**
+	 * picks the worker slot for a slot bound to the given NUMA node; supervisors of NUMA nodes are expected to bind the worker
+	 * listening on the i-th port (ports in ascending order) to NUMA node i % numaNodeCount (e.g., by launching it through numactl)
+	 * @param availableSlots the worker slots of the node, sorted by port
+	 * @param freeSlots the worker slots of the node not used yet, the returned one is removed
+	 * @param node
+	 * @param numaNode
+	 * @return a free worker slot bound to the given NUMA node if any, otherwise the first free worker slot
+	 */
+	private WorkerSlot getWorkerSlot(List<WorkerSlot> availableSlots, List<WorkerSlot> freeSlots, Node node, Integer numaNode) {
+		WorkerSlot workerSlot = freeSlots.get(0);
+		if (numaNode != null && node.getNumaNodeCount() > 1)
+			for (WorkerSlot ws : freeSlots)
+				if (availableSlots.indexOf(ws) % node.getNumaNodeCount() == numaNode) {
+					workerSlot = ws;
+					break;
+				}
+		freeSlots.remove(workerSlot);
+		return workerSlot;
+	}
+	
+	/**
+	 * loads from the DB the total load and the inter-executor traffic stats of a topology
+	 * @param topologyID
+	 * @param stormTopologies
+	 * @return the topology, with no executor assigned to its slots yet
+	 * @throws Exception
+	 */
+	private Topology loadTopology(String topologyID, Topologies stormTopologies) throws Exception {
+		logger.info("Topology ID: " + topologyID);
+		TopologyDetails topologyDetails = stormTopologies.getById(topologyID);
+		Topology topology = new Topology(topologyDetails);
+		topology.setTotalLoad(DataManager.getInstance().getTotalLoad(topologyID));
+		// logger.info("Max number of executors per slot: " + topology.getMaxExecutorsPerSlot() + ", max load per slot: " + topology.getMaxLoadForASlot() + " cycle/s, slot count: " + topology.getSlots().size() + ", total load: " + topology.getTotalLoad() + " cycle/s, alfa: " + topology.getAlfa() + ", beta: " + topology.getBeta());
+		logger.info("Max number of executors per slot: " + topology.getMaxExecutorsPerSlot() + ", slot count: " + topology.getSlots().size() + ", total load: " + topology.getTotalLoad() + " cycle/s, alfa: " + topology.getAlfa() + ", beta: " + topology.getBeta());
+		/*if (Integer.parseInt(topologyDetails.getConf().get(Config.TOPOLOGY_ACKER_EXECUTORS).toString() ) != 0)
+			checkAckers(topologyID, cluster);*/
+		List<ExecutorPair> interExecutorTrafficList = topology.getTrafficManager().loadInterExecutorTrafficList(byteTraffic);
+		logger.info("Inter-executor traffic stats: " + Utils.collectionToString(interExecutorTrafficList));
+		topology.applyStateSizes();
+		logger.info("Resources used by the executors: " + topology.getTotalResources() + ", available to a slot: " + topology.getSlotCapacity());
+		return topology;
+	}
+	
+	/**
+	 * first phase for a single topology: assigns its executors to its slots so as to minimize inter-slot traffic
+	 * @param topology
+	 * @param random if not null, the order executor pairs are considered is perturbed using this generator
+	 * @return the topology, with executors assigned to its slots
+	 * @throws Exception
+	 */
+	private Topology assignExecutors(Topology topology, Random random) throws Exception {
+		String topologyID = topology.getTopologyID();
+		List<ExecutorPair> interExecutorTrafficList = topology.getTrafficManager().getInterExecutorTrafficList();
+		if (random != null && !interExecutorTrafficList.isEmpty()) {
+			interExecutorTrafficList = perturbExecutorPairs(interExecutorTrafficList, random);
+			logger.debug("Perturbed inter-executor traffic stats for topology " + topologyID + ": " + Utils.collectionToString(interExecutorTrafficList));
+		}
+		if (interExecutorTrafficList.isEmpty()) {
+			logger.info("Traffic stats are not complete yet, skip this topology");
+		} else {
+			for (ExecutorPair executorPair : interExecutorTrafficList) {
+				logger.debug("Executor pair: " + executorPair);
+				List<Slot> slotList = topology.getContainingSlotList(executorPair.getSource(), executorPair.getDestination());
+				logger.debug("Slots that already contain either executors: " + Utils.collectionToString(slotList));
+				if (slotList.isEmpty()) {
+					logger.debug("Both executors have not been assigned yet, try to add them to the least loaded slot");
+					Slot leastLoadedSlot = topology.getLeastLoadedSlot(executorPair.getSource(), executorPair.getDestination());
+					if (leastLoadedSlot != null) {
+						logger.debug("Least loaded slot able to get both the executors: " + leastLoadedSlot);
+						leastLoadedSlot.assign(executorPair.getSource());
+						leastLoadedSlot.assign(executorPair.getDestination());
+						logger.info("Executors " + executorPair.getSource() + " and " + executorPair.getDestination() + " assigned to slot " + leastLoadedSlot);
+					} else {
+						logger.debug("No slot exists that can get both the executors, assign them to distinct slots");
+						leastLoadedSlot = topology.getLeastLoadedSlot(executorPair.getSource());
+						if (leastLoadedSlot == null)
+							throw new RuntimeException("Cannot find a slot able to get executor " + executorPair.getSource() + " for topology " + topology);
+						logger.debug("Least loaded slot for source executor: " + leastLoadedSlot);
+						leastLoadedSlot.assign(executorPair.getSource());
+						logger.info("Executor " + executorPair.getSource() + " assigned to slot " + leastLoadedSlot);
+						if (leastLoadedSlot.canAccept(executorPair.getDestination())) {
+							logger.debug("After having added executor " + executorPair.getSource() + ", the slot " + leastLoadedSlot + " can also get the executor " + executorPair.getDestination());
 							leastLoadedSlot.assign(executorPair.getDestination());
-							logger.info("Executors " + executorPair.getSource() + " and " + executorPair.getDestination() + " assigned to slot " + leastLoadedSlot);
 						} else {
-							logger.debug("No slot exists that can get both the executors, assign them to distinct slots");
-							leastLoadedSlot = topology.getLeastLoadedSlot(executorPair.getSource());
+							logger.debug("After having added executor " + executorPair.getSource() + ", the slot " + leastLoadedSlot + " cannot get the executor " + executorPair.getDestination());
+							leastLoadedSlot = topology.getLeastLoadedSlot(executorPair.getDestination());
 							if (leastLoadedSlot == null)
-								throw new RuntimeException("Cannot find a slot able to get executor " + executorPair.getSource() + " for topology " + topology);
-							logger.debug("Least loaded slot for source executor: " + leastLoadedSlot);
-							leastLoadedSlot.assign(executorPair.getSource());
-							logger.info("Executor " + executorPair.getSource() + " assigned to slot " + leastLoadedSlot);
-							if (leastLoadedSlot.canAccept(executorPair.getDestination())) {
-								logger.debug("After having added executor " + executorPair.getSource() + ", the slot " + leastLoadedSlot + " can also get the executor " + executorPair.getDestination());
-								leastLoadedSlot.assign(executorPair.getDestination());
+								throw new RuntimeException("Cannot find a slot able to get executor " + executorPair.getDestination() + " for topology " + topology);
+							logger.debug("Least loaded slot for destination executor: " + leastLoadedSlot);
+							leastLoadedSlot.assign(executorPair.getDestination());
+						}
+						logger.info("Executor " + executorPair.getDestination() + " assigned to slot " + leastLoadedSlot);
+					}
+				} else {
+					logger.debug("Some executor has been already assigned, compute the best assignment using the slot(s) found before and the least loaded one");
+					Slot leastLoadedSlot = topology.getLeastLoadedSlot(executorPair);
+					logger.debug("Least loaded slot: " + leastLoadedSlot);
+					if (leastLoadedSlot != null && !slotList.contains(leastLoadedSlot))
+						slotList.add(leastLoadedSlot);
+					logger.debug("Slots to use: " + Utils.collectionToString(slotList));
+					
+					logger.debug("Remove source and destination from the slots they are currently assigned to");
+					for (Slot slot : slotList) {
+						if (slot.contains(executorPair.getSource()))
+							slot.remove(executorPair.getSource());
+						if (slot.contains(executorPair.getDestination()))
+							slot.remove(executorPair.getDestination());
+					}
+					logger.debug("Slots to use after such removals: " + Utils.collectionToString(slotList));
+					
+					logger.debug("Check every possible combination");
+					Slot bestSlotForSource = null;
+					Slot bestSlotForDestination = null;
+					int minInterSlotTraffic = -1;
+					for (Slot slotForSource : slotList) {
+						for (Slot slotForDestination : slotList) {
+							logger.debug("Assigning executor " + executorPair.getSource() + " to slot " + slotForSource + " and executor " + executorPair.getDestination() + " to slot " + slotForDestination + "...");
+							boolean assignmentOk = true;
+							if (slotForSource.canAccept(executorPair.getSource())) {
+								slotForSource.assign(executorPair.getSource());
 							} else {
-								logger.debug("After having added executor " + executorPair.getSource() + ", the slot " + leastLoadedSlot + " cannot get the executor " + executorPair.getDestination());
-								leastLoadedSlot = topology.getLeastLoadedSlot(executorPair.getDestination());
-								if (leastLoadedSlot == null)
-									throw new RuntimeException("Cannot find a slot able to get executor " + executorPair.getDestination() + " for topology " + topology);
-								logger.debug("Least loaded slot for destination executor: " + leastLoadedSlot);
-								leastLoadedSlot.assign(executorPair.getDestination());
+								logger.debug("Slot " + slotForSource + " is imbalanced, cannot be used to add more executors");
+								assignmentOk = false;
 							}
-							logger.info("Executor " + executorPair.getDestination() + " assigned to slot " + leastLoadedSlot);
-						}
-					} else {
-						logger.debug("Some executor has been already assigned, compute the best assignment using the slot(s) found before and the least loaded one");
-						Slot leastLoadedSlot = topology.getLeastLoadedSlot(executorPair);
-						logger.debug("Least loaded slot: " + leastLoadedSlot);
-						if (leastLoadedSlot != null && !slotList.contains(leastLoadedSlot))
-							slotList.add(leastLoadedSlot);
-						logger.debug("Slots to use: " + Utils.collectionToString(slotList));
-						
-						logger.debug("Remove source and destination from the slots they are currently assigned to");
-						for (Slot slot : slotList) {
-							if (slot.contains(executorPair.getSource()))
-								slot.remove(executorPair.getSource());
-							if (slot.contains(executorPair.getDestination()))
-								slot.remove(executorPair.getDestination());
-						}
-						logger.debug("Slots to use after such removals: " + Utils.collectionToString(slotList));
-						
-						logger.debug("Check every possible combination");
-						Slot bestSlotForSource = null;
-						Slot bestSlotForDestination = null;
-						int minInterSlotTraffic = -1;
-						for (Slot slotForSource : slotList) {
-							for (Slot slotForDestination : slotList) {
-								logger.debug("Assigning executor " + executorPair.getSource() + " to slot " + slotForSource + " and executor " + executorPair.getDestination() + " to slot " + slotForDestination + "...");
-								boolean assignmentOk = true;
-								if (slotForSource.canAccept(executorPair.getSource())) {
-									slotForSource.assign(executorPair.getSource());
-								} else {
-									logger.debug("Slot " + slotForSource + " is imbalanced, cannot be used to add more executors");
-									assignmentOk = false;
-								}
-								
-								if (slotForDestination.canAccept(executorPair.getDestination())) {
-									slotForDestination.assign(executorPair.getDestination());
-								} else {
-									logger.debug("Slot " + slotForDestination + " is imbalanced, cannot be used to add more executors");
-									assignmentOk = false;
-								}
-								
-								if (assignmentOk) {
-									int interSlotTraffic = TrafficManager.getInstance().computeInterSlotTraffic(topologyID);
-									logger.debug("...the inter-slot traffic is " + interSlotTraffic + " tuple/s");
-									if (minInterSlotTraffic == -1 || interSlotTraffic < minInterSlotTraffic) {
-										bestSlotForSource = slotForSource;
-										bestSlotForDestination = slotForDestination;
-										minInterSlotTraffic = interSlotTraffic;
-									}
+							
+							if (slotForDestination.canAccept(executorPair.getDestination())) {
+								slotForDestination.assign(executorPair.getDestination());
+							} else {
+								logger.debug("Slot " + slotForDestination + " is imbalanced, cannot be used to add more executors");
+								assignmentOk = false;
+							}
+							
+							if (assignmentOk) {
+								int interSlotTraffic = topology.getTrafficManager().computeInterSlotTraffic();
+								logger.debug("...the inter-slot traffic is " + interSlotTraffic + " tuple/s");
+								if (minInterSlotTraffic == -1 || interSlotTraffic < minInterSlotTraffic) {
+									bestSlotForSource = slotForSource;
+									bestSlotForDestination = slotForDestination;
+									minInterSlotTraffic = interSlotTraffic;
 								}
-								if (slotForSource.contains(executorPair.getSource()))
-									slotForSource.remove(executorPair.getSource());
-								if (slotForDestination.contains(executorPair.getDestination()))
-									slotForDestination.remove(executorPair.getDestination());
 							}
+							if (slotForSource.contains(executorPair.getSource()))
+								slotForSource.remove(executorPair.getSource());
+							if (slotForDestination.contains(executorPair.getDestination()))
+								slotForDestination.remove(executorPair.getDestination());
 						}
-						if (bestSlotForSource == null || bestSlotForDestination == null)
-							throw new Exception("Cannot find a possible assignment of executors " + executorPair.getSource() + " and " + executorPair.getDestination() + " to slots " + Utils.collectionToString(slotList));
-						logger.debug("The best assignment is executor " + executorPair.getSource() + " to slot " + bestSlotForSource + " and executor " + executorPair.getDestination() + " to slot " + bestSlotForDestination + ", with inter-slot traffic " + minInterSlotTraffic + " tuple/s");
-						bestSlotForSource.assign(executorPair.getSource());
-						bestSlotForDestination.assign(executorPair.getDestination());
-						logger.info("Executor " + executorPair.getSource() + " assigned to slot " + bestSlotForSource);
-						logger.info("Executor " + executorPair.getDestination() + " assigned to slot " + bestSlotForDestination);
-					} /* end if (!slotList.isEmpty()) */
-					
-					logger.debug("Assignment of executors " + executorPair + " completed");
-					
-				} /* end for (ExecutorPair executorPair : executorPairList) */
+					}
+					if (bestSlotForSource == null || bestSlotForDestination == null)
+						throw new Exception("Cannot find a possible assignment of executors " + executorPair.getSource() + " and " + executorPair.getDestination() + " to slots " + Utils.collectionToString(slotList));
+					logger.debug("The best assignment is executor " + executorPair.getSource() + " to slot " + bestSlotForSource + " and executor " + executorPair.getDestination() + " to slot " + bestSlotForDestination + ", with inter-slot traffic " + minInterSlotTraffic + " tuple/s");
+					bestSlotForSource.assign(executorPair.getSource());
+					bestSlotForDestination.assign(executorPair.getDestination());
+					logger.info("Executor " + executorPair.getSource() + " assigned to slot " + bestSlotForSource);
+					logger.info("Executor " + executorPair.getDestination() + " assigned to slot " + bestSlotForDestination);
+				} /* end if (!slotList.isEmpty()) */
 				
-				logger.info("Current assignment: " + Utils.collectionToString(topology.getSlots()));
-				logger.info("Check for empty slots");
-				List<Slot> emptySlotList = topology.getEmptySlots();
-				if (emptySlotList.isEmpty()) {
-					logger.info("No empty slots, the assignment is succesfully completed");
-				} else {
-					logger.info("Empty slots: " + Utils.collectionToString(emptySlotList));
-					List<Slot> usedSlotList = topology.getUsedSlots();
-					for (Slot emptySlot : emptySlotList) {
-						logger.debug("Find an executor to assign to slot " + emptySlot);
-						Executor bestExecutor = null;
-						Slot bestSlot = null;
-						int bestInterSlotTraffic = -1;
-						for (Slot usedSlot : usedSlotList) {
-							if (usedSlot.getExecutors().size() > 1) {
-								logger.debug("Check the executors of slot " + usedSlot);
-								List<Executor> executorList = new ArrayList<Executor>( usedSlot.getExecutors() );
-								for (Executor executor : executorList) {
-									usedSlot.remove(executor);
-									emptySlot.assign(executor);
-									int interSlotTraffic = TrafficManager.getInstance().computeInterSlotTraffic(topologyID);
-									logger.debug("Moving executor " + executor + ", the inter-slot traffic is " + interSlotTraffic + " tuple/s");
-									if (bestInterSlotTraffic == -1 || interSlotTraffic < bestInterSlotTraffic) {
-										bestExecutor = executor;
-										bestSlot = usedSlot;
-										bestInterSlotTraffic = interSlotTraffic;
-									}
-									emptySlot.remove(executor);
-									usedSlot.assign(executor);
+				logger.debug("Assignment of executors " + executorPair + " completed");
+				
+			} /* end for (ExecutorPair executorPair : executorPairList) */
+			
+			logger.info("Current assignment: " + Utils.collectionToString(topology.getSlots()));
+			logger.info("Check for empty slots");
+			List<Slot> emptySlotList = topology.getEmptySlots();
+			if (emptySlotList.isEmpty()) {
+				logger.info("No empty slots, the assignment is succesfully completed");
+			} else {
+				logger.info("Empty slots: " + Utils.collectionToString(emptySlotList));
+				List<Slot> usedSlotList = topology.getUsedSlots();
+				for (Slot emptySlot : emptySlotList) {
+					logger.debug("Find an executor to assign to slot " + emptySlot);
+					Executor bestExecutor = null;
+					Slot bestSlot = null;
+					int bestInterSlotTraffic = -1;
+					for (Slot usedSlot : usedSlotList) {
+						if (usedSlot.getExecutors().size() > 1) {
+							logger.debug("Check the executors of slot " + usedSlot);
+							List<Executor> executorList = new ArrayList<Executor>( usedSlot.getExecutors() );
+							for (Executor executor : executorList) {
+								if (!emptySlot.canAccept(executor))
+									continue;
+								usedSlot.remove(executor);
+								emptySlot.assign(executor);
+								int interSlotTraffic = topology.getTrafficManager().computeInterSlotTraffic();
+								logger.debug("Moving executor " + executor + ", the inter-slot traffic is " + interSlotTraffic + " tuple/s");
+								if (bestInterSlotTraffic == -1 || interSlotTraffic < bestInterSlotTraffic) {
+									bestExecutor = executor;
+									bestSlot = usedSlot;
+									bestInterSlotTraffic = interSlotTraffic;
 								}
+								emptySlot.remove(executor);
+								usedSlot.assign(executor);
 							}
 						}
-						if (bestSlot != null) {
-							logger.debug("The best assignment is moving executor " + bestExecutor + " from slot " + bestSlot + " to slot " + emptySlot + " with an inter-slot traffic of " + bestInterSlotTraffic + " tuple/s");
-							bestSlot.remove(bestExecutor);
-							emptySlot.assign(bestExecutor);
-							logger.info("Executor " + bestExecutor + " moved from slot " + bestSlot + " to slot " + emptySlot);
-						} else {
-							logger.warn("Cannot find an executor to move to slot " + emptySlot);
+					}
+					if (bestSlot != null) {
+						logger.debug("The best assignment is moving executor " + bestExecutor + " from slot " + bestSlot + " to slot " + emptySlot + " with an inter-slot traffic of " + bestInterSlotTraffic + " tuple/s");
+						bestSlot.remove(bestExecutor);
+						emptySlot.assign(bestExecutor);
+						logger.info("Executor " + bestExecutor + " moved from slot " + bestSlot + " to slot " + emptySlot);
+					} else {
+						logger.warn("Cannot find an executor to move to slot " + emptySlot);
+					}
+				} /* end for (Slot emptySlot : emptySlotList) */
+			}
+			logger.info("Next assignment: " + Utils.collectionToString(topology.getSlots()));
+			
+			// small topologies: look for the optimal assignment, starting from the one just computed (perturbed attempts would lead to the same result)
+			if (random == null && topology.getExactMaxExecutors() > 0) {
+				BranchAndBoundAssigner assigner = new BranchAndBoundAssigner(topology);
+				if (assigner.getExecutorCount() <= topology.getExactMaxExecutors()) {
+					logger.info("Search for the optimal assignment of " + assigner.getExecutorCount() + " executors, within " + topology.getExactTimeLimit() + " ms");
+					boolean optimal = assigner.assign(topology.getExactTimeLimit());
+					logger.info((optimal ? "Optimal" : "Best found") + " assignment: " + Utils.collectionToString(topology.getSlots()));
+				}
+			}
+			
+		} /* end if (!executorPairList.isEmpty()) */
+		
+		logger.info("Assignments of executors for topology " + topologyID + " completed");
+		return topology;
+	}
+	
+	/**
+	 * computes the best scheduling; when more attempts are configured, the first one considers executor and slot pairs
+	 * in traffic order while the others perturb such order, all the attempts are carried out in parallel
+	 * on distinct copies of the model and the one with the lowest traffic cost is kept
+	 * @param dbTopologies
+	 * @param stormTopologies
+	 * @param cluster
+	 * @return the traffic manager tracking the best assignment
+	 * @throws Exception
+	 */
+	private TrafficManager computeBestScheduling(List<String> dbTopologies, final Topologies stormTopologies, Cluster cluster) throws Exception {
+		int threadCount = Math.max(1, Math.min(Math.max(dbTopologies.size(), attemptCount), Runtime.getRuntime().availableProcessors()));
+		ExecutorService pool = Executors.newFixedThreadPool(threadCount);
+		try {
+			logger.info("-- Loading topologies --");
+			List<Future<Topology>> loadFutureList = new ArrayList<Future<Topology>>();
+			for (final String topologyID : dbTopologies) {
+				loadFutureList.add(pool.submit(new Callable<Topology>() {
+					@Override
+					public Topology call() throws Exception {
+						return loadTopology(topologyID, stormTopologies);
+					}
+				}));
+			}
+			List<Topology> baseTopologyList = new ArrayList<Topology>();
+			for (Future<Topology> future : loadFutureList)
+				baseTopologyList.add(future.get());
+			final NodeManager baseNodeManager = new NodeManager(baseTopologyList, cluster);
+			
+			final long seed = System.currentTimeMillis();
+			logger.info("Number of attempts: " + attemptCount + ", perturbation: " + perturbation + ", seed: " + seed);
+			
+			List<Future<TrafficManager>> assignmentFutureList = new ArrayList<Future<TrafficManager>>();
+			ExecutionException failure = null;
+			if (jointPlacement) {
+				logger.info("-- Joint placement, cost model: " + costModel + " --");
+				for (int attempt = 0; attempt < attemptCount; attempt++) {
+					final boolean perturbed = attempt > 0;
+					final long attemptSeed = seed + attempt;
+					final List<Topology> topologyList = new ArrayList<Topology>();
+					for (Topology baseTopology : baseTopologyList)
+						topologyList.add(new Topology(baseTopology));
+					assignmentFutureList.add(pool.submit(new Callable<TrafficManager>() {
+						@Override
+						public TrafficManager call() throws Exception {
+							return assignJointly(topologyList, baseNodeManager, perturbed ? new Random(attemptSeed) : null);
 						}
-					} /* end for (Slot emptySlot : emptySlotList) */
+					}));
+				}
+			} else {
+				/*
+				 * the assignment of executors to slots is independent for each topology,
+				 * so the first phase is carried out for distinct topologies (and attempts) in parallel
+				 */
+				logger.info("-- First phase --");
+				List<List<Future<Topology>>> attemptFutureList = new ArrayList<List<Future<Topology>>>();
+				for (int attempt = 0; attempt < attemptCount; attempt++) {
+					final boolean perturbed = attempt > 0;
+					final long attemptSeed = seed + attempt;
+					List<Future<Topology>> futureList = new ArrayList<Future<Topology>>();
+					for (Topology baseTopology : baseTopologyList) {
+						final Topology topology = new Topology(baseTopology);
+						futureList.add(pool.submit(new Callable<Topology>() {
+							@Override
+							public Topology call() throws Exception {
+								return assignExecutors(topology, perturbed ? new Random(attemptSeed) : null);
+							}
+						}));
+					}
+					attemptFutureList.add(futureList);
 				}
-				logger.info("Next assignment: " + Utils.collectionToString(topology.getSlots()));
-				
-				TrafficManager.getInstance().compileInterSlotTraffic();
 				
-			} /* end if (!executorPairList.isEmpty()) */
-			
-			logger.info("Assignments of executors for topology " + topologyID + " completed");
+				logger.info("-- Second phase --");
+				for (int attempt = 0; attempt < attemptCount; attempt++) {
+					final boolean perturbed = attempt > 0;
+					final long attemptSeed = seed + attempt;
+					final List<Topology> topologyList = new ArrayList<Topology>();
+					try {
+						for (Future<Topology> future : attemptFutureList.get(attempt))
+							topologyList.add(future.get());
+					} catch (ExecutionException e) {
+						logger.warn("First phase of attempt " + attempt + " failed", e.getCause());
+						if (failure == null)
+							failure = e;
+						assignmentFutureList.add(null);
+						continue;
+					}
+					assignmentFutureList.add(pool.submit(new Callable<TrafficManager>() {
+						@Override
+						public TrafficManager call() throws Exception {
+							return assignSlots(topologyList, baseNodeManager, perturbed ? new Random(attemptSeed) : null);
+						}
+					}));
+				}
+			}
 			
-		} /* end for (String topologyID : dbTopologies) */
-		logger.info("First phase completed!");
-		List<SlotPair> interSlotTrafficList = TrafficManager.getInstance().getInterSlotTrafficList();
+			TrafficManager bestTrafficManager = null;
+			double bestTrafficCost = -1;
+			for (int attempt = 0; attempt < attemptCount; attempt++) {
+				if (assignmentFutureList.get(attempt) == null)
+					continue;
+				TrafficManager trafficManager = null;
+				try {
+					trafficManager = assignmentFutureList.get(attempt).get();
+				} catch (ExecutionException e) {
+					logger.warn("Attempt " + attempt + " failed", e.getCause());
+					if (failure == null)
+						failure = e;
+					continue;
+				}
+				double trafficCost = trafficManager.computeTrafficCost(costModel);
+				logger.info("Attempt " + attempt + " leads to an inter-node traffic of " + trafficManager.computeInterNodeTraffic() + " tuple/s and a traffic cost of " + trafficCost);
+				if (bestTrafficManager == null ||
+					(trafficManager.getAssignments() != null && (bestTrafficManager.getAssignments() == null || trafficCost < bestTrafficCost)))
+				{
+					bestTrafficManager = trafficManager;
+					bestTrafficCost = trafficCost;
+				}
+			}
+			if (bestTrafficManager == null)
+				throw failure;
+			return bestTrafficManager;
+		} finally {
+			pool.shutdown();
+		}
+	}
+	
+	/**
+	 * single phase alternative to the two phases: assigns the executors of the given topologies directly to (node, slot) pairs,
+	 * so as to minimize the cost of the traffic according to the cost model; as in the second phase, each topology is then spread over the nodes it should use
+	 * @param topologyList the topologies, with no executor assigned to their slots yet
+	 * @param baseNodeManager the nodes, with no slot assigned yet
+	 * @param random if not null, the order executor pairs are considered is perturbed using this generator
+	 * @return the traffic manager tracking the assignment
+	 */
+	private TrafficManager assignJointly(List<Topology> topologyList, NodeManager baseNodeManager, Random random) {
+		TrafficManager trafficManager = new TrafficManager();
+		NodeManager nodeManager = new NodeManager(baseNodeManager, trafficManager);
+		if (nodeManager.getNodeCount() == 0) {
+			logger.info("No nodes have been configured yet, cannot determine any scheduling");
+			return trafficManager;
+		}
+		
+		// merge the executor pairs of all the topologies, sorted by traffic descending
+		List<ExecutorPair> interExecutorTrafficList = new ArrayList<ExecutorPair>();
+		for (Topology topology : topologyList) {
+			if (topology.getTrafficManager().getInterExecutorTrafficList().isEmpty())
+				logger.info("Traffic stats of topology " + topology.getTopologyID() + " are not complete yet, skip this topology");
+			interExecutorTrafficList.addAll(topology.getTrafficManager().getInterExecutorTrafficList());
+		}
+		if (random != null && !interExecutorTrafficList.isEmpty())
+			interExecutorTrafficList = perturbExecutorPairs(interExecutorTrafficList, random);
+		else
+			Collections.sort(interExecutorTrafficList, new Comparator<ExecutorPair>() {
+				@Override
+				public int compare(ExecutorPair p1, ExecutorPair p2) {
+					return p2.getTraffic() - p1.getTraffic();
+				}
+			});
+		logger.info("Inter-executor traffic stats: " + Utils.collectionToString(interExecutorTrafficList));
+		
+		new JointAssigner(topologyList, nodeManager, trafficManager, costModel).assign(interExecutorTrafficList);
+		spreadTopologies(topologyList, nodeManager, trafficManager);
+		if (trafficManager.getAssignments() != null)
+			logger.info("Assignment: " + Utils.collectionToString(trafficManager.getAssignments().keySet()));
+		return trafficManager;
+	}
+	
+	/**
+	 * second phase: assigns the slots of the given topologies to nodes so as to minimize inter-node traffic
+	 * @param topologyList the topologies, with executors already assigned to their slots
+	 * @param baseNodeManager the nodes, with no slot assigned yet
+	 * @param random if not null, the order slot pairs are considered is perturbed using this generator
+	 * @return the traffic manager tracking the assignment
+	 */
+	private TrafficManager assignSlots(List<Topology> topologyList, NodeManager baseNodeManager, Random random) {
+		TrafficManager trafficManager = new TrafficManager();
+		for (Topology topology : topologyList)
+			trafficManager.addTopology(topology);
+		trafficManager.compileInterSlotTraffic();
+		List<SlotPair> interSlotTrafficList = trafficManager.getInterSlotTrafficList();
+		if (random != null && !interSlotTrafficList.isEmpty())
+			interSlotTrafficList = perturbSlotPairs(interSlotTrafficList, random);
 		logger.info("Inter-slot traffic stats: " + Utils.collectionToString(interSlotTrafficList));
 		
-		// second phase
-		logger.info("-- Second phase --");
-		NodeManager nodeManager = new NodeManager(topologyList, cluster);
+		NodeManager nodeManager = new NodeManager(baseNodeManager, trafficManager);
 		if (nodeManager.getNodeCount() == 0) {
 			logger.info("No nodes have been configured yet, cannot determine any scheduling");
 		} else {
 			for (SlotPair slotPair : interSlotTrafficList) {
 				logger.info("Slot pair: " + slotPair);
-				List<Node> nodeList = TrafficManager.getInstance().getContainingNodeList(slotPair.getFirst(), slotPair.getSecond());
+				List<Node> nodeList = trafficManager.getContainingNodeList(slotPair.getFirst(), slotPair.getSecond());
 				if (nodeList.isEmpty()) {
 					logger.debug("Both slots have not been assigned yet, try to add them to the least loaded node");
 					Node leastLoadedNode = nodeManager.getLeastLoadedNode(slotPair.getFirst(), slotPair.getSecond());
@@ -449,7 +799,7 @@ public class OnlineScheduler implements IScheduler {
 							}
 							
 							if (assignmentOK) {
-								int tmpInterNodeTraffic = TrafficManager.getInstance().computeInterNodeTraffic();
+								int tmpInterNodeTraffic = trafficManager.computeInterNodeTraffic();
 								logger.debug("...the inter-node traffic is " + tmpInterNodeTraffic + " tuple/s");
 								if (minInterNodeTraffic == -1 || tmpInterNodeTraffic < minInterNodeTraffic) {
 									bestNodeForFirst = nodeForFirst;
@@ -477,70 +827,116 @@ public class OnlineScheduler implements IScheduler {
 				
 			} /* end for (SlotPair slotPair : interSlotTrafficList) */
 			
-			if (TrafficManager.getInstance().getAssignments() != null)
-				logger.info("Intermediate assignment: " + Utils.collectionToString(TrafficManager.getInstance().getAssignments().keySet()));
+			if (trafficManager.getAssignments() != null)
+				logger.info("Intermediate assignment: " + Utils.collectionToString(trafficManager.getAssignments().keySet()));
 			
-			/*
-			 *  ensure that the slots of a given topology are assigned to the proper number of nodes,
-			 *  otherwise the chances of parallelization/pipelining are not rightly exploited
-			 */
-			logger.info("Check whether all the topologies are using the desired number of nodes");
-			for (Topology topology : topologyList) {
-				// int numberOfNodesToUse = Math.min(topology.getSlots().size(), nodeManager.getNodeCount());
-				int numberOfNodesToUse = topology.getNumberOfNodesToUse(nodeManager.getNodeCount());
-				List<Node> usedNodeList = null;
-				while (	TrafficManager.getInstance().getNodeList(topology) != null &&
-						(usedNodeList = new ArrayList<Node>( TrafficManager.getInstance().getNodeList(topology) )).size() < numberOfNodesToUse)
-				{
-					logger.info("Topology " + topology + " is using " + usedNodeList.size() + " nodes, while it should use " + numberOfNodesToUse);
-					Node bestUsedNode = null;
-					Node bestUnusedNode = null;
-					Slot bestSlot = null;
-					int bestTraffic = -1;
-					for (Node usedNode : usedNodeList) {
-						// check if this node has more than one slot for that topology
-						int topologySlotCount = 0;
-						List<Slot> nodeSlotList = new ArrayList<Slot>( usedNode.getSlotList() );
-						for (Slot slot : nodeSlotList)
-							if (slot.getTopology() == topology)
-								topologySlotCount++;
-						if (topologySlotCount > 1) {
-							for (Slot slot : nodeSlotList) {
-								Node unusedNode = nodeManager.getUnusedNode(usedNodeList, slot);
-								if (unusedNode != null) {
-									usedNode.remove(slot);
-									unusedNode.assign(slot);
-									int traffic = TrafficManager.getInstance().computeInterNodeTraffic();
-									logger.info("Moving slot " + slot + " from node " + usedNode + " to node " + unusedNode + ", the traffic becomes " + traffic + " tuple/s");
-									if (bestUsedNode == null || traffic < bestTraffic) {
-										bestUsedNode = usedNode;
-										bestUnusedNode = unusedNode;
-										bestSlot = slot;
-										bestTraffic = traffic;
-									}
-									unusedNode.remove(slot);
-									usedNode.assign(slot);
-								} /* end if (unusedNode != null) */
-							} /* end for (Slot slot : nodeSlotList) */
-						} /* end if (topologySlotCount > 1) */
-					} /* end for (Node usedNode : usedNodeList) */
-					
-					if (bestUnusedNode != null) {
-						logger.info("The best is moving slot " + bestSlot + " from node " + bestUsedNode + " to node " + bestUnusedNode + ", with a traffic of " + bestTraffic + " tuple/s");
-						bestUsedNode.remove(bestSlot);
-						bestUnusedNode.assign(bestSlot);
-					} else {
-						logger.info("Cannot find a way to make topology " + topology + " use the desired number of nodes");
-						break;
-					}
-					
-				} /* end while (number of used nodes < number of nodes to use */
-			} /* end for (Topology topology : topologyList) */
+			spreadTopologies(topologyList, nodeManager, trafficManager);
 		}
 		
 		logger.info("Second phase completed!");
-		if (TrafficManager.getInstance().getAssignments() != null)
-			logger.info("Final assignment: " + Utils.collectionToString(TrafficManager.getInstance().getAssignments().keySet()));
+		if (trafficManager.getAssignments() != null)
+			logger.info("Final assignment: " + Utils.collectionToString(trafficManager.getAssignments().keySet()));
+		return trafficManager;
+	}
+	
+	/**
+	 * ensures that the slots of a given topology are assigned to the proper number of nodes,
+	 * otherwise the chances of parallelization/pipelining are not rightly exploited
+	 * @param topologyList
+	 * @param nodeManager
+	 * @param trafficManager tracking the assignment of the slots of the given topologies to the nodes of the given node manager
+	 */
+	private void spreadTopologies(List<Topology> topologyList, NodeManager nodeManager, TrafficManager trafficManager) {
+		logger.info("Check whether all the topologies are using the desired number of nodes");
+		for (Topology topology : topologyList) {
+			// int numberOfNodesToUse = Math.min(topology.getSlots().size(), nodeManager.getNodeCount());
+			int numberOfNodesToUse = topology.getNumberOfNodesToUse(nodeManager.getNodeCount());
+			List<Node> usedNodeList = null;
+			while (	trafficManager.getNodeList(topology) != null &&
+					(usedNodeList = new ArrayList<Node>( trafficManager.getNodeList(topology) )).size() < numberOfNodesToUse)
+			{
+				logger.info("Topology " + topology + " is using " + usedNodeList.size() + " nodes, while it should use " + numberOfNodesToUse);
+				Node bestUsedNode = null;
+				Node bestUnusedNode = null;
+				Slot bestSlot = null;
+				int bestTraffic = -1;
+				for (Node usedNode : usedNodeList) {
+					// check if this node has more than one slot for that topology
+					int topologySlotCount = 0;
+					List<Slot> nodeSlotList = new ArrayList<Slot>( usedNode.getSlotList() );
+					for (Slot slot : nodeSlotList)
+						if (slot.getTopology() == topology)
+							topologySlotCount++;
+					if (topologySlotCount > 1) {
+						for (Slot slot : nodeSlotList) {
+							Node unusedNode = nodeManager.getUnusedNode(usedNodeList, slot);
+							if (unusedNode != null) {
+								usedNode.remove(slot);
+								unusedNode.assign(slot);
+								int traffic = trafficManager.computeInterNodeTraffic();
+								logger.info("Moving slot " + slot + " from node " + usedNode + " to node " + unusedNode + ", the traffic becomes " + traffic + " tuple/s");
+								if (bestUsedNode == null || traffic < bestTraffic) {
+									bestUsedNode = usedNode;
+									bestUnusedNode = unusedNode;
+									bestSlot = slot;
+									bestTraffic = traffic;
+								}
+								unusedNode.remove(slot);
+								usedNode.assign(slot);
+							} /* end if (unusedNode != null) */
+						} /* end for (Slot slot : nodeSlotList) */
+					} /* end if (topologySlotCount > 1) */
+				} /* end for (Node usedNode : usedNodeList) */
+				
+				if (bestUnusedNode != null) {
+					logger.info("The best is moving slot " + bestSlot + " from node " + bestUsedNode + " to node " + bestUnusedNode + ", with a traffic of " + bestTraffic + " tuple/s");
+					bestUsedNode.remove(bestSlot);
+					bestUnusedNode.assign(bestSlot);
+				} else {
+					logger.info("Cannot find a way to make topology " + topology + " use the desired number of nodes");
+					break;
+				}
+				
+			} /* end while (number of used nodes < number of nodes to use */
+		} /* end for (Topology topology : topologyList) */
+	}
+	
+	/**
+	 * @param executorPairList
+	 * @param random
+	 * @return a copy of the given list, sorted by traffic descending after having scaled the traffic of each pair by a random factor in [1 - perturbation, 1 + perturbation]
+	 */
+	private List<ExecutorPair> perturbExecutorPairs(List<ExecutorPair> executorPairList, Random random) {
+		final Map<ExecutorPair, Double> perturbedTrafficMap = new HashMap<ExecutorPair, Double>();
+		for (ExecutorPair executorPair : executorPairList)
+			perturbedTrafficMap.put(executorPair, executorPair.getTraffic() * (1 + perturbation * (2 * random.nextDouble() - 1)));
+		List<ExecutorPair> perturbedList = new ArrayList<ExecutorPair>(executorPairList);
+		Collections.sort(perturbedList, new Comparator<ExecutorPair>() {
+			@Override
+			public int compare(ExecutorPair p1, ExecutorPair p2) {
+				return Double.compare(perturbedTrafficMap.get(p2), perturbedTrafficMap.get(p1));
+			}
+		});
+		return perturbedList;
+	}
+	
+	/**
+	 * @param slotPairList
+	 * @param random
+	 * @return a copy of the given list, sorted by traffic descending after having scaled the traffic of each pair by a random factor in [1 - perturbation, 1 + perturbation]
+	 */
+	private List<SlotPair> perturbSlotPairs(List<SlotPair> slotPairList, Random random) {
+		final Map<SlotPair, Double> perturbedTrafficMap = new HashMap<SlotPair, Double>();
+		for (SlotPair slotPair : slotPairList)
+			perturbedTrafficMap.put(slotPair, slotPair.getTraffic() * (1 + perturbation * (2 * random.nextDouble() - 1)));
+		List<SlotPair> perturbedList = new ArrayList<SlotPair>(slotPairList);
+		Collections.sort(perturbedList, new Comparator<SlotPair>() {
+			@Override
+			public int compare(SlotPair p1, SlotPair p2) {
+				return Double.compare(perturbedTrafficMap.get(p2), perturbedTrafficMap.get(p1));
+			}
+		});
+		return perturbedList;
 	}
 
 }
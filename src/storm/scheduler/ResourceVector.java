@@ -0,0 +1,123 @@
+/*******************************************************************************
+* Copyright (c) 2013 Leonardo Aniello, Roberto Baldoni, Leonardo Querzoni.
+* All rights reserved. This program and the accompanying materials
+* are made available under the terms of the Eclipse Public License v1.0
+* which accompanies this distribution, and is available at
+* http://www.eclipse.org/legal/epl-v10.html
+*
+* Contributors:
+* Leonardo Aniello, Roberto Baldoni, Leonardo Querzoni
+*******************************************************************************/
+package storm.scheduler;
+
+/**
+ * amount of each resource used by an executor, a slot or a node, or made available by a slot or a node;
+ * when used as a capacity, a negative value means that the corresponding resource is not limited
+ * @author Leonardo
+ *
+ */
+public class ResourceVector {
+	
+	public static final int CPU = 0; // Hz/s
+	public static final int HEAP = 1; // bytes
+	public static final int ALLOCATION = 2; // bytes allocated per second
+	public static final int NETWORK = 3; // bytes sent and received per second
+	public static final int IO = 4; // bytes read from and written to storage per second
+	public static final int DIMENSIONS = 5;
+	
+	private static final String[] NAMES = {"cpu", "heap", "allocation", "network", "io"};
+	
+	public static final long UNLIMITED = -1;
+	
+	private final long[] values;
+	
+	public ResourceVector() {
+		values = new long[DIMENSIONS];
+	}
+	
+	public ResourceVector(ResourceVector resourceVector) {
+		values = resourceVector.values.clone();
+	}
+	
+	/**
+	 * @return a capacity with no resource limited
+	 */
+	public static ResourceVector unlimited() {
+		ResourceVector capacity = new ResourceVector();
+		for (int i = 0; i < DIMENSIONS; i++)
+			capacity.values[i] = UNLIMITED;
+		return capacity;
+	}
+	
+	public long get(int resource) {
+		return values[resource];
+	}
+	
+	public void set(int resource, long value) {
+		values[resource] = value;
+	}
+	
+	public void add(ResourceVector resourceVector) {
+		for (int i = 0; i < DIMENSIONS; i++)
+			values[i] += resourceVector.values[i];
+	}
+	
+	public void subtract(ResourceVector resourceVector) {
+		for (int i = 0; i < DIMENSIONS; i++)
+			values[i] -= resourceVector.values[i];
+	}
+	
+	/**
+	 * @param r1
+	 * @param r2
+	 * @return for each resource, the highest amount between the given vectors
+	 */
+	public static ResourceVector max(ResourceVector r1, ResourceVector r2) {
+		ResourceVector max = new ResourceVector();
+		for (int i = 0; i < DIMENSIONS; i++)
+			max.values[i] = Math.max(r1.values[i], r2.values[i]);
+		return max;
+	}
+	
+	/**
+	 * @param demand
+	 * @param capacity
+	 * @return true if the given additional demand, added to these used resources, fits the given capacity in every dimension it uses
+	 */
+	public boolean canFit(ResourceVector demand, ResourceVector capacity) {
+		for (int i = 0; i < DIMENSIONS; i++)
+			if (capacity.values[i] >= 0 && demand.values[i] > 0 && values[i] + demand.values[i] > capacity.values[i])
+				return false;
+		return true;
+	}
+	
+	/**
+	 * the share of a resource is its usage divided by the capacity, or by the given reference when the resource is not limited;
+	 * resources with neither capacity nor reference are not taken into account
+	 * @param capacity
+	 * @param reference typically the overall demand, so that the shares of unlimited resources are comparable
+	 * @return the highest share among the resources, that is the share of the dominant resource
+	 */
+	public double getDominantShare(ResourceVector capacity, ResourceVector reference) {
+		double dominantShare = 0;
+		for (int i = 0; i < DIMENSIONS; i++) {
+			long total = capacity.values[i] >= 0 ? capacity.values[i] : reference.values[i];
+			if (total > 0)
+				dominantShare = Math.max(dominantShare, (double)values[i] / total);
+			else if (capacity.values[i] == 0 && values[i] > 0)
+				return Double.POSITIVE_INFINITY; // a resource that is not available at all is used
+		}
+		return dominantShare;
+	}
+	
+	@Override
+	public String toString() {
+		StringBuilder sb = new StringBuilder("{");
+		for (int i = 0; i < DIMENSIONS; i++) {
+			if (i > 0)
+				sb.append(", ");
+			sb.append(NAMES[i]).append(": ").append(values[i]);
+		}
+		return sb.append("}").toString();
+	}
+}
@@ -19,31 +19,40 @@ public class Slot {
 	private final Topology topology;
 	private final int slotID;
 	private Map<Integer, Executor> executorMap; // executor.hashcode() -> executor
-	private long load;
+	private ResourceVector resources; // resources used by the executors of this slot
+	private int contendedCount; // executors of this slot contending for locks
 	
 	public Slot(Topology topology, int slotID) {
 		this.topology = topology;
 		this.slotID = slotID;
 		executorMap = new HashMap<Integer, Executor>();
+		resources = new ResourceVector();
 	}
 	
 	/**
 	 * @return true if this slot can be assigned additional executors
 	 */
 	public boolean canAccept(Executor executor) {
-		return canAccept(1, executor.getLoad());
+		return canAccept(1, executor.getResources(), topology.isContended(executor) ? 1 : 0);
 	}
 	
-	public boolean canAccept(int executorCount, long totalLoad) {
+	/**
+	 * @param executorCount
+	 * @param demand resources used by the executors to add
+	 * @param contendedExecutorCount how many of the executors to add contend for locks
+	 * @return true if this slot can be assigned the given additional executors
+	 */
+	public boolean canAccept(int executorCount, ResourceVector demand, int contendedExecutorCount) {
 		return
+			(contendedExecutorCount == 0 || !topology.isSpreadingContendedExecutors() || contendedCount + contendedExecutorCount <= 1) &&
 			topology.getMaxExecutorsPerSlot() - executorMap.values().size() >= executorCount &&
-			(topology.getMaxLoadForASlot() < 0 || load + totalLoad <= topology.getMaxLoadForASlot());
+			resources.canFit(demand, topology.getSlotCapacity());
 		// return topology.getMaxExecutorsPerSlot() - executorMap.values().size() >= executorCount;
 	}
 	
 	@Override
 	public String toString() {
-		return "{" + topology.getTopologyID() + ", slot ID " + slotID + " (load: " + load + " Hz/s): " + Utils.collectionToString(executorMap.values()) + "}";
+		return "{" + topology.getTopologyID() + ", slot ID " + slotID + " (load: " + getLoad() + " Hz/s): " + Utils.collectionToString(executorMap.values()) + "}";
 	}
 	
 	/**
@@ -56,8 +65,10 @@ public class Slot {
 		if (!canAccept(executor))
 			throw new RuntimeException("Executor " + executor + " cannot be added to slot " + this);
 		executorMap.put(executor.hashCode(), executor);
-		load += executor.getLoad();
-		TrafficManager.getInstance().executorAssigned(this, executor);
+		resources.add(executor.getResources());
+		if (topology.isContended(executor))
+			contendedCount++;
+		topology.getTrafficManager().executorAssigned(this, executor);
 	}
 	
 	/**
@@ -67,8 +78,10 @@ public class Slot {
 	public void remove(Executor executor) {
 		if (contains(executor)) {
 			executorMap.remove(executor.hashCode());
-			load -= executor.getLoad();
-			TrafficManager.getInstance().executorRemoved(this, executor);
+			resources.subtract(executor.getResources());
+			if (topology.isContended(executor))
+				contendedCount--;
+			topology.getTrafficManager().executorRemoved(this, executor);
 		} else {
 			throw new RuntimeException("Executor " + executor + " is not contained in this slot: " + this);
 		}
@@ -79,7 +92,33 @@ public class Slot {
 	}
 	
 	public long getLoad() {
-		return load;
+		return resources.get(ResourceVector.CPU);
+	}
+	
+	public long getAllocationRate() {
+		return resources.get(ResourceVector.ALLOCATION);
+	}
+	
+	public long getIORate() {
+		return resources.get(ResourceVector.IO);
+	}
+	
+	public ResourceVector getResources() {
+		return resources;
+	}
+	
+	/**
+	 * @return the bytes of heap the executors of this slot can still retain within the heap budget, -1 if the heap is not limited
+	 */
+	public long getHeapHeadroom() {
+		long heapBudget = topology.getSlotCapacity().get(ResourceVector.HEAP);
+		if (heapBudget < 0)
+			return -1;
+		return heapBudget - resources.get(ResourceVector.HEAP);
+	}
+	
+	public int getContendedCount() {
+		return contendedCount;
 	}
 	
 	public Collection<Executor> getExecutors() {
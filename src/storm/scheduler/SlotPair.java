@@ -19,6 +19,7 @@ public class SlotPair {
 
 	private final Slot first, second;
 	private int traffic;
+	private long bytes; // bytes per second, whatever the unit of traffic
 	
 	public static long getKey(Slot first, Slot second) {
 		return first.hashCode() << 32 + second.hashCode();
@@ -44,6 +45,21 @@ public class SlotPair {
 			throw new RuntimeException("Traffic lower than zero...(traffic: " + this.traffic + ", removed traffic: " + traffic + ")");
 	}
 
+	/**
+	 * @return bytes per second exchanged by the slots of this pair, which flow through the network when they are assigned to distinct nodes
+	 */
+	public long getBytes() {
+		return bytes;
+	}
+	
+	public void addBytes(long bytes) {
+		this.bytes += bytes;
+	}
+	
+	public void removeBytes(long bytes) {
+		this.bytes -= bytes;
+	}
+	
 	public Slot getFirst() {
 		return first;
 	}
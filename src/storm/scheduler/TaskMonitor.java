@@ -10,7 +10,9 @@
 *******************************************************************************/
 package storm.scheduler;
 
+import java.util.Collection;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 import backtype.storm.tuple.Tuple;
@@ -19,6 +21,8 @@ public class TaskMonitor {
 	
 	private final int taskId;
 	
+	private final String componentId;
+	
 	private long threadId;
 	
 	/**
@@ -29,17 +33,129 @@ public class TaskMonitor {
 	long lastCheck;
 	
 	/**
-	 * map source task id -> number of tuples sent by source to to this task
+	 * one tuple in samplingInterval is counted, as samplingInterval tuples, so that counts are unbiased;
+	 * tuples are picked by a xorshift generator rather than a counter, to avoid aliasing with round-robin groupings
+	 */
+	private final int samplingInterval;
+	
+	private int random;
+	
+	/**
+	 * map stream id -> stats of the tuples received on that stream in current time slot, per source task
+	 */
+	private Map<String, StreamStats> trafficStatMap;
+	
+	/**
+	 * map stream id -> (source task id -> number of tuples sent by source to to this task on that stream)
+	 */
+	private Map<String, Map<Integer, Integer>> trafficStatToReturn;
+	
+	/**
+	 * the size of a received tuple is estimated once every sizeSamplingInterval tuples, and for the first tuple from each source
+	 */
+	private final int sizeSamplingInterval;
+	
+	private long receivedTupleCount;
+	
+	/**
+	 * map stream id -> (source task id -> estimated number of bytes sent by source to this task)
+	 */
+	private Map<String, Map<Integer, Long>> byteStatToReturn;
+	
+	/**
+	 * if greater than 0, only the heavyHitterCount sources sending the most tuples are tracked per stream and source component,
+	 * the traffic of the others is folded into the traffic between components; memory doesn't grow with the number of sources
+	 */
+	private final int heavyHitterCount;
+	
+	/**
+	 * key of the size counters when tracking heavy hitters, sizes are estimated per stream rather than per source
+	 */
+	private static final int ALL_SOURCES = Integer.MIN_VALUE;
+	
+	/**
+	 * map stream id -> (source component id -> number of tuples sent to this task by the sources that are not heavy hitters)
+	 */
+	private Map<String, Map<String, Integer>> componentTrafficStatToReturn;
+	
+	/**
+	 * map stream id -> number of tuples emitted by this task on that stream in current time slot, per destination task
+	 */
+	private Map<String, TrafficCounter> emittedStatMap;
+	
+	/**
+	 * map stream id -> (destination task id -> number of tuples emitted by this task to destination on that stream)
+	 */
+	private Map<String, Map<Integer, Integer>> emittedStatToReturn;
+	
+	private final boolean latencyMonitoring;
+	
+	/**
+	 * time spent in execute() by the tuples of current time slot, in microseconds
+	 */
+	private LatencyHistogram serviceTimeHistogram;
+	
+	private LatencyHistogram serviceTimeHistogramToReturn;
+	
+	/**
+	 * time spent in execute() in current time slot, in ns
 	 */
-	private Map<Integer, Integer> trafficStatMap;
+	private long busyTime;
 	
-	private Map<Integer, Integer> trafficStatToReturn;
+	private long busyTimeToReturn;
+	
+	/**
+	 * counters of the tuples received on a stream, and of their estimated sizes, per source task
+	 */
+	private static class StreamStats {
+		final TrafficCounter tupleCounter = new TrafficCounter();
+		final TrafficCounter sizeSumCounter = new TrafficCounter(); // sum of the estimated sizes in current time slot
+		final TrafficCounter sizeSampleCounter = new TrafficCounter(); // number of estimates in current time slot
+		final TrafficCounter tupleSizeCounter = new TrafficCounter(); // latest average estimated size, 0 if never estimated
+		final Map<String, ComponentStats> componentStatMap = new HashMap<String, ComponentStats>(); // only when tracking heavy hitters
+	}
+	
+	/**
+	 * tuples received on a stream from the tasks of a component, when tracking heavy hitters
+	 */
+	private static class ComponentStats {
+		final HeavyHitterCounter tupleCounter;
+		long totalTupleCount;
+		
+		ComponentStats(int heavyHitterCount) {
+			// twice the counters reported, so that the heavy hitters rarely get evicted and their counts are almost exact
+			tupleCounter = new HeavyHitterCounter(2 * heavyHitterCount);
+		}
+	}
 	
 	public TaskMonitor(int taskId) {
+		this(taskId, null, 1, 0);
+	}
+	
+	/**
+	 * @param taskId
+	 * @param componentId
+	 * @param samplingInterval one tuple in samplingInterval is counted, 1 to count them all
+	 * @param heavyHitterCount number of sources tracked per stream and source component, 0 to track them all
+	 */
+	public TaskMonitor(int taskId, String componentId, int samplingInterval, int heavyHitterCount) {
+		if (samplingInterval < 1)
+			throw new RuntimeException("Wrong traffic sampling interval value: " + samplingInterval);
+		if (heavyHitterCount < 0)
+			throw new RuntimeException("Wrong heavy hitter count value: " + heavyHitterCount);
 		this.taskId = taskId;
+		this.componentId = componentId;
+		this.samplingInterval = samplingInterval;
+		this.heavyHitterCount = heavyHitterCount;
+		random = (taskId * 0x9E3779B9) | 1;
 		threadId = -1;
 		slotLength = MonitorConfiguration.getInstance().getTimeWindowSlotLength() * 1000;
-		trafficStatMap = new HashMap<Integer, Integer>();
+		sizeSamplingInterval = Math.max(1, MonitorConfiguration.getInstance().getTupleSizeSamplingInterval());
+		trafficStatMap = new HashMap<String, StreamStats>();
+		emittedStatMap = new HashMap<String, TrafficCounter>();
+		latencyMonitoring = MonitorConfiguration.getInstance().isLatencyMonitoring();
+		if (latencyMonitoring)
+			serviceTimeHistogram = new LatencyHistogram();
 	}
 	
 	public void checkThreadId() {
@@ -52,31 +168,251 @@ public class TaskMonitor {
 	public int getTaskId() {
 		return taskId;
 	}
+	
+	public String getComponentId() {
+		return componentId;
+	}
+	
+	/**
+	 * @return number of sources tracked per stream and source component, 0 if all are tracked
+	 */
+	public int getHeavyHitterCount() {
+		return heavyHitterCount;
+	}
 
 	public long getThreadId() {
 		return threadId;
 	}
 	
+	/**
+	 * @return one tuple in N is counted
+	 */
+	public int getSamplingInterval() {
+		return samplingInterval;
+	}
+	
+	/**
+	 * @return true if the current tuple has to be counted
+	 */
+	private boolean isSampled() {
+		if (samplingInterval == 1)
+			return true;
+		random ^= random << 13;
+		random ^= random >>> 17;
+		random ^= random << 5;
+		return (random & Integer.MAX_VALUE) % samplingInterval == 0;
+	}
+	
 	public void notifyTupleReceived(Tuple tuple) {
 		checkThreadId();
+		if (!isSampled())
+			return;
 		int sourceTaskId = tuple.getSourceTask();
-		Integer traffic = trafficStatMap.get(sourceTaskId);
-		if (traffic == null)
-			traffic = 0;
-		trafficStatMap.put(sourceTaskId, ++traffic);
+		String streamId = tuple.getSourceStreamId();
+		StreamStats streamStats = trafficStatMap.get(streamId);
+		if (streamStats == null) {
+			streamStats = new StreamStats();
+			trafficStatMap.put(streamId, streamStats);
+		}
+		int sizeKey = sourceTaskId;
+		if (heavyHitterCount > 0) {
+			String sourceComponentId = tuple.getSourceComponent();
+			ComponentStats componentStats = streamStats.componentStatMap.get(sourceComponentId);
+			if (componentStats == null) {
+				componentStats = new ComponentStats(heavyHitterCount);
+				streamStats.componentStatMap.put(sourceComponentId, componentStats);
+			}
+			componentStats.tupleCounter.add(sourceTaskId, samplingInterval);
+			componentStats.totalTupleCount += samplingInterval;
+			sizeKey = ALL_SOURCES;
+		} else
+			streamStats.tupleCounter.add(sourceTaskId, samplingInterval);
 		
+		if (++receivedTupleCount % sizeSamplingInterval == 0 || streamStats.tupleSizeCounter.get(sizeKey) == 0) {
+			long size = estimateSize(tuple.getValues());
+			streamStats.sizeSumCounter.add(sizeKey, size);
+			streamStats.sizeSampleCounter.increment(sizeKey);
+			if (streamStats.tupleSizeCounter.get(sizeKey) == 0)
+				streamStats.tupleSizeCounter.add(sizeKey, size);
+		}
+		
+		checkTimeSlot();
+	}
+	
+	/**
+	 * invoked by the collector of this task when a tuple is emitted
+	 * @param streamId
+	 * @param destinationTaskIds the tasks the tuple has been sent to
+	 */
+	public void notifyTupleEmitted(String streamId, List<Integer> destinationTaskIds) {
+		checkThreadId();
+		if (heavyHitterCount > 0 || !isSampled())
+			return; // when tracking heavy hitters, pairs are only accounted by the destination
+		TrafficCounter counter = getEmittedCounter(streamId);
+		for (int i = 0; i < destinationTaskIds.size(); i++)
+			counter.add(destinationTaskIds.get(i), samplingInterval);
+		checkTimeSlot();
+	}
+	
+	/**
+	 * invoked by the collector of this task when a tuple is emitted directly to a task
+	 * @param streamId
+	 * @param destinationTaskId
+	 */
+	public void notifyTupleEmitted(String streamId, int destinationTaskId) {
+		checkThreadId();
+		if (heavyHitterCount > 0 || !isSampled())
+			return;
+		getEmittedCounter(streamId).add(destinationTaskId, samplingInterval);
+		checkTimeSlot();
+	}
+	
+	/**
+	 * @return true if the time spent in execute() has to be notified through notifyTupleExecuted()
+	 */
+	public boolean isLatencyMonitoring() {
+		return latencyMonitoring;
+	}
+	
+	/**
+	 * invoked when the execute() of a tuple is over
+	 * @param serviceTime time spent in execute(), in nanoseconds
+	 */
+	public void notifyTupleExecuted(long serviceTime) {
+		if (latencyMonitoring) {
+			serviceTimeHistogram.record(serviceTime / 1000);
+			busyTime += serviceTime;
+		}
+	}
+	
+	private TrafficCounter getEmittedCounter(String streamId) {
+		TrafficCounter counter = emittedStatMap.get(streamId);
+		if (counter == null) {
+			counter = new TrafficCounter();
+			emittedStatMap.put(streamId, counter);
+		}
+		return counter;
+	}
+	
+	/**
+	 * when the current time slot is over, makes its stats available and resets the counters
+	 */
+	private void checkTimeSlot() {
 		long now = System.currentTimeMillis();
 		if (lastCheck == 0)
 			lastCheck = now;
 		if (now - lastCheck >= slotLength) {
+			// the bytes sent by a source are its tuples times the average size estimated in this time slot, or the latest one if no estimate is available
+			Map<String, Map<Integer, Integer>> trafficStat = new HashMap<String, Map<Integer, Integer>>();
+			Map<String, Map<Integer, Long>> byteStat = new HashMap<String, Map<Integer, Long>>();
+			Map<String, Map<String, Integer>> componentTrafficStat = new HashMap<String, Map<String, Integer>>();
+			for (String stream : trafficStatMap.keySet()) {
+				StreamStats streamStats = trafficStatMap.get(stream);
+				Map<Integer, Integer> streamTrafficStat = new HashMap<Integer, Integer>();
+				Map<Integer, Long> streamByteStat = new HashMap<Integer, Long>();
+				for (int sizeKey : streamStats.sizeSampleCounter.getTaskIds()) {
+					long samples = streamStats.sizeSampleCounter.get(sizeKey);
+					streamStats.tupleSizeCounter.add(sizeKey, streamStats.sizeSumCounter.get(sizeKey) / samples - streamStats.tupleSizeCounter.get(sizeKey));
+				}
+				if (heavyHitterCount > 0) {
+					// heavy hitters are reported per pair, the rest per component
+					long tupleSize = streamStats.tupleSizeCounter.get(ALL_SOURCES);
+					Map<String, Integer> streamComponentTrafficStat = new HashMap<String, Integer>();
+					for (String sourceComponentId : streamStats.componentStatMap.keySet()) {
+						ComponentStats componentStats = streamStats.componentStatMap.get(sourceComponentId);
+						long tail = componentStats.totalTupleCount;
+						for (int source : componentStats.tupleCounter.getTopTaskIds(heavyHitterCount)) {
+							// sketch counts are upper bounds, so only the guaranteed part is reported per pair and the error is left to the tail
+							long tuples = Math.min(componentStats.tupleCounter.get(source) - componentStats.tupleCounter.getError(source), tail);
+							if (tuples <= 0)
+								continue;
+							streamTrafficStat.put(source, (int)tuples);
+							streamByteStat.put(source, tuples * tupleSize);
+							tail -= tuples;
+						}
+						if (tail > 0)
+							streamComponentTrafficStat.put(sourceComponentId, (int)tail);
+						componentStats.tupleCounter.clear();
+						componentStats.totalTupleCount = 0;
+					}
+					componentTrafficStat.put(stream, streamComponentTrafficStat);
+				} else {
+					for (int source : streamStats.tupleCounter.getTaskIds()) {
+						long tuples = streamStats.tupleCounter.get(source);
+						streamTrafficStat.put(source, (int)tuples);
+						streamByteStat.put(source, tuples * streamStats.tupleSizeCounter.get(source));
+					}
+				}
+				trafficStat.put(stream, streamTrafficStat);
+				byteStat.put(stream, streamByteStat);
+				streamStats.tupleCounter.clear();
+				streamStats.sizeSumCounter.clear();
+				streamStats.sizeSampleCounter.clear();
+			}
+			Map<String, Map<Integer, Integer>> emittedStat = new HashMap<String, Map<Integer, Integer>>();
+			for (String stream : emittedStatMap.keySet()) {
+				TrafficCounter counter = emittedStatMap.get(stream);
+				Map<Integer, Integer> streamEmittedStat = new HashMap<Integer, Integer>();
+				for (int destination : counter.getTaskIds())
+					streamEmittedStat.put(destination, (int)counter.get(destination));
+				emittedStat.put(stream, streamEmittedStat);
+				counter.clear();
+			}
+			LatencyHistogram serviceTimeStat = null;
+			if (latencyMonitoring) {
+				serviceTimeStat = serviceTimeHistogram.copy();
+				serviceTimeHistogram.clear();
+			}
+			long busyTimeStat = busyTime;
+			busyTime = 0;
 			synchronized (this) {
-				trafficStatToReturn = trafficStatMap;
-				trafficStatMap = new HashMap<Integer, Integer>();
+				trafficStatToReturn = trafficStat;
+				byteStatToReturn = byteStat;
+				componentTrafficStatToReturn = componentTrafficStat;
+				emittedStatToReturn = emittedStat;
+				serviceTimeHistogramToReturn = serviceTimeStat;
+				busyTimeToReturn = busyTimeStat;
 				lastCheck += slotLength;
 			}
 		}
 	}
 	
+	/**
+	 * a rough estimate of the serialized size of the given object, in bytes;
+	 * primitive wrappers are counted with their binary size, strings with their length, containers with the sum of their elements
+	 * @param value
+	 * @return
+	 */
+	private static long estimateSize(Object value) {
+		if (value == null)
+			return 1;
+		if (value instanceof Byte || value instanceof Boolean)
+			return 1;
+		if (value instanceof Short || value instanceof Character)
+			return 2;
+		if (value instanceof Integer || value instanceof Float)
+			return 4;
+		if (value instanceof Long || value instanceof Double)
+			return 8;
+		if (value instanceof String)
+			return 2 + ((String)value).length();
+		if (value instanceof byte[])
+			return 4 + ((byte[])value).length;
+		if (value instanceof Collection) {
+			long size = 4;
+			for (Object element : (Collection<?>)value)
+				size += estimateSize(element);
+			return size;
+		}
+		if (value instanceof Map) {
+			long size = 4;
+			for (Map.Entry<?, ?> entry : ((Map<?, ?>)value).entrySet())
+				size += estimateSize(entry.getKey()) + estimateSize(entry.getValue());
+			return size;
+		}
+		return 2 + value.toString().length();
+	}
+	
 	/*public void notifySpoutTupleEmitted() {
 		WorkerMonitor.getInstance().notifyTupleSentToAcker(taskId);
 	}
@@ -94,13 +430,57 @@ public class TaskMonitor {
 	}*/
 	
 	/*
-	 * source task -> number of tuples sent to this task
+	 * stream -> (source task -> number of tuples sent to this task)
 	 */
-	public synchronized Map<Integer, Integer> getTrafficStatMap() {
+	public synchronized Map<String, Map<Integer, Integer>> getTrafficStatMap() {
 		/*Map<Integer, Integer> tmp = trafficStatMap;
 		trafficStatMap = new HashMap<Integer, Integer>();
 		return tmp;*/
 		return trafficStatToReturn;
 	}
 
+	/*
+	 * stream -> (source task -> estimated number of bytes sent to this task)
+	 */
+	public synchronized Map<String, Map<Integer, Long>> getByteStatMap() {
+		return byteStatToReturn;
+	}
+
+	/*
+	 * stream -> (source component -> number of tuples sent to this task by the sources that are not heavy hitters)
+	 */
+	public synchronized Map<String, Map<String, Integer>> getComponentTrafficStatMap() {
+		return componentTrafficStatToReturn;
+	}
+	
+	/*
+	 * stream -> (destination task -> number of tuples emitted by this task), null if the task has been idle for more than a time slot
+	 */
+	public synchronized Map<String, Map<Integer, Integer>> getEmittedStatMap() {
+		return isStale() ? null : emittedStatToReturn;
+	}
+
+	/*
+	 * time spent in execute() by the tuples of the latest time slot, null if latency is not monitored or the task has been idle for more than a time slot
+	 */
+	public synchronized LatencyHistogram getServiceTimeHistogram() {
+		return isStale() ? null : serviceTimeHistogramToReturn;
+	}
+
+	/*
+	 * time spent in execute() during the latest time slot, in ns; 0 if latency is not monitored or the task has been idle for more than a time slot
+	 */
+	public synchronized long getBusyTime() {
+		return isStale() ? 0 : busyTimeToReturn;
+	}
+	
+	/**
+	 * time slots are only rotated by the thread of the task when it receives or emits a tuple,
+	 * so the stats of the latest completed slot would be reported forever by an idle task
+	 * @return true if no time slot has been completed for more than a slot
+	 */
+	private boolean isStale() {
+		return System.currentTimeMillis() - lastCheck >= 2 * slotLength;
+	}
+
 }
@@ -16,13 +16,15 @@ public class TaskPair {
 
 	private final int sourceTaskId;
 	private final int destinationTaskId;
+	private final String streamId;
 	private final String toString;
 	// private final int hashCode;
 	
-	public TaskPair(int sourceTaskId, int destinationTaskId) {
+	public TaskPair(int sourceTaskId, int destinationTaskId, String streamId) {
 		this.sourceTaskId = sourceTaskId;
 		this.destinationTaskId = destinationTaskId;
-		toString = "[" + sourceTaskId + "->" + destinationTaskId + "]";
+		this.streamId = streamId;
+		toString = "[" + sourceTaskId + "->" + destinationTaskId + " (" + streamId + ")]";
 		// hashCode = sourceTaskId * MAX_TASK_ID + destinationTaskId;
 	}
 
@@ -34,6 +36,10 @@ public class TaskPair {
 		return destinationTaskId;
 	}
 	
+	public String getStreamId() {
+		return streamId;
+	}
+	
 	@Override
 	public String toString() {
 		return toString;
@@ -45,6 +51,7 @@ public class TaskPair {
 		int result = 1;
 		result = prime * result + destinationTaskId;
 		result = prime * result + sourceTaskId;
+		result = prime * result + ((streamId == null) ? 0 : streamId.hashCode());
 		return result;
 	}
 
@@ -61,6 +68,11 @@ public class TaskPair {
 			return false;
 		if (sourceTaskId != other.sourceTaskId)
 			return false;
+		if (streamId == null) {
+			if (other.streamId != null)
+				return false;
+		} else if (!streamId.equals(other.streamId))
+			return false;
 		return true;
 	}
 	
@@ -11,8 +11,14 @@
 package storm.scheduler;
 
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
+import org.apache.log4j.Logger;
+
+import backtype.storm.scheduler.ExecutorDetails;
 import backtype.storm.scheduler.TopologyDetails;
 
 /**
@@ -21,6 +27,9 @@ import backtype.storm.scheduler.TopologyDetails;
  *
  */
 public class Topology {
+	
+	private static final long DEFAULT_EXACT_TIME_LIMIT = 1000; // ms
+	private static final float DEFAULT_HEAP_BUDGET_FRACTION = 0.7f; // the rest of the heap is left to short-lived objects
 
 	/**
 	 * the list of slots for this topology
@@ -34,6 +43,35 @@ public class Topology {
 	private final float alfa, beta, gamma, delta;
 	private long totalLoad;
 	private int maxExecutorsPerSlot;
+	private long maxAllocationRateForASlot; // in bytes/s, negative if not enforced
+	private long heapBudgetForASlot; // in bytes, negative if not enforced
+	private float contentionThreshold; // fraction of time blocked on monitors above which an executor is contended, negative if not enforced
+	private int contendedExecutorCount; // -1 until computed from the inter-executor traffic stats
+	private ResourceVector slotCapacity; // resources available to the executors of a slot, null until computed
+	private ResourceVector totalResources; // resources used by all the executors, null until computed from the inter-executor traffic stats
+	
+	/**
+	 * the assignment of executors to slots is searched exactly when the topology has at most exactMaxExecutors communicating executors,
+	 * within exactTimeLimit ms
+	 */
+	private int exactMaxExecutors;
+	private long exactTimeLimit;
+	
+	/**
+	 * stream id -> weight of its traffic; streams not in the map weigh 1, streams weighing 0 are ignored
+	 */
+	private Map<String, Float> streamWeights;
+	
+	/**
+	 * component id -> bytes of heap retained by the state of each of its tasks, for the components declaring it
+	 */
+	private Map<String, Long> stateSizes;
+	private Map<ExecutorDetails, String> executorToComponent;
+	
+	/**
+	 * inter-executor and inter-slot traffic stats of this topology
+	 */
+	private final TopologyTrafficManager trafficManager;
 	
 	@Override
 	public String toString() {
@@ -42,6 +80,7 @@ public class Topology {
 	
 	public Topology(TopologyDetails details) {
 		this.topologyID = details.getId();
+		trafficManager = new TopologyTrafficManager(this);
 		executorCount = details.getExecutors().size();
 		int slotCount = Math.min(details.getNumWorkers(), executorCount);
 		slotList = new ArrayList<Slot>();
@@ -68,6 +107,44 @@ public class Topology {
 		else
 			delta = 0;
 		
+		if (details.getConf().get(Utils.EXACT_MAX_EXECUTORS) != null)
+			exactMaxExecutors = Integer.parseInt(details.getConf().get(Utils.EXACT_MAX_EXECUTORS).toString());
+		else
+			exactMaxExecutors = 0;
+		
+		if (details.getConf().get(Utils.EXACT_TIME_LIMIT) != null)
+			exactTimeLimit = Long.parseLong(details.getConf().get(Utils.EXACT_TIME_LIMIT).toString());
+		else
+			exactTimeLimit = DEFAULT_EXACT_TIME_LIMIT;
+		
+		streamWeights = Utils.getStreamWeights(details.getConf());
+		
+		if (details.getConf().get(Utils.MAX_ALLOCATION_RATE_PER_SLOT) != null)
+			maxAllocationRateForASlot = Long.parseLong(details.getConf().get(Utils.MAX_ALLOCATION_RATE_PER_SLOT).toString());
+		else
+			maxAllocationRateForASlot = -1; // a negative value means that no control on the allocation rate is enforced at all
+		
+		if (details.getConf().get(Utils.CONTENTION_THRESHOLD) != null)
+			contentionThreshold = Float.parseFloat(details.getConf().get(Utils.CONTENTION_THRESHOLD).toString());
+		else
+			contentionThreshold = -1; // a negative value means that contended executors are not spread at all
+		contendedExecutorCount = -1;
+		
+		stateSizes = Utils.getStateSizes(details.getConf());
+		executorToComponent = details.getExecutorToComponent();
+		float heapBudgetFraction = DEFAULT_HEAP_BUDGET_FRACTION;
+		if (details.getConf().get(Utils.HEAP_BUDGET_FRACTION) != null)
+			heapBudgetFraction = Float.parseFloat(details.getConf().get(Utils.HEAP_BUDGET_FRACTION).toString());
+		if (heapBudgetFraction <= 0 || heapBudgetFraction > 1)
+			throw new RuntimeException("Wrong heap budget fraction value: " + heapBudgetFraction);
+		long maxHeapSize = Utils.getMaxHeapSize(details.getConf());
+		if (details.getConf().get(Utils.HEAP_BUDGET_PER_SLOT) != null)
+			heapBudgetForASlot = Long.parseLong(details.getConf().get(Utils.HEAP_BUDGET_PER_SLOT).toString());
+		else if (maxHeapSize >= 0)
+			heapBudgetForASlot = (long)(maxHeapSize * heapBudgetFraction);
+		else
+			heapBudgetForASlot = -1; // a negative value means that no control on the heap is enforced at all
+		
 		if (alfa < 0 || alfa > 1)
 			throw new RuntimeException("Wrong alfa value: " + alfa);
 		if (beta < 0 || beta > 1)
@@ -76,12 +153,49 @@ public class Topology {
 			throw new RuntimeException("Wrong gamma value: " + gamma);
 		if (delta < 0 || delta > 1)
 			throw new RuntimeException("Wrong delta value: " + delta);
+		if (exactMaxExecutors < 0)
+			throw new RuntimeException("Wrong maximum number of executors for the exact search: " + exactMaxExecutors);
+		if (exactTimeLimit < 0)
+			throw new RuntimeException("Wrong time limit for the exact search: " + exactTimeLimit);
+		if (contentionThreshold != -1 && (contentionThreshold <= 0 || contentionThreshold > 1))
+			throw new RuntimeException("Wrong contention threshold value: " + contentionThreshold);
 		
 		int min = (int)Math.ceil((double)executorCount/slotList.size());
 		int max = executorCount - slotList.size() + 1;
 		maxExecutorsPerSlot = min + (int)Math.ceil(alfa * (max - min));
 	}
 	
+	/**
+	 * creates an empty copy of the given topology, with the same parameters and inter-executor traffic stats but no executor assigned to its slots
+	 * @param topology
+	 */
+	public Topology(Topology topology) {
+		this.topologyID = topology.topologyID;
+		trafficManager = new TopologyTrafficManager(this);
+		trafficManager.setInterExecutorTrafficList(topology.getTrafficManager().getInterExecutorTrafficList());
+		executorCount = topology.executorCount;
+		slotList = new ArrayList<Slot>();
+		for (int i = 0; i < topology.slotList.size(); i++)
+			slotList.add(new Slot(this, i));
+		alfa = topology.alfa;
+		beta = topology.beta;
+		gamma = topology.gamma;
+		delta = topology.delta;
+		totalLoad = topology.totalLoad;
+		maxExecutorsPerSlot = topology.maxExecutorsPerSlot;
+		maxAllocationRateForASlot = topology.maxAllocationRateForASlot;
+		heapBudgetForASlot = topology.heapBudgetForASlot;
+		stateSizes = topology.stateSizes;
+		executorToComponent = topology.executorToComponent;
+		contentionThreshold = topology.contentionThreshold;
+		contendedExecutorCount = -1;
+		slotCapacity = topology.slotCapacity;
+		totalResources = topology.totalResources;
+		exactMaxExecutors = topology.exactMaxExecutors;
+		exactTimeLimit = topology.exactTimeLimit;
+		streamWeights = topology.streamWeights;
+	}
+	
 	/**
 	 * @param nodeCount
 	 * @return the number of nodes to use for this topology, given the total number of nodes in the cluster (controlled by beta parameter)
@@ -105,6 +219,121 @@ public class Topology {
 		return (long)(gamma * (totalLoad / slotList.size()));
 	}
 	
+	/**
+	 * executors allocating heavily trigger GC pauses for all the executors of their worker, so their allocation rate is spread across slots
+	 * @return the max number of bytes per second the executors of a slot can allocate, negative if not enforced
+	 */
+	public long getMaxAllocationRateForASlot() {
+		return maxAllocationRateForASlot;
+	}
+	
+	/**
+	 * a worker packing too much state is slowed down by long garbage collections, if not killed by an OutOfMemoryError,
+	 * so the heap retained by the executors of a slot is kept within a budget
+	 * @return the max bytes of heap the executors of a slot can retain, negative if not enforced
+	 */
+	public long getHeapBudgetForASlot() {
+		return heapBudgetForASlot;
+	}
+	
+	/**
+	 * sets the heap size of the executors of the components declaring their state size, the measured one is kept for the others
+	 */
+	public void applyStateSizes() {
+		if (stateSizes.isEmpty())
+			return;
+		for (Executor executor : getCommunicatingExecutors())
+			for (ExecutorDetails executorDetails : executorToComponent.keySet())
+				if (executor.match(executorDetails)) {
+					Long stateSize = stateSizes.get(executorToComponent.get(executorDetails));
+					if (stateSize != null)
+						executor.setHeapSize(stateSize * (executor.getEndTask() - executor.getBeginTask() + 1));
+					break;
+				}
+		totalResources = null;
+		slotCapacity = null;
+	}
+	
+	/**
+	 * @return task id -> id of the component the task belongs to
+	 */
+	public Map<Integer, String> getTaskToComponent() {
+		return Utils.getTaskToComponent(executorToComponent);
+	}
+	
+	/**
+	 * @return the resources available to the executors of a slot, a negative value for the resources that are not limited
+	 */
+	public ResourceVector getSlotCapacity() {
+		if (slotCapacity == null) {
+			ResourceVector capacity = ResourceVector.unlimited();
+			if (getMaxLoadForASlot() >= 0)
+				capacity.set(ResourceVector.CPU, getMaxLoadForASlot());
+			if (heapBudgetForASlot >= 0) {
+				// the budget must at least fit the largest executor and the average heap per slot, or some executors would fit in no slot
+				long minHeapBudget = (getTotalResources().get(ResourceVector.HEAP) + slotList.size() - 1) / slotList.size();
+				for (Executor executor : getCommunicatingExecutors())
+					minHeapBudget = Math.max(minHeapBudget, executor.getHeapSize());
+				if (minHeapBudget > heapBudgetForASlot) {
+					Logger.getLogger(Topology.class).warn("The state of topology " + topologyID + " doesn't fit its slots within a heap budget of " + heapBudgetForASlot + " bytes per slot, the budget is raised to " + minHeapBudget + " bytes");
+					capacity.set(ResourceVector.HEAP, minHeapBudget);
+				} else {
+					capacity.set(ResourceVector.HEAP, heapBudgetForASlot);
+				}
+			}
+			capacity.set(ResourceVector.ALLOCATION, maxAllocationRateForASlot);
+			slotCapacity = capacity;
+		}
+		return slotCapacity;
+	}
+	
+	/**
+	 * @return the resources used by all the executors of this topology
+	 */
+	public ResourceVector getTotalResources() {
+		if (totalResources == null) {
+			ResourceVector resources = new ResourceVector();
+			for (Executor executor : getCommunicatingExecutors())
+				resources.add(executor.getResources());
+			totalResources = resources;
+		}
+		return totalResources;
+	}
+	
+	private Set<Executor> getCommunicatingExecutors() {
+		Set<Executor> executors = new HashSet<Executor>();
+		for (ExecutorPair executorPair : trafficManager.getInterExecutorTrafficList()) {
+			executors.add(executorPair.getSource());
+			executors.add(executorPair.getDestination());
+		}
+		return executors;
+	}
+	
+	/**
+	 * @param executor
+	 * @return true if the given executor spends more time blocked on monitors than the contention threshold of this topology
+	 */
+	public boolean isContended(Executor executor) {
+		return contentionThreshold > 0 && executor.getBlockedFraction() >= contentionThreshold;
+	}
+	
+	/**
+	 * executors contending for the locks of their worker are put in distinct slots, as long as there are enough slots for all of them
+	 * @return true if a slot cannot get more than a contended executor
+	 */
+	public boolean isSpreadingContendedExecutors() {
+		if (contentionThreshold < 0)
+			return false;
+		if (contendedExecutorCount == -1) {
+			int n = 0;
+			for (Executor executor : getCommunicatingExecutors())
+				if (isContended(executor))
+					n++;
+			contendedExecutorCount = n;
+		}
+		return contendedExecutorCount > 1 && contendedExecutorCount <= slotList.size();
+	}
+	
 	/**
 	 * @return the list of slots that have no executors assigned to
 	 */
@@ -137,7 +366,7 @@ public class Topology {
 	 * @return the least loaded slot that can accept the given executor
 	 */
 	public Slot getLeastLoadedSlot(Executor executor) {
-		return getLeastLoadedSlot(1, executor.getLoad());
+		return getLeastLoadedSlot(1, executor.getResources(), isContended(executor) ? 1 : 0);
 	}
 	
 	/**
@@ -146,7 +375,9 @@ public class Topology {
 	 * @return the least loaded slot that can accept both the given executors
 	 */
 	public Slot getLeastLoadedSlot(Executor e1, Executor e2) {
-		return getLeastLoadedSlot(2, e1.getLoad() + e2.getLoad());
+		ResourceVector demand = e1.getResources();
+		demand.add(e2.getResources());
+		return getLeastLoadedSlot(2, demand, (isContended(e1) ? 1 : 0) + (isContended(e2) ? 1 : 0));
 	}
 
 	/**
@@ -154,15 +385,27 @@ public class Topology {
 	 * @return the least loaded node that can accept the more-loaded executor of the given pair
 	 */
 	public Slot getLeastLoadedSlot(ExecutorPair executorPair) {
-		long load = Math.max(executorPair.getSource().getLoad(), executorPair.getDestination().getLoad());
-		return getLeastLoadedSlot(1, load);
+		ResourceVector demand = ResourceVector.max(executorPair.getSource().getResources(), executorPair.getDestination().getResources());
+		int contendedCount = (isContended(executorPair.getSource()) || isContended(executorPair.getDestination())) ? 1 : 0;
+		return getLeastLoadedSlot(1, demand, contendedCount);
 	}
 
-	private Slot getLeastLoadedSlot(int executorCount, long load) {
+	/**
+	 * the load of a slot is the share of its dominant resource, with respect to the capacity of a slot,
+	 * or to the overall demand of the topology for the resources that are not limited
+	 */
+	private Slot getLeastLoadedSlot(int executorCount, ResourceVector demand, int contendedCount) {
 		Slot leastLoaded = null;
-		for (Slot slot : slotList)
-			if ((leastLoaded == null || slot.getLoad() < leastLoaded.getLoad()) && slot.canAccept(executorCount, load))
+		double leastShare = 0;
+		for (Slot slot : slotList) {
+			if (!slot.canAccept(executorCount, demand, contendedCount))
+				continue;
+			double share = slot.getResources().getDominantShare(getSlotCapacity(), getTotalResources());
+			if (leastLoaded == null || share < leastShare) {
 				leastLoaded = slot;
+				leastShare = share;
+			}
+		}
 		return leastLoaded;
 	}
 	
@@ -202,7 +445,18 @@ public class Topology {
 	public String getTopologyID() {
 		return topologyID;
 	}
+	
+	public TopologyTrafficManager getTrafficManager() {
+		return trafficManager;
+	}
 
+	/**
+	 * @return stream id -> weight of its traffic
+	 */
+	public Map<String, Float> getStreamWeights() {
+		return streamWeights;
+	}
+	
 	@Override
 	public int hashCode() {
 		final int prime = 31;
@@ -245,11 +499,20 @@ public class Topology {
 		return delta;
 	}
 
+	public int getExactMaxExecutors() {
+		return exactMaxExecutors;
+	}
+	
+	public long getExactTimeLimit() {
+		return exactTimeLimit;
+	}
+	
 	public long getTotalLoad() {
 		return totalLoad;
 	}
 
 	public void setTotalLoad(long totalLoad) {
 		this.totalLoad = totalLoad;
+		slotCapacity = null;
 	}
 }
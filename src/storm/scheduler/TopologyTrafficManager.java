@@ -0,0 +1,229 @@
+/*******************************************************************************
+* Copyright (c) 2013 Leonardo Aniello, Roberto Baldoni, Leonardo Querzoni.
+* All rights reserved. This program and the accompanying materials
+* are made available under the terms of the Eclipse Public License v1.0
+* which accompanies this distribution, and is available at
+* http://www.eclipse.org/legal/epl-v10.html
+*
+* Contributors:
+* Leonardo Aniello, Roberto Baldoni, Leonardo Querzoni
+*******************************************************************************/
+package storm.scheduler;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.log4j.Logger;
+
+/**
+ * keeps the inter-executor and inter-slot traffic stats of a single topology, used during the first phase;
+ * since this state is not shared among topologies, the first phase can be carried out for distinct topologies in parallel
+ * @author Leonardo
+ *
+ */
+public class TopologyTrafficManager {
+	
+	private final Topology topology;
+	
+	/**
+	 * list of communicating executor pairs, sorted by traffic descending
+	 */
+	private List<ExecutorPair> interExecutorTrafficList;
+	
+	/**
+	 * for each executor, the list of the executors it communicates with is kept, together with the stats about inter-executor traffic
+	 *
+	 * executor -> list of executors it communicates with
+	 */
+	private Map<Executor, List<ExecutorPair>> compiledInterExecutorTrafficMap;
+	
+	/**
+	 * list of slot pairs, sorted by traffic descending
+	 */
+	private List<SlotPair> interSlotTrafficList;
+	
+	public TopologyTrafficManager(Topology topology) {
+		this.topology = topology;
+		interExecutorTrafficList = new ArrayList<ExecutorPair>();
+		compiledInterExecutorTrafficMap = new HashMap<Executor, List<ExecutorPair>>();
+		interSlotTrafficList = new ArrayList<SlotPair>();
+	}
+	
+	/**
+	 * loads from the DB the inter-executor traffic stats of this topology, weighting each stream as configured for the topology;
+	 * the traffic not sent by heavy hitters is spread over the executors of the components that exchange it
+	 * @param byteTraffic if true, traffic is measured in bytes per second rather than tuples per second
+	 * @return the list of communicating executor pairs of this topology, sorted by traffic descending
+	 * @throws Exception
+	 */
+	public List<ExecutorPair> loadInterExecutorTrafficList(boolean byteTraffic) throws Exception {
+		setInterExecutorTrafficList(DataManager.getInstance().getInterExecutorTrafficList(topology.getTopologyID(), byteTraffic, topology.getStreamWeights(), topology.getTaskToComponent()));
+		return interExecutorTrafficList;
+	}
+	
+	/**
+	 * @return the list of communicating executor pairs of this topology, sorted by traffic descending
+	 */
+	public List<ExecutorPair> getInterExecutorTrafficList() {
+		return interExecutorTrafficList;
+	}
+	
+	/**
+	 * @param executor
+	 * @return the list of the pairs the given executor belongs to, empty if it doesn't communicate with anyone
+	 */
+	public List<ExecutorPair> getInterExecutorTrafficList(Executor executor) {
+		List<ExecutorPair> executorPairList = compiledInterExecutorTrafficMap.get(executor);
+		if (executorPairList == null)
+			return new ArrayList<ExecutorPair>();
+		return executorPairList;
+	}
+	
+	/**
+	 * Given the list of executor pairs, creates a map executor -> list of executors it communicates with
+	 * and puts it in compiledInterExecutorTrafficMap
+	 * @param executorPairList
+	 */
+	public void setInterExecutorTrafficList(List<ExecutorPair> executorPairList) {
+		Map<Executor, List<ExecutorPair>> trafficMap = new HashMap<Executor, List<ExecutorPair>>();
+		for (ExecutorPair pair : executorPairList) {
+			getExecutorPairs(trafficMap, pair.getSource()).add(pair);
+			getExecutorPairs(trafficMap, pair.getDestination()).add(pair);
+		}
+		interExecutorTrafficList = executorPairList;
+		compiledInterExecutorTrafficMap = trafficMap;
+	}
+	
+	/**
+	 * useful method to create an instance of List<ExecutorPair> in case it doesn't exist yet in trafficMap,
+	 * used only by setInterExecutorTrafficList() method
+	 * @param trafficMap
+	 * @param executor
+	 * @return
+	 */
+	private List<ExecutorPair> getExecutorPairs(Map<Executor, List<ExecutorPair>> trafficMap, Executor executor) {
+		List<ExecutorPair> executorPairList = trafficMap.get(executor);
+		if (executorPairList == null) {
+			executorPairList = new ArrayList<ExecutorPair>();
+			trafficMap.put(executor, executorPairList);
+		}
+		return executorPairList;
+	}
+	
+	/**
+	 * Searches for the pair identified by given slots.
+	 * The order these slots are provided is not relevant, both the combination are checked.
+	 * Indeed, while inter-executor traffic has a precise direction (source-> destination), inter-slot traffic hasn't and this stas includes streams in both directions
+	 * If the required slot pair doesn't exist yet, it gets created.
+	 * @param s1
+	 * @param s2
+	 * @return
+	 */
+	private SlotPair getSlotPair(Slot s1, Slot s2) {
+		SlotPair slotPair = null;
+		for (SlotPair sp : interSlotTrafficList)
+			if ((sp.getFirst().equals(s1) && sp.getSecond().equals(s2)) ||
+				(sp.getFirst().equals(s2) && sp.getSecond().equals(s1)) ) {
+				slotPair = sp;
+				break;
+			}
+		
+		if (slotPair == null) {
+			slotPair = new SlotPair(s1, s2);
+			interSlotTrafficList.add(slotPair);
+		}
+		return slotPair;
+	}
+	
+	/**
+	 * Invoked when the given executor is assigned to the specified slot.
+	 * Inter-slot traffic stats are updated accordingly.
+	 * @param slot
+	 * @param executor
+	 */
+	public void executorAssigned(Slot slot, Executor executor) {
+		// get all the executors communicating with input executor
+		List<ExecutorPair> executorPairList = compiledInterExecutorTrafficMap.get(executor);
+		for (ExecutorPair executorPair : executorPairList) {
+			// for each of them, identify the slot it is currently assigned to, if any
+			Executor otherExecutor = executorPair.getSource();
+			if (otherExecutor.equals(executor))
+				otherExecutor = executorPair.getDestination();
+			Slot s = topology.getSlot(otherExecutor);
+			
+			// if it is already assigned to a slot different from the input one, update inter-slot traffic stats
+			if (s != null && !s.equals(slot)) {
+				// get the proper slot pair (or create if it doesn't exist yet)
+				SlotPair slotPair = getSlotPair(slot, s);
+				
+				// add the traffic and keep the list sorted
+				slotPair.addTraffic(executorPair.getTraffic());
+				slotPair.addBytes(executorPair.getBytes());
+				int index = interSlotTrafficList.indexOf(slotPair);
+				while (index > 0 && slotPair.getTraffic() > interSlotTrafficList.get(index - 1).getTraffic()) {
+					SlotPair tmp = interSlotTrafficList.remove(index - 1);
+					interSlotTrafficList.add(index, tmp);
+					index--;
+				}
+			}
+		}
+		Logger.getLogger(TopologyTrafficManager.class).debug(
+			"After the assignment of executor " + executor + " to slot " + slot +
+			", the inter-slot traffic has become " + Utils.collectionToString(interSlotTrafficList)
+		);
+	}
+	
+	/**
+	 * Invoked when the given executor is removed from the specified slot.
+	 * Inter-slot traffic stats are updated accordingly.
+	 * @param slot
+	 * @param executor
+	 */
+	public void executorRemoved(Slot slot, Executor executor) {
+		// get all the executors communicating with input executor
+		List<ExecutorPair> executorPairList = compiledInterExecutorTrafficMap.get(executor);
+		for (ExecutorPair executorPair : executorPairList) {
+			// for each of them, identify the slot it is currently assigned to
+			Executor otherExecutor = executorPair.getSource();
+			if (otherExecutor.equals(executor))
+				otherExecutor = executorPair.getDestination();
+			Slot s = topology.getSlot(otherExecutor);
+			
+			// if it is assigned to a slot different from the input one, update inter-slot traffic stats
+			// (some of the executors might be unassigned yet)
+			if (s != null && !s.equals(slot)) {
+				// get the proper slot pair
+				SlotPair slotPair = getSlotPair(slot, s);
+				
+				// remove the traffic and keep the list sorted
+				slotPair.removeTraffic(executorPair.getTraffic());
+				slotPair.removeBytes(executorPair.getBytes());
+				int index = interSlotTrafficList.indexOf(slotPair);
+				while (index < interSlotTrafficList.size() - 1 && slotPair.getTraffic() < interSlotTrafficList.get(index + 1).getTraffic()) {
+					SlotPair tmp = interSlotTrafficList.remove(index + 1);
+					interSlotTrafficList.add(index, tmp);
+					index++;
+				}
+			}
+		}
+	}
+	
+	/**
+	 * @return the list of communicating slot pairs of this topology, sorted by traffic descending
+	 */
+	public List<SlotPair> getInterSlotTrafficList() {
+		return interSlotTrafficList;
+	}
+	
+	/**
+	 * @return the value in tuple/s of the inter-slot traffic for this topology
+	 */
+	public int computeInterSlotTraffic() {
+		int interSlotTraffic = 0;
+		for (SlotPair slotPair : interSlotTrafficList)
+			interSlotTraffic += slotPair.getTraffic();
+		return interSlotTraffic;
+	}
+}
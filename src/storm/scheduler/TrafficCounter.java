@@ -0,0 +1,122 @@
+/*******************************************************************************
+* Copyright (c) 2013 Leonardo Aniello, Roberto Baldoni, Leonardo Querzoni.
+* All rights reserved. This program and the accompanying materials
+* are made available under the terms of the Eclipse Public License v1.0
+* which accompanies this distribution, and is available at
+* http://www.eclipse.org/legal/epl-v10.html
+*
+* Contributors:
+* Leonardo Aniello, Roberto Baldoni, Leonardo Querzoni
+*******************************************************************************/
+package storm.scheduler;
+
+/**
+ * counts tuples per task id with primitive arrays (open addressing, linear probing),
+ * so that counting a tuple neither boxes the task id nor allocates, once the counter has grown to the number of tasks;
+ * not thread safe, it is meant to be updated by the thread of a single executor
+ * @author Leonardo
+ *
+ */
+public class TrafficCounter {
+	
+	private static final int INITIAL_CAPACITY = 16; // power of 2
+	
+	private int[] keys;
+	private long[] counts;
+	private boolean[] used;
+	private int size;
+	
+	public TrafficCounter() {
+		keys = new int[INITIAL_CAPACITY];
+		counts = new long[INITIAL_CAPACITY];
+		used = new boolean[INITIAL_CAPACITY];
+	}
+	
+	/**
+	 * adds one to the count of the given task
+	 * @param taskId
+	 */
+	public void increment(int taskId) {
+		add(taskId, 1);
+	}
+	
+	/**
+	 * adds the given amount to the count of the given task
+	 * @param taskId
+	 * @param amount
+	 */
+	public void add(int taskId, long amount) {
+		int index = indexOf(taskId);
+		if (!used[index]) {
+			if ((size + 1) * 4 > keys.length * 3) {
+				grow();
+				index = indexOf(taskId);
+			}
+			used[index] = true;
+			keys[index] = taskId;
+			size++;
+		}
+		counts[index] += amount;
+	}
+	
+	/**
+	 * @param taskId
+	 * @return the count of the given task, 0 if never counted
+	 */
+	public long get(int taskId) {
+		int index = indexOf(taskId);
+		return used[index] ? counts[index] : 0;
+	}
+	
+	/**
+	 * @return the task ids counted since the last clear
+	 */
+	public int[] getTaskIds() {
+		int[] taskIds = new int[size];
+		int n = 0;
+		for (int i = 0; i < keys.length; i++)
+			if (used[i])
+				taskIds[n++] = keys[i];
+		return taskIds;
+	}
+	
+	public int size() {
+		return size;
+	}
+	
+	/**
+	 * resets all the counts, keeping the arrays for the next time slot
+	 */
+	public void clear() {
+		for (int i = 0; i < keys.length; i++) {
+			used[i] = false;
+			counts[i] = 0;
+		}
+		size = 0;
+	}
+	
+	private int indexOf(int taskId) {
+		int mask = keys.length - 1;
+		int hash = taskId * 0x9E3779B9;
+		int index = (hash ^ (hash >>> 16)) & mask;
+		while (used[index] && keys[index] != taskId)
+			index = (index + 1) & mask;
+		return index;
+	}
+	
+	private void grow() {
+		int[] oldKeys = keys;
+		long[] oldCounts = counts;
+		boolean[] oldUsed = used;
+		keys = new int[oldKeys.length * 2];
+		counts = new long[oldKeys.length * 2];
+		used = new boolean[oldKeys.length * 2];
+		for (int i = 0; i < oldKeys.length; i++)
+			if (oldUsed[i]) {
+				int index = indexOf(oldKeys[i]);
+				used[index] = true;
+				keys[index] = oldKeys[i];
+				counts[index] = oldCounts[i];
+			}
+	}
+}
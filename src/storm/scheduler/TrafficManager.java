@@ -15,24 +15,13 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
-import org.apache.log4j.Logger;
-
+/**
+ * keeps the inter-slot and inter-node traffic stats of a single assignment, used during the second phase
+ * @author Leonardo
+ *
+ */
 public class TrafficManager {
 	
-	private static TrafficManager instance = null;
-	
-	/**
-	 * map topologyID -> list of executor pairs, sorted by traffic descending
-	 */
-	// private Map<String, List<ExecutorPair>> interExecutorTrafficMap;
-	
-	/**
-	 * for each executor, the list of the executors it communicates with is kept, together with the stats about inter-executor traffic
-	 * 
-	 * topologyID -> (executor -> list of executors it communicates with)
-	 */
-	private Map<String, Map<Executor, List<ExecutorPair>>> compiledInterExecutorTrafficMap;
-	
 	/**
 	 * map topologyID -> list of slot pair, sorted by traffic descending
 	 */
@@ -62,201 +51,41 @@ public class TrafficManager {
 	 * topology -> list of nodes where topology's slots are assigned
 	 */
 	private Map<Topology, List<Node>> topologyToNodesMap;
-
-	
-	public static TrafficManager getInstance() {
-		if (instance == null)
-			instance = new TrafficManager();
-		return instance;
-	}
-	
-	public void clear() {
-		// interExecutorTrafficMap.clear();
-		compiledInterExecutorTrafficMap.clear();
-		interSlotTrafficMap.clear();
-		compiledInterSlotTrafficMap.clear();
-		interNodeTrafficList.clear();
-		slotToNodeMap.clear();
-		nodeToSlotsMap.clear();
-		topologyToNodesMap.clear();
-	}
-	
-	private TrafficManager() {
-		// interExecutorTrafficMap = new HashMap<String, List<ExecutorPair>>();
-		compiledInterExecutorTrafficMap = new HashMap<String, Map<Executor,List<ExecutorPair>>>();
-		interSlotTrafficMap = new HashMap<String, List<SlotPair>>();
-		compiledInterSlotTrafficMap = new HashMap<String, Map<Slot,List<SlotPair>>>();
-		interNodeTrafficList = new ArrayList<NodePair>();
-		slotToNodeMap = new HashMap<Slot, Node>();
-		nodeToSlotsMap = new HashMap<Node, List<Slot>>();
-		topologyToNodesMap = new HashMap<Topology, List<Node>>();
-	}
 	
 	/**
-	 * @param topologyID
-	 * @return the list of communicating executor pairs of the given topology, sorted by traffic descending
-	 * @throws Exception
+	 * topologies whose slots are tracked, needed to compute intra-slot traffic
 	 */
-	public List<ExecutorPair> getInterExecutorTrafficList(String topologyID) throws Exception {
-		/*List<ExecutorPair> interExecutorTrafficList = interExecutorTrafficMap.get(topologyID);
-		if (interExecutorTrafficList == null || interExecutorTrafficList.isEmpty()) {
-			interExecutorTrafficList = DataManager.getInstance().getInterExecutorTrafficList(topologyID);
-			interExecutorTrafficMap.put(topologyID, interExecutorTrafficList);
-			compileInterExecutorTrafficStat(topologyID, interExecutorTrafficList);
-		}*/
-		
-		List<ExecutorPair> interExecutorTrafficList = DataManager.getInstance().getInterExecutorTrafficList(topologyID);
-		compileInterExecutorTrafficStat(topologyID, interExecutorTrafficList);
-		return interExecutorTrafficList;
-	}
-	
-	/**
-	 * Given the list of executor pairs, creates a map executor -> list of executors it communicates with
-	 * and puts it in compiledInterExecutorTrafficMap
-	 * @param topologyID
-	 * @param executorPairList
-	 */
-	private void compileInterExecutorTrafficStat(String topologyID, List<ExecutorPair> executorPairList) {
-		Map<Executor, List<ExecutorPair>> trafficMap = new HashMap<Executor, List<ExecutorPair>>();
-		for (ExecutorPair pair : executorPairList) {
-			getExecutorPairs(trafficMap, pair.getSource()).add(pair);
-			getExecutorPairs(trafficMap, pair.getDestination()).add(pair);
-		}
-		compiledInterExecutorTrafficMap.put(topologyID, trafficMap);
-	}
-	
-	/**
-	 * useful method to create an instance of List<ExecutorPair> in case it doesn't exist yet in trafficMap,
-	 * used only by compileTrafficStat() method
-	 * @param trafficMap
-	 * @param executor
-	 * @return
-	 */
-	private List<ExecutorPair> getExecutorPairs(Map<Executor, List<ExecutorPair>> trafficMap, Executor executor) {
-		List<ExecutorPair> executorPairList = trafficMap.get(executor);
-		if (executorPairList == null) {
-			executorPairList = new ArrayList<ExecutorPair>();
-			trafficMap.put(executor, executorPairList);
-		}
-		return executorPairList;
-	}
-	
+	private List<Topology> topologyList;
+
 	/**
-	 * Searches for the pair identified by given slots.
-	 * The order these slots are provided is not relevant, both the combination are checked.
-	 * Indeed, while inter-executor traffic has a precise direction (source-> destination), inter-slot traffic hasn't and this stas includes streams in both directions
-	 * If the required slot pair doesn't exist yet, it gets created.
-	 * @param s1
-	 * @param s2
-	 * @return
+	 * slot -> the NUMA node it is bound to, within the node it is assigned to
 	 */
-	private SlotPair getSlotPair(Slot s1, Slot s2) {
-		SlotPair slotPair = null;
-		List<SlotPair> slotPairList = getSlotPairList(s1.getTopology().getTopologyID());
-		for (SlotPair sp : slotPairList)
-			if ((sp.getFirst().equals(s1) && sp.getSecond().equals(s2)) ||
-				(sp.getFirst().equals(s2) && sp.getSecond().equals(s1)) ) {
-				slotPair = sp;
-				break;
-			}
-		
-		if (slotPair == null) {
-			slotPair = new SlotPair(s1, s2);
-			slotPairList.add(slotPair);
-		}
-		return slotPair;
-	}
+	private Map<Slot, Integer> slotToNumaNodeMap;
 	
 	/**
-	 * @param topologyID
-	 * @return the slot pairs list for the given topology; it gets created in case it doesn't exist yet
+	 * traffic in tuple/s between slots of the same node bound to distinct NUMA nodes
 	 */
-	private List<SlotPair> getSlotPairList(String topologyID) {
-		List<SlotPair> slotPairList = interSlotTrafficMap.get(topologyID);
-		if (slotPairList == null) {
-			slotPairList = new ArrayList<SlotPair>();
-			interSlotTrafficMap.put(topologyID, slotPairList);
-		}
-		return slotPairList;
-	}
+	private long interNumaTraffic;
+
 	
-	/**
-	 * Invoked when the given executor is assigned to the specified slot.
-	 * Inter-slot traffic stats are updated accordingly.
-	 * @param slot
-	 * @param executor
-	 */
-	public void executorAssigned(Slot slot, Executor executor) {
-		// get all the executors communicating with input executor
-		List<ExecutorPair> executorPairList = compiledInterExecutorTrafficMap.get(executor.getTopologyID()).get(executor);
-		for (ExecutorPair executorPair : executorPairList) {
-			// for each of them, identify the slot it is currently assigned to, if any
-			Executor otherExecutor = executorPair.getSource();
-			if (otherExecutor.equals(executor))
-				otherExecutor = executorPair.getDestination();
-			Slot s = slot.getTopology().getSlot(otherExecutor);
-			
-			// if it is already assigned to a slot different from the input one, update inter-slot traffic stats
-			if (s != null && !s.equals(slot)) {
-				// get the proper slot pair (or create if it doesn't exist yet)
-				SlotPair slotPair = getSlotPair(slot, s);
-				
-				// add the traffic and keep the list sorted
-				slotPair.addTraffic(executorPair.getTraffic());
-				List<SlotPair> slotPairList = getSlotPairList(slot.getTopology().getTopologyID());
-				int index = slotPairList.indexOf(slotPair);
-				while (index > 0 && slotPair.getTraffic() > slotPairList.get(index - 1).getTraffic()) {
-					SlotPair tmp = slotPairList.remove(index - 1);
-					slotPairList.add(index, tmp);
-					index--;
-				}
-			}
-		}
-		Logger.getLogger(TrafficManager.class).debug(
-			"After the assignment of executor " + executor + " to slot " + slot + 
-			", the inter-slot traffic has become " + Utils.collectionToString(getSlotPairList(slot.getTopology().getTopologyID()))
-		);
+	public TrafficManager() {
+		interSlotTrafficMap = new HashMap<String, List<SlotPair>>();
+		compiledInterSlotTrafficMap = new HashMap<String, Map<Slot,List<SlotPair>>>();
+		interNodeTrafficList = new ArrayList<NodePair>();
+		slotToNodeMap = new HashMap<Slot, Node>();
+		nodeToSlotsMap = new HashMap<Node, List<Slot>>();
+		topologyToNodesMap = new HashMap<Topology, List<Node>>();
+		topologyList = new ArrayList<Topology>();
+		slotToNumaNodeMap = new HashMap<Slot, Integer>();
 	}
 	
 	/**
-	 * Invoked when the given executor is removed from the specified slot.
-	 * Inter-slot traffic stats are updated accordingly.
-	 * @param slot
-	 * @param executor
+	 * makes the inter-slot traffic computed during the first phase for the given topology available to the second phase
+	 * @param topology
 	 */
-	public void executorRemoved(Slot slot, Executor executor) {
-		// get all the executors communicating with input executor
-		List<ExecutorPair> executorPairList = compiledInterExecutorTrafficMap.get(executor.getTopologyID()).get(executor);
-		for (ExecutorPair executorPair : executorPairList) {
-			// for each of them, identify the slot it is currently assigned to
-			Executor otherExecutor = executorPair.getSource();
-			if (otherExecutor.equals(executor))
-				otherExecutor = executorPair.getDestination();
-			Slot s = slot.getTopology().getSlot(otherExecutor);
-			
-			// sanity check
-			/*
-			 * this sanity check is wrong because some of the executors might be unassigned yet!!
-			 */
-			/*if (ss == null)
-				throw new RuntimeException("Cannot find the slot where executor " + otherExecutor + " should be assigned");*/
-			
-			// if it is assigned to a slot different from the input one, update inter-slot traffic stats
-			if (s != null && !s.equals(slot)) {
-				// get the proper slot pair
-				SlotPair slotPair = getSlotPair(slot, s);
-				
-				// remove the traffic and keep the list sorted
-				slotPair.removeTraffic(executorPair.getTraffic());
-				List<SlotPair> slotPairList = getSlotPairList(slot.getTopology().getTopologyID());
-				int index = slotPairList.indexOf(slotPair);
-				while (index < slotPairList.size() - 1 && slotPair.getTraffic() < slotPairList.get(index + 1).getTraffic()) {
-					SlotPair tmp = slotPairList.remove(index + 1);
-					slotPairList.add(index, tmp);
-					index++;
-				}
-			}
-		}
+	public void addTopology(Topology topology) {
+		interSlotTrafficMap.put(topology.getTopologyID(), topology.getTrafficManager().getInterSlotTrafficList());
+		topologyList.add(topology);
 	}
 	
 	/**
@@ -289,6 +118,17 @@ public class TrafficManager {
 		return slotPairList;
 	}
 	
+	/**
+	 * @param slot
+	 * @return the list of slot pairs communicating with the given slot, empty if the slot doesn't communicate with any other slot
+	 */
+	private List<SlotPair> getCompiledSlotPairs(Slot slot) {
+		Map<Slot, List<SlotPair>> slotMap = compiledInterSlotTrafficMap.get(slot.getTopology().getTopologyID());
+		if (slotMap == null || slotMap.get(slot) == null)
+			return new ArrayList<SlotPair>();
+		return slotMap.get(slot);
+	}
+	
 	/**
 	 * @param slot
 	 * @return the node where the given slot is assigned, null if the slot is not assigned yet
@@ -304,7 +144,8 @@ public class TrafficManager {
 	 * @param slot
 	 */
 	public void slotAssigned(Node node, Slot slot) {
-		List<SlotPair> slotPairList = compiledInterSlotTrafficMap.get(slot.getTopology().getTopologyID()).get(slot);
+		List<SlotPair> slotPairList = getCompiledSlotPairs(slot);
+		int numaNode = chooseNumaNode(node, slotPairList);
 		for (SlotPair slotPair : slotPairList) {
 			Slot s = slotPair.getFirst();
 			if (s.equals(slot))
@@ -313,10 +154,14 @@ public class TrafficManager {
 			if (n != null && !n.equals(node)) {
 				NodePair nodePair = getNodePair(n, node);
 				nodePair.addTraffic(slotPair.getTraffic());
-			}
+				node.addNetworkRate(slotPair.getBytes());
+				n.addNetworkRate(slotPair.getBytes());
+			} else if (n != null && slotToNumaNodeMap.get(s) != numaNode)
+				interNumaTraffic += slotPair.getTraffic();
 		}
 		
 		slotToNodeMap.put(slot, node);
+		slotToNumaNodeMap.put(slot, numaNode);
 		List<Slot> slotList = nodeToSlotsMap.get(node);
 		if (slotList == null) {
 			slotList = new ArrayList<Slot>();
@@ -338,7 +183,7 @@ public class TrafficManager {
 	 * @param slot
 	 */
 	public void slotRemoved(Node node, Slot slot) {
-		List<SlotPair> slotPairList = compiledInterSlotTrafficMap.get(slot.getTopology().getTopologyID()).get(slot);
+		List<SlotPair> slotPairList = getCompiledSlotPairs(slot);
 		for (SlotPair slotPair : slotPairList) {
 			Slot s = slotPair.getFirst();
 			if (s.equals(slot))
@@ -347,10 +192,14 @@ public class TrafficManager {
 			if (n != null && !n.equals(node)) {
 				NodePair nodePair = getNodePair(n, node);
 				nodePair.removeTraffic(slotPair.getTraffic());
-			}
+				node.addNetworkRate(-slotPair.getBytes());
+				n.addNetworkRate(-slotPair.getBytes());
+			} else if (n != null && !slotToNumaNodeMap.get(s).equals(slotToNumaNodeMap.get(slot)))
+				interNumaTraffic -= slotPair.getTraffic();
 		}
 		
 		slotToNodeMap.remove(slot);
+		slotToNumaNodeMap.remove(slot);
 		nodeToSlotsMap.get(node).remove(slot);
 		boolean nodeStillContainsSlotsOfThatTopology = false;
 		for (Slot otherSlot : node.getSlotList())
@@ -362,6 +211,81 @@ public class TrafficManager {
 			topologyToNodesMap.get(slot.getTopology()).remove(node);
 	}
 	
+	/**
+	 * the bytes the given slots exchange with the slots already assigned to other nodes flow through the network of both the nodes;
+	 * the ones they exchange with each other or with slots of the given node don't
+	 * @param node
+	 * @param slotList slots not assigned yet
+	 * @return true if the network of the given node, and of the nodes hosting the slots the given ones communicate with, can sustain such bytes
+	 */
+	public boolean canSustainNetwork(Node node, List<Slot> slotList) {
+		Map<Node, Long> demandMap = new HashMap<Node, Long>();
+		for (Slot slot : slotList)
+			for (SlotPair slotPair : getCompiledSlotPairs(slot)) {
+				Slot s = slotPair.getFirst();
+				if (s.equals(slot))
+					s = slotPair.getSecond();
+				Node n = getNode(s);
+				if (n != null && !n.equals(node) && slotPair.getBytes() > 0) {
+					addNetworkDemand(demandMap, node, slotPair.getBytes());
+					addNetworkDemand(demandMap, n, slotPair.getBytes());
+				}
+			}
+		for (Node n : demandMap.keySet())
+			if (n.getNetworkCapacity() > 0 && n.getNetworkRate() + demandMap.get(n) > n.getNetworkCapacity())
+				return false;
+		return true;
+	}
+	
+	private void addNetworkDemand(Map<Node, Long> demandMap, Node node, long bytes) {
+		Long demand = demandMap.get(node);
+		demandMap.put(node, (demand != null) ? demand + bytes : bytes);
+	}
+	
+	/**
+	 * binds a slot being assigned to the given node to the NUMA node of the node hosting the slots it exchanges most traffic with,
+	 * among those that haven't got their share of slots yet; ties are broken in favour of the NUMA node with fewer slots
+	 * @param node
+	 * @param slotPairList the slot pairs the slot belongs to
+	 * @return the NUMA node the slot is bound to, 0 if the node is not NUMA
+	 */
+	private int chooseNumaNode(Node node, List<SlotPair> slotPairList) {
+		int numaNodeCount = node.getNumaNodeCount();
+		if (numaNodeCount == 1)
+			return 0;
+		int[] slotCounts = new int[numaNodeCount];
+		List<Slot> slotList = nodeToSlotsMap.get(node);
+		if (slotList != null)
+			for (Slot s : slotList)
+				slotCounts[slotToNumaNodeMap.get(s)]++;
+		long[] traffic = new long[numaNodeCount];
+		for (SlotPair slotPair : slotPairList) {
+			Node n = getNode(slotPair.getFirst());
+			Slot s = slotPair.getFirst();
+			if (n == null || !n.equals(node)) {
+				s = slotPair.getSecond();
+				n = getNode(s);
+			}
+			if (n != null && n.equals(node))
+				traffic[slotToNumaNodeMap.get(s)] += slotPair.getTraffic();
+		}
+		
+		int best = -1;
+		for (int i = 0; i < numaNodeCount; i++)
+			if (slotCounts[i] < node.getMaxSlotsPerNumaNode() &&
+				(best == -1 || traffic[i] > traffic[best] || (traffic[i] == traffic[best] && slotCounts[i] < slotCounts[best])))
+				best = i;
+		return (best != -1) ? best : 0;
+	}
+	
+	/**
+	 * @param slot
+	 * @return the NUMA node the given slot is bound to, within the node it is assigned to; null if the slot is not assigned yet
+	 */
+	public Integer getNumaNode(Slot slot) {
+		return slotToNumaNodeMap.get(slot);
+	}
+	
 	/**
 	 * @param n1
 	 * @param n2
@@ -398,18 +322,6 @@ public class TrafficManager {
 		return interSlotTrafficList;
 	}
 	
-	/**
-	 * @param topologyID
-	 * @return the value in tuple/s of the inter-slot traffic for the given topology
-	 */
-	public int computeInterSlotTraffic(String topologyID) {
-		int interSlotTraffic = 0;
-		List<SlotPair> trafficList = interSlotTrafficMap.get(topologyID);
-		for (SlotPair slotPair : trafficList)
-			interSlotTraffic += slotPair.getTraffic();
-		return interSlotTraffic;
-	}	
-
 	/**
 	 * @param s1
 	 * @param s2
@@ -454,4 +366,26 @@ public class TrafficManager {
 			totalTraffic += nodePair.getTraffic();
 		return totalTraffic;
 	}
+	
+	/**
+	 * @param costModel
+	 * @return the cost of the traffic of the assigned executors, weighted according to the level (slot, NUMA node, node, network) it flows through
+	 */
+	public double computeTrafficCost(CostModel costModel) {
+		long intraSlotTraffic = 0;
+		for (Topology topology : topologyList)
+			for (ExecutorPair executorPair : topology.getTrafficManager().getInterExecutorTrafficList()) {
+				Slot slot = topology.getSlot(executorPair.getSource());
+				if (slot != null && slot.equals(topology.getSlot(executorPair.getDestination())))
+					intraSlotTraffic += executorPair.getTraffic();
+			}
+		long interSlotTraffic = 0;
+		for (String topologyID : interSlotTrafficMap.keySet())
+			for (SlotPair slotPair : interSlotTrafficMap.get(topologyID))
+				interSlotTraffic += slotPair.getTraffic();
+		long interNodeTraffic = 0;
+		for (NodePair nodePair : interNodeTrafficList)
+			interNodeTraffic += nodePair.getTraffic();
+		return costModel.getCost(intraSlotTraffic, interSlotTraffic - interNodeTraffic - interNumaTraffic, interNumaTraffic, interNodeTraffic);
+	}
 }
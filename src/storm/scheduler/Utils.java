@@ -11,7 +11,13 @@
 package storm.scheduler;
 
 import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import backtype.storm.scheduler.ExecutorDetails;
 
 public class Utils {
 	
@@ -22,6 +28,29 @@ public class Utils {
 	public static final String DELTA = "delta"; // between 0 and 1
 	public static final String TRAFFIC_IMPROVEMENT = "traffic.improvement"; // between 1 and 100
 	public static final String RESCHEDULE_TIMEOUT = "reschedule.timeout"; // in s
+	public static final String MULTI_START_ATTEMPTS = "multistart.attempts"; // greater than 0
+	public static final String MULTI_START_PERTURBATION = "multistart.perturbation"; // between 0 and 1
+	public static final String EXACT_MAX_EXECUTORS = "exact.max.executors"; // 0 to disable the exact search
+	public static final String EXACT_TIME_LIMIT = "exact.time.limit"; // in ms
+	public static final String JOINT_PLACEMENT = "joint.placement"; // true to assign executors to nodes in a single phase
+	public static final String INTRA_SLOT_COST = "intra.slot.cost"; // cost of a tuple exchanged within a slot
+	public static final String INTER_SLOT_COST = "inter.slot.cost"; // cost of a tuple exchanged by slots of the same node
+	public static final String INTER_NUMA_COST = "inter.numa.cost"; // cost of a tuple exchanged by slots of the same node bound to distinct NUMA nodes
+	public static final String INTER_NODE_COST = "inter.node.cost"; // cost of a tuple exchanged by distinct nodes
+	public static final String BYTE_TRAFFIC = "byte.traffic"; // true to minimize the bytes exchanged rather than the tuples
+	public static final String MEASURED_COSTS = "measured.costs"; // true to read the costs from the DB
+	public static final String STREAM_WEIGHTS = "stream.weights"; // comma separated list of stream:weight, a weight of 0 excludes the stream
+	public static final String SATURATION_THRESHOLD = "saturation.threshold"; // between 0 and 1, fraction of time spent in execute() above which an executor is saturated
+	public static final String TRAFFIC_SAMPLING_INTERVAL = "traffic.sampling.interval"; // greater than 0, one tuple in N is counted by monitored components
+	public static final String HEAVY_HITTERS = "heavy.hitters"; // sources tracked per destination task, stream and source component, 0 to track them all
+	public static final String CONTENTION_THRESHOLD = "contention.threshold"; // between 0 and 1, fraction of time blocked on monitors above which executors are spread across slots, not set to disable
+	public static final String MAX_ALLOCATION_RATE_PER_SLOT = "max.allocation.rate.per.slot"; // in bytes/s, max memory allocation rate of the executors of a slot, not set to disable
+	public static final String STATE_SIZES = "state.sizes"; // comma separated list of component:bytes, heap retained by the state of each task of the component
+	public static final String HEAP_BUDGET_PER_SLOT = "heap.budget.per.slot"; // in bytes, max heap retained by the executors of a slot, by default derived from -Xmx
+	public static final String HEAP_BUDGET_FRACTION = "heap.budget.fraction"; // between 0 and 1, fraction of -Xmx the executors of a slot can retain
+	
+	private static final String[] WORKER_CHILDOPTS = {"topology.worker.childopts", "worker.childopts"};
+	private static final Pattern MAX_HEAP_OPTION = Pattern.compile("-Xmx(\\d+)([kKmMgG]?)");
 
 	private Utils() {}
 	
@@ -42,6 +71,113 @@ public class Utils {
 		return null;
 	}
 	
+	/**
+	 * @param conf the configuration of a topology
+	 * @return stream id -> weight of its traffic, as configured by STREAM_WEIGHTS
+	 */
+	public static Map<String, Float> getStreamWeights(Map<?, ?> conf) {
+		Map<String, Float> streamWeights = new HashMap<String, Float>();
+		if (conf.get(STREAM_WEIGHTS) != null) {
+			for (String item : conf.get(STREAM_WEIGHTS).toString().split(",")) {
+				if (item.trim().isEmpty())
+					continue;
+				int index = item.lastIndexOf(':');
+				if (index <= 0)
+					throw new RuntimeException("Wrong stream weight: " + item);
+				float weight = Float.parseFloat(item.substring(index + 1).trim());
+				if (weight < 0)
+					throw new RuntimeException("Wrong stream weight: " + item);
+				streamWeights.put(item.substring(0, index).trim(), weight);
+			}
+		}
+		return streamWeights;
+	}
+	
+	/**
+	 * @param conf the configuration of a topology
+	 * @return component id -> bytes of heap retained by the state of each of its tasks, as configured by STATE_SIZES
+	 */
+	public static Map<String, Long> getStateSizes(Map<?, ?> conf) {
+		Map<String, Long> stateSizes = new HashMap<String, Long>();
+		if (conf.get(STATE_SIZES) != null) {
+			for (String item : conf.get(STATE_SIZES).toString().split(",")) {
+				if (item.trim().isEmpty())
+					continue;
+				int index = item.lastIndexOf(':');
+				if (index <= 0)
+					throw new RuntimeException("Wrong state size: " + item);
+				long stateSize = Long.parseLong(item.substring(index + 1).trim());
+				if (stateSize < 0)
+					throw new RuntimeException("Wrong state size: " + item);
+				stateSizes.put(item.substring(0, index).trim(), stateSize);
+			}
+		}
+		return stateSizes;
+	}
+	
+	/**
+	 * @param executorToComponent
+	 * @return task id -> id of the component the task belongs to
+	 */
+	public static Map<Integer, String> getTaskToComponent(Map<ExecutorDetails, String> executorToComponent) {
+		Map<Integer, String> taskToComponent = new HashMap<Integer, String>();
+		for (ExecutorDetails executorDetails : executorToComponent.keySet())
+			for (int task = executorDetails.getStartTask(); task <= executorDetails.getEndTask(); task++)
+				taskToComponent.put(task, executorToComponent.get(executorDetails));
+		return taskToComponent;
+	}
+	
+	/**
+	 * @param conf the configuration of a topology
+	 * @return the max heap of a worker in bytes, as set by -Xmx in the child options of the workers, -1 if not set
+	 */
+	public static long getMaxHeapSize(Map<?, ?> conf) {
+		for (String key : WORKER_CHILDOPTS) {
+			if (conf.get(key) == null)
+				continue;
+			long maxHeapSize = -1;
+			Matcher matcher = MAX_HEAP_OPTION.matcher(conf.get(key).toString());
+			while (matcher.find()) { // the last occurrence is the one the JVM applies
+				String unit = matcher.group(2).toLowerCase();
+				int shift = unit.equals("g") ? 30 : unit.equals("m") ? 20 : unit.equals("k") ? 10 : 0;
+				maxHeapSize = Long.parseLong(matcher.group(1)) << shift;
+			}
+			if (maxHeapSize >= 0)
+				return maxHeapSize;
+		}
+		return -1;
+	}
+	
+	/**
+	 * @param conf the configuration of a topology
+	 * @return one tuple in N is counted, as configured by TRAFFIC_SAMPLING_INTERVAL, 1 if not configured
+	 */
+	public static int getTrafficSamplingInterval(Map<?, ?> conf) {
+		if (conf.get(TRAFFIC_SAMPLING_INTERVAL) != null)
+			return Integer.parseInt(conf.get(TRAFFIC_SAMPLING_INTERVAL).toString());
+		return 1;
+	}
+	
+	/**
+	 * @param conf the configuration of a topology
+	 * @return the number of heavy hitters, as configured by HEAVY_HITTERS, 0 if not configured
+	 */
+	public static int getHeavyHitterCount(Map<?, ?> conf) {
+		if (conf.get(HEAVY_HITTERS) != null)
+			return Integer.parseInt(conf.get(HEAVY_HITTERS).toString());
+		return 0;
+	}
+	
+	/**
+	 * @param streamWeights
+	 * @param streamId
+	 * @return the weight of the given stream, 1 if not configured
+	 */
+	public static float getStreamWeight(Map<String, Float> streamWeights, String streamId) {
+		Float weight = streamWeights.get(streamId);
+		return (weight != null) ? weight : 1;
+	}
+	
 	/**
 	 * @param list
 	 * @return the list in csv format
@@ -12,18 +12,24 @@ package storm.scheduler;
 
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import org.apache.log4j.Logger;
 
 import backtype.storm.task.TopologyContext;
 import cpuinfo.CPUInfo;
+import cpuinfo.HostLoad;
 
 public class WorkerMonitor {
 
 	private static WorkerMonitor instance = null;
 	
+	private static final float HIGH_CONTENTION = 0.2f; // fraction of time blocked on monitors above which a warning is logged
+	
 	private String topologyId;
 	private int workerPort;
 	private Logger logger;
@@ -34,10 +40,85 @@ public class WorkerMonitor {
 	private Map<Long, List<Long>> loadStats;
 	
 	/*
-	 * <sourceTaskId, destinationTaskId> -> time series of the traffic
+	 * threadId -> time series of the bytes allocated
+	 */
+	private Map<Long, List<Long>> allocationStats;
+	
+	/*
+	 * threadId -> time series of the bytes read from and written to storage
+	 */
+	private Map<Long, List<Long>> ioStats;
+	
+	/*
+	 * threadId -> time series of the ms spent blocked on monitors and of the number of times it happened,
+	 * and the same for the time spent waiting; a thread blocked for long is held back by lock contention rather than by the CPU
+	 */
+	private Map<Long, List<Long>> blockedTimeStats;
+	private Map<Long, List<Long>> blockedCountStats;
+	private Map<Long, List<Long>> waitedTimeStats;
+	private Map<Long, List<Long>> waitedCountStats;
+	
+	/*
+	 * <sourceTaskId, destinationTaskId, streamId> -> time series of the traffic
 	 */
 	private Map<TaskPair, List<Integer>> trafficStats;
 	
+	/*
+	 * <sourceTaskId, destinationTaskId, streamId> -> time series of the bytes
+	 */
+	private Map<TaskPair, List<Long>> byteStats;
+	
+	/*
+	 * <sourceTaskId, destinationTaskId, streamId> -> time series of the tuples emitted by the source
+	 */
+	private Map<TaskPair, List<Integer>> emittedStats;
+	
+	/*
+	 * <sourceComponentId, destinationComponentId, streamId> -> time series of the traffic not sent by heavy hitters
+	 */
+	private Map<ComponentPair, List<Integer>> componentTrafficStats;
+	
+	/*
+	 * tasks tracking only heavy hitters; the pairs they stop reporting are dropped, so that stats and DB rows stay bounded
+	 */
+	private Set<Integer> heavyHitterTaskSet;
+	private List<TaskPair> removedTaskPairList;
+	private List<ComponentPair> removedComponentPairList;
+	
+	/*
+	 * emitted pairs no longer reported by their source, such as the ones towards dead tasks, dropped once idle for the whole time window
+	 */
+	private List<TaskPair> removedEmittedPairList;
+	
+	/*
+	 * taskId -> time series of the time spent in execute()
+	 */
+	private Map<Integer, List<LatencyHistogram>> latencyStats;
+	
+	/*
+	 * threadId -> time series of the time spent in execute(), in ns;
+	 * a busy time close to the length of the time slot means that the input queue of the executor is building up
+	 */
+	private Map<Long, List<Long>> busyTimeStats;
+	
+	/*
+	 * time series of the CPU cycles per second the processors of this node are busy or stolen, whoever uses them,
+	 * and of the fraction of time stolen by the hypervisor
+	 */
+	private HostLoad hostLoad;
+	private List<Long> hostLoadStats;
+	private List<Float> stealStats;
+	
+	/*
+	 * overhead category -> time series of the CPU cycles consumed by the threads of this worker not running executors
+	 */
+	private Map<String, List<Long>> overheadStats;
+	
+	/*
+	 * time series of the bytes of heap of this worker surviving garbage collection
+	 */
+	private List<Long> liveHeapStats;
+	
 	/*
 	 * threadId -> list of tasks Id, in the form [begin task, end task] = Executor
 	 */
@@ -45,6 +126,11 @@ public class WorkerMonitor {
 	
 	private List<TaskMonitor> taskMonitorList;
 	
+	/*
+	 * taskId -> one tuple in N is counted by the task
+	 */
+	private Map<Integer, Integer> samplingIntervalMap;
+	
 	/**
 	 * map source task id -> number of tuples sent by the source to the acker
 	 */
@@ -69,7 +155,28 @@ public class WorkerMonitor {
 	private WorkerMonitor() {
 		logger = Logger.getLogger(WorkerMonitor.class);
 		loadStats = new HashMap<Long, List<Long>>();
+		allocationStats = new HashMap<Long, List<Long>>();
+		ioStats = new HashMap<Long, List<Long>>();
+		blockedTimeStats = new HashMap<Long, List<Long>>();
+		blockedCountStats = new HashMap<Long, List<Long>>();
+		waitedTimeStats = new HashMap<Long, List<Long>>();
+		waitedCountStats = new HashMap<Long, List<Long>>();
 		trafficStats = new HashMap<TaskPair, List<Integer>>();
+		byteStats = new HashMap<TaskPair, List<Long>>();
+		emittedStats = new HashMap<TaskPair, List<Integer>>();
+		latencyStats = new HashMap<Integer, List<LatencyHistogram>>();
+		samplingIntervalMap = new HashMap<Integer, Integer>();
+		componentTrafficStats = new HashMap<ComponentPair, List<Integer>>();
+		heavyHitterTaskSet = new HashSet<Integer>();
+		removedTaskPairList = new ArrayList<TaskPair>();
+		removedComponentPairList = new ArrayList<ComponentPair>();
+		removedEmittedPairList = new ArrayList<TaskPair>();
+		busyTimeStats = new HashMap<Long, List<Long>>();
+		overheadStats = new HashMap<String, List<Long>>();
+		liveHeapStats = new ArrayList<Long>();
+		hostLoad = new HostLoad();
+		hostLoadStats = new ArrayList<Long>();
+		stealStats = new ArrayList<Float>();
 		threadToTaskMap = new HashMap<Long, Executor>();
 		taskMonitorList = new ArrayList<TaskMonitor>();
 		// ackerTrafficMap = new HashMap<Integer, Integer>();
@@ -84,10 +191,25 @@ public class WorkerMonitor {
 			throw new RuntimeException(e);
 		}
 		
+		if (!MonitorConfiguration.getInstance().isLatencyMonitoring())
+			logger.warn("Latency monitoring is off: the utilization of executors is not measured, so saturated executors don't make their nodes overloaded");
+		
 		new WorkerMonitorThread().start();
 		logger.info("WorkerMonitor started!!");
 	}
 	
+	/**
+	 * reads again the CPU limits of this worker and updates the capacity of the node if they have changed,
+	 * so that the scheduler doesn't rely on the cores of the host when the worker is confined by a quota or a cpuset
+	 * @throws Exception
+	 */
+	public void checkCapacity() throws Exception {
+		if (CPUInfo.getInstance().refresh()) {
+			logger.info("CPU limits changed (" + CPUInfo.getInstance().getLimits() + "), capacity: " + CPUInfo.getInstance().getTotalSpeed() + " Hz on " + CPUInfo.getInstance().getNumberOfCores() + " cores");
+			DataManager.getInstance().checkNode(CPUInfo.getInstance().getTotalSpeed());
+		}
+	}
+	
 	/*
 	 * made once by each task in its nextTuple() or execute() method
 	 */
@@ -96,21 +218,107 @@ public class WorkerMonitor {
 		if (executor == null) {
 			executor = new Executor();
 			threadToTaskMap.put(taskMonitor.getThreadId(), executor);
+			// invoked by the thread of the executor, so its id for the OS can be found
+			LoadMonitor.getInstance().registerThread(taskMonitor.getThreadId(), LoadMonitor.getCurrentNativeThreadId());
 		}
 		if (!executor.includes(taskMonitor.getTaskId()))
 			executor.add(taskMonitor.getTaskId());
 		taskMonitorList.add(taskMonitor);
+		samplingIntervalMap.put(taskMonitor.getTaskId(), taskMonitor.getSamplingInterval());
+		if (taskMonitor.getHeavyHitterCount() > 0)
+			heavyHitterTaskSet.add(taskMonitor.getTaskId());
 	}
 	
 	public synchronized void sampleStats() {
 		// traffic
+		Set<TaskPair> sampledTaskPairSet = new HashSet<TaskPair>();
+		Set<TaskPair> sampledEmittedPairSet = new HashSet<TaskPair>();
+		Map<ComponentPair, Integer> componentTrafficInfo = new HashMap<ComponentPair, Integer>();
 		for (TaskMonitor taskMonitor : taskMonitorList) {
-			Map<Integer, Integer> taskTrafficStats = taskMonitor.getTrafficStatMap();
+			Map<String, Map<Integer, Integer>> taskTrafficStats = taskMonitor.getTrafficStatMap();
 			if (taskTrafficStats != null) {
-				for (int sourceTaskId : taskTrafficStats.keySet()) {
-					notifyTrafficStat(
-						new TaskPair(sourceTaskId, taskMonitor.getTaskId()), 
-						taskTrafficStats.get(sourceTaskId));
+				for (String streamId : taskTrafficStats.keySet())
+					for (int sourceTaskId : taskTrafficStats.get(streamId).keySet()) {
+						TaskPair pair = new TaskPair(sourceTaskId, taskMonitor.getTaskId(), streamId);
+						notifyTrafficStat(
+							trafficStats,
+							pair, 
+							taskTrafficStats.get(streamId).get(sourceTaskId));
+						sampledTaskPairSet.add(pair);
+					}
+			}
+			Map<String, Map<String, Integer>> taskComponentTrafficStats = taskMonitor.getComponentTrafficStatMap();
+			if (taskComponentTrafficStats != null) {
+				// tasks of the same component running in this worker contribute to the same component pair
+				for (String streamId : taskComponentTrafficStats.keySet())
+					for (String sourceComponentId : taskComponentTrafficStats.get(streamId).keySet()) {
+						ComponentPair pair = new ComponentPair(sourceComponentId, taskMonitor.getComponentId(), streamId);
+						Integer traffic = componentTrafficInfo.get(pair);
+						componentTrafficInfo.put(pair, (traffic != null ? traffic : 0) + taskComponentTrafficStats.get(streamId).get(sourceComponentId));
+					}
+			}
+			Map<String, Map<Integer, Long>> taskByteStats = taskMonitor.getByteStatMap();
+			if (taskByteStats != null) {
+				for (String streamId : taskByteStats.keySet())
+					for (int sourceTaskId : taskByteStats.get(streamId).keySet()) {
+						notifyByteStat(
+							new TaskPair(sourceTaskId, taskMonitor.getTaskId(), streamId), 
+							taskByteStats.get(streamId).get(sourceTaskId));
+					}
+			}
+			Map<String, Map<Integer, Integer>> taskEmittedStats = taskMonitor.getEmittedStatMap();
+			if (taskEmittedStats != null) {
+				for (String streamId : taskEmittedStats.keySet())
+					for (int destinationTaskId : taskEmittedStats.get(streamId).keySet()) {
+						TaskPair pair = new TaskPair(taskMonitor.getTaskId(), destinationTaskId, streamId);
+						notifyTrafficStat(
+							emittedStats,
+							pair, 
+							taskEmittedStats.get(streamId).get(destinationTaskId));
+						sampledEmittedPairSet.add(pair);
+					}
+			}
+			LatencyHistogram serviceTimeHistogram = taskMonitor.getServiceTimeHistogram();
+			if (serviceTimeHistogram != null)
+				notifyLatencyStat(taskMonitor.getTaskId(), serviceTimeHistogram);
+		}
+		for (ComponentPair pair : componentTrafficInfo.keySet())
+			notifyTrafficStat(componentTrafficStats, pair, componentTrafficInfo.get(pair));
+		
+		// pairs no longer reported by tasks tracking heavy hitters had no traffic in the latest time slot, they are dropped once idle for the whole time window
+		Iterator<TaskPair> taskPairIterator = trafficStats.keySet().iterator();
+		while (taskPairIterator.hasNext()) {
+			TaskPair pair = taskPairIterator.next();
+			if (heavyHitterTaskSet.contains(pair.getDestinationTaskId()) && !sampledTaskPairSet.contains(pair)) {
+				notifyTrafficStat(trafficStats, pair, 0);
+				if (byteStats.containsKey(pair))
+					notifyByteStat(pair, 0);
+				if (isIdle(trafficStats.get(pair))) {
+					taskPairIterator.remove();
+					byteStats.remove(pair);
+					removedTaskPairList.add(pair);
+				}
+			}
+		}
+		Iterator<TaskPair> emittedPairIterator = emittedStats.keySet().iterator();
+		while (emittedPairIterator.hasNext()) {
+			TaskPair pair = emittedPairIterator.next();
+			if (!sampledEmittedPairSet.contains(pair)) {
+				notifyTrafficStat(emittedStats, pair, 0);
+				if (isIdle(emittedStats.get(pair))) {
+					emittedPairIterator.remove();
+					removedEmittedPairList.add(pair);
+				}
+			}
+		}
+		Iterator<ComponentPair> componentPairIterator = componentTrafficStats.keySet().iterator();
+		while (componentPairIterator.hasNext()) {
+			ComponentPair pair = componentPairIterator.next();
+			if (!componentTrafficInfo.containsKey(pair)) {
+				notifyTrafficStat(componentTrafficStats, pair, 0);
+				if (isIdle(componentTrafficStats.get(pair))) {
+					componentPairIterator.remove();
+					removedComponentPairList.add(pair);
 				}
 			}
 		}
@@ -123,25 +331,127 @@ public class WorkerMonitor {
 				new TaskPair(sourceTaskId, Utils.ACKER_TAKS_ID), 
 				tmp.get(sourceTaskId));*/
 		
+		// queue pressure
+		Map<Long, Long> busyTimeInfo = new HashMap<Long, Long>();
+		for (TaskMonitor taskMonitor : taskMonitorList) {
+			Long busyTime = busyTimeInfo.get(taskMonitor.getThreadId());
+			busyTimeInfo.put(taskMonitor.getThreadId(), (busyTime != null ? busyTime : 0) + taskMonitor.getBusyTime());
+		}
+		for (long threadId : busyTimeInfo.keySet())
+			notifyBusyTimeStat(threadId, busyTimeInfo.get(threadId));
+		
 		// load
-		Map<Long, Long> loadInfo = LoadMonitor.getInstance().getLoadInfo(threadToTaskMap.keySet());
-		for (long threadId : loadInfo.keySet())
-			notifyLoadStat(threadId, loadInfo.get(threadId));
+		LoadMonitor loadMonitor = LoadMonitor.getInstance();
+		loadMonitor.sample();
+		for (int slot = 0; slot < loadMonitor.getThreadCount(); slot++) {
+			notifyLoadStat(loadMonitor.getThreadId(slot), loadMonitor.getLoad(slot));
+			notifyThreadStat(allocationStats, loadMonitor.getThreadId(slot), loadMonitor.getAllocation(slot));
+			notifyThreadStat(ioStats, loadMonitor.getThreadId(slot), loadMonitor.getIOLoad(slot));
+			notifyThreadStat(blockedTimeStats, loadMonitor.getThreadId(slot), loadMonitor.getBlockedTime(slot));
+			notifyThreadStat(blockedCountStats, loadMonitor.getThreadId(slot), loadMonitor.getBlockedCount(slot));
+			notifyThreadStat(waitedTimeStats, loadMonitor.getThreadId(slot), loadMonitor.getWaitedTime(slot));
+			notifyThreadStat(waitedCountStats, loadMonitor.getThreadId(slot), loadMonitor.getWaitedCount(slot));
+		}
+		Map<String, Long> overheadLoads = loadMonitor.getOverheadLoads();
+		for (String category : overheadLoads.keySet()) {
+			List<Long> overheadList = overheadStats.get(category);
+			if (overheadList == null) {
+				overheadList = new ArrayList<Long>();
+				overheadStats.put(category, overheadList);
+			}
+			overheadList.add(overheadLoads.get(category));
+			if (overheadList.size() > timeWindowSlotCount)
+				overheadList.remove(0);
+		}
+		
+		// heap surviving garbage collection
+		liveHeapStats.add(loadMonitor.getLiveHeap());
+		if (liveHeapStats.size() > timeWindowSlotCount)
+			liveHeapStats.remove(0);
+		
+		// host load, whoever generates it
+		if (hostLoad.sample()) {
+			float unavailableFraction = hostLoad.getBusyFraction() + hostLoad.getStealFraction();
+			hostLoadStats.add((long)(unavailableFraction * CPUInfo.getInstance().getTotalSpeed()));
+			stealStats.add(hostLoad.getStealFraction());
+			if (hostLoadStats.size() > timeWindowSlotCount) {
+				hostLoadStats.remove(0);
+				stealStats.remove(0);
+			}
+		}
 	}
 	
 	/**
 	 * 
+	 * @param stats either received or emitted tuples
 	 * @param pair
 	 * @return average tuples per second sent by pair.source to pair.destination
 	 */
-	private int getTraffic(TaskPair pair) {
+	private <K> int getTraffic(Map<K, List<Integer>> stats, K pair) {
 		int total = 0;
-		List<Integer> trafficData = trafficStats.get(pair);
+		List<Integer> trafficData = stats.get(pair);
 		for (int traffic : trafficData)
 			total += traffic;
 		return (int)((float)total / (trafficData.size() * timeWindowSlotLength));
 	}
 	
+	/**
+	 * when the destination counts one tuple in N, each counted tuple stands for N tuples (binomial sampling),
+	 * so the variance of a count c is estimated as c * (N - 1)
+	 * @param pair
+	 * @return the standard error of the average tuples per second sent by pair.source to pair.destination, 0 if all tuples are counted
+	 */
+	private int getTrafficError(TaskPair pair) {
+		Integer samplingInterval = samplingIntervalMap.get(pair.getDestinationTaskId());
+		if (samplingInterval == null || samplingInterval == 1)
+			return 0;
+		long total = 0;
+		List<Integer> trafficData = trafficStats.get(pair);
+		for (int traffic : trafficData)
+			total += traffic;
+		return (int)Math.ceil(Math.sqrt((double)total * (samplingInterval - 1)) / (trafficData.size() * timeWindowSlotLength));
+	}
+	
+	/**
+	 * 
+	 * @param pair
+	 * @return average bytes per second sent by pair.source to pair.destination
+	 */
+	private long getBytes(TaskPair pair) {
+		long total = 0;
+		List<Long> byteData = byteStats.get(pair);
+		if (byteData == null)
+			return 0;
+		for (long bytes : byteData)
+			total += bytes;
+		return total / (byteData.size() * timeWindowSlotLength);
+	}
+	
+	/**
+	 * @param taskId
+	 * @return the time spent in execute() by taskId over the whole time window
+	 */
+	private LatencyHistogram getLatency(int taskId) {
+		LatencyHistogram total = new LatencyHistogram();
+		for (LatencyHistogram histogram : latencyStats.get(taskId))
+			total.add(histogram);
+		return total;
+	}
+	
+	/**
+	 * @param threadID
+	 * @return fraction of time spent by threadID in execute(), 1 or more if it can't keep up with its input; 0 if latency is not monitored
+	 */
+	private float getUtilization(long threadID) {
+		long total = 0;
+		List<Long> busyTimeData = busyTimeStats.get(threadID);
+		if (busyTimeData == null)
+			return 0;
+		for (long busyTime : busyTimeData)
+			total += busyTime;
+		return (float)total / (busyTimeData.size() * timeWindowSlotLength * 1000000000L);
+	}
+	
 	/**
 	 * @param threadID
 	 * @return average CPU cycles per second consumed by threadID
@@ -154,6 +464,47 @@ public class WorkerMonitor {
 		return total / (loadData.size() * timeWindowSlotLength);
 	}
 	
+	private long getAverage(List<Long> values) {
+		if (values.isEmpty())
+			return 0;
+		long total = 0;
+		for (long value : values)
+			total += value;
+		return total / values.size();
+	}
+	
+	/**
+	 * the overhead of a worker (serialization, transfer and receive threads, GC) grows with the tuples it exchanges with other workers,
+	 * so it is attributed to executors in proportion to the tuples they receive from and send to tasks not in this worker
+	 * @return threadId -> tuples per second exchanged by the executor with tasks of other workers
+	 */
+	private Map<Long, Long> getRemoteTraffic() {
+		Map<Long, Long> remoteTrafficMap = new HashMap<Long, Long>();
+		for (long threadId : loadStats.keySet())
+			remoteTrafficMap.put(threadId, 0L);
+		for (long threadId : threadToTaskMap.keySet()) {
+			Executor executor = threadToTaskMap.get(threadId);
+			if (!remoteTrafficMap.containsKey(threadId))
+				continue;
+			long remoteTraffic = 0;
+			for (TaskPair pair : trafficStats.keySet())
+				if (executor.includes(pair.getDestinationTaskId()) && !isLocalTask(pair.getSourceTaskId()))
+					remoteTraffic += getTraffic(trafficStats, pair);
+			for (TaskPair pair : emittedStats.keySet())
+				if (executor.includes(pair.getSourceTaskId()) && !isLocalTask(pair.getDestinationTaskId()))
+					remoteTraffic += getTraffic(emittedStats, pair);
+			remoteTrafficMap.put(threadId, remoteTraffic);
+		}
+		return remoteTrafficMap;
+	}
+	
+	private boolean isLocalTask(int taskId) {
+		for (Executor executor : threadToTaskMap.values())
+			if (executor.includes(taskId))
+				return true;
+		return false;
+	}
+	
 	public void storeStats() throws Exception {
 		
 		logger.debug("WorkerMonitor Snapshot");
@@ -167,23 +518,102 @@ public class WorkerMonitor {
 		
 		logger.debug("Inter-Task Traffic Stats (tuples sent per time slot):");
 		for (TaskPair pair : trafficStats.keySet()) {
-			logger.debug("- " + pair.getSourceTaskId() + "->" + pair.getDestinationTaskId() + ": " + getTraffic(pair) + " tuple/s [" + Utils.collectionToString(trafficStats.get(pair)) + "]");
-			DataManager.getInstance().storeTraffic(topologyId, pair.getSourceTaskId(), pair.getDestinationTaskId(), getTraffic(pair));
+			logger.debug("- " + pair + ": " + getTraffic(trafficStats, pair) + " +/- " + getTrafficError(pair) + " tuple/s [" + Utils.collectionToString(trafficStats.get(pair)) + "], " + getBytes(pair) + " byte/s");
+			DataManager.getInstance().storeTraffic(topologyId, pair.getSourceTaskId(), pair.getDestinationTaskId(), pair.getStreamId(), getTraffic(trafficStats, pair), getTrafficError(pair), getBytes(pair));
 		}
 		
+		for (TaskPair pair : removedTaskPairList)
+			DataManager.getInstance().removeTraffic(topologyId, pair.getSourceTaskId(), pair.getDestinationTaskId(), pair.getStreamId());
+		removedTaskPairList.clear();
+		
+		logger.debug("Inter-Component Traffic Stats (tuples not sent by heavy hitters per time slot):");
+		for (ComponentPair pair : componentTrafficStats.keySet()) {
+			logger.debug("- " + pair + ": " + getTraffic(componentTrafficStats, pair) + " tuple/s [" + Utils.collectionToString(componentTrafficStats.get(pair)) + "]");
+			DataManager.getInstance().storeComponentTraffic(topologyId, pair.getSourceComponentId(), pair.getDestinationComponentId(), pair.getStreamId(), getTraffic(componentTrafficStats, pair), workerPort);
+		}
+		for (ComponentPair pair : removedComponentPairList)
+			DataManager.getInstance().removeComponentTraffic(topologyId, pair.getSourceComponentId(), pair.getDestinationComponentId(), pair.getStreamId(), workerPort);
+		removedComponentPairList.clear();
+		
+		logger.debug("Emitted Traffic Stats (tuples emitted per time slot):");
+		for (TaskPair pair : emittedStats.keySet()) {
+			logger.debug("- " + pair + ": " + getTraffic(emittedStats, pair) + " tuple/s [" + Utils.collectionToString(emittedStats.get(pair)) + "]");
+			DataManager.getInstance().storeEmittedTraffic(topologyId, pair.getSourceTaskId(), pair.getDestinationTaskId(), pair.getStreamId(), getTraffic(emittedStats, pair));
+		}
+		for (TaskPair pair : removedEmittedPairList)
+			DataManager.getInstance().removeEmittedTraffic(topologyId, pair.getSourceTaskId(), pair.getDestinationTaskId(), pair.getStreamId());
+		removedEmittedPairList.clear();
+		
+		logger.debug("Latency Stats (time spent in execute() over the time window):");
+		for (int taskId : latencyStats.keySet()) {
+			LatencyHistogram latency = getLatency(taskId);
+			logger.debug("- task " + taskId + ": " + latency);
+			if (latency.getCount() > 0)
+				DataManager.getInstance().storeLatency(topologyId, taskId, latency.getPercentile(50), latency.getPercentile(99), latency.getMax(), workerPort);
+		}
+		
+		logger.debug("Overhead Stats (CPU cycles consumed per time slot by the threads not running executors):");
+		long overhead = 0;
+		for (String category : overheadStats.keySet()) {
+			long categoryOverhead = getAverage(overheadStats.get(category)) / timeWindowSlotLength;
+			logger.debug("- " + category + ": " + categoryOverhead + " cycle/s [" + Utils.collectionToString(overheadStats.get(category)) + "]");
+			overhead += categoryOverhead;
+		}
+		Map<Long, Long> remoteTrafficMap = getRemoteTraffic();
+		long totalRemoteTraffic = 0;
+		for (long remoteTraffic : remoteTrafficMap.values())
+			totalRemoteTraffic += remoteTraffic;
+		logger.debug("Overhead of the slot: " + overhead + " cycle/s, attributed to executors " + (totalRemoteTraffic > 0 ? "by remote traffic (" + totalRemoteTraffic + " tuple/s)" : "evenly"));
+		
+		// the live heap cannot be told apart per thread, so each executor is given an even share; components with a large state
+		// are expected to declare it in the configuration of the topology, which takes precedence over this share
+		long liveHeap = getAverage(liveHeapStats);
+		long maxHeap = LoadMonitor.getInstance().getMaxHeap();
+		long heapShare = loadStats.isEmpty() ? 0 : liveHeap / loadStats.size();
+		logger.debug("Live heap: " + liveHeap + " bytes" + (maxHeap > 0 ? " out of " + maxHeap + " (" + (int)((double)liveHeap / maxHeap * 100) + "%)" : "") + ", " + heapShare + " bytes per executor");
+		
 		logger.debug("Load Stats (CPU cycles consumed per time slot):");
 		long totalCPUCyclesPerSecond = 0;
 		for (long threadId : loadStats.keySet()) {
 			List<Long> threadLoadInfo = loadStats.get(threadId);
 			totalCPUCyclesPerSecond += threadLoadInfo.get(threadLoadInfo.size() - 1) / timeWindowSlotLength;
-			logger.debug("- thread " + threadId + ": " + getLoad(threadId) + " cycle/s [" + Utils.collectionToString(threadLoadInfo) + "]");
+			float utilization = getUtilization(threadId);
+			long allocationRate = getAverage(allocationStats.get(threadId)) / timeWindowSlotLength;
+			long ioRate = getAverage(ioStats.get(threadId)) / timeWindowSlotLength;
+			logger.debug("- thread " + threadId + ": " + getLoad(threadId) + " cycle/s [" + Utils.collectionToString(threadLoadInfo) + "], utilization: " + utilization + ", allocation rate: " + allocationRate + " byte/s, disk I/O: " + ioRate + " byte/s");
 			Executor executor = threadToTaskMap.get(threadId);
-			DataManager.getInstance().storeLoad(topologyId, executor.getBeginTask(), executor.getEndTask(), getLoad(threadId));
+			if (utilization >= 1)
+				logger.warn("Executor " + executor + " is saturated, it spends " + (int)(utilization * 100) + "% of the time in execute() so its input queue is building up");
+			long overheadShare = (totalRemoteTraffic > 0) ? overhead * remoteTrafficMap.get(threadId) / totalRemoteTraffic : overhead / loadStats.size();
+			DataManager.getInstance().storeLoad(topologyId, executor.getBeginTask(), executor.getEndTask(), getLoad(threadId) + overheadShare, utilization, allocationRate, ioRate, workerPort);
+			
+			float blockedFraction = (float)getAverage(blockedTimeStats.get(threadId)) / (timeWindowSlotLength * 1000);
+			float waitedFraction = (float)getAverage(waitedTimeStats.get(threadId)) / (timeWindowSlotLength * 1000);
+			float blockedRate = (float)getAverage(blockedCountStats.get(threadId)) / timeWindowSlotLength;
+			float waitedRate = (float)getAverage(waitedCountStats.get(threadId)) / timeWindowSlotLength;
+			logger.debug("  contention: blocked " + (int)(blockedFraction * 100) + "% of the time (" + blockedRate + " times/s), waiting " + (int)(waitedFraction * 100) + "% of the time (" + waitedRate + " times/s)");
+			if (blockedFraction >= HIGH_CONTENTION)
+				logger.warn("Executor " + executor + " is blocked on monitors " + (int)(blockedFraction * 100) + "% of the time, it is held back by lock contention");
+			DataManager.getInstance().storeContention(topologyId, executor.getBeginTask(), executor.getEndTask(), blockedFraction, blockedRate, waitedFraction, waitedRate);
+			DataManager.getInstance().storeHeap(topologyId, executor.getBeginTask(), executor.getEndTask(), heapShare);
 		}
 		long totalCPUCyclesAvailable = CPUInfo.getInstance().getTotalSpeed();
 		int usage = (int)(((double)totalCPUCyclesPerSecond / totalCPUCyclesAvailable) * 100);
 		logger.debug("Total CPU cycles consumed per second: " + totalCPUCyclesPerSecond + ", Total available: " + totalCPUCyclesAvailable + ", Usage: " + usage + "%");
 		
+		if (!hostLoadStats.isEmpty()) {
+			long totalHostLoad = 0;
+			float totalSteal = 0;
+			for (int i = 0; i < hostLoadStats.size(); i++) {
+				totalHostLoad += hostLoadStats.get(i);
+				totalSteal += stealStats.get(i);
+			}
+			long averageHostLoad = totalHostLoad / hostLoadStats.size();
+			float averageSteal = totalSteal / stealStats.size();
+			logger.debug("Host load (Storm and any other process, steal time included): " + averageHostLoad + " cycle/s, steal: " + (int)(averageSteal * 100) + "%");
+			DataManager.getInstance().storeHostLoad(averageHostLoad, averageSteal);
+		}
+		
 		logger.debug("----------------------------------------");
 	}
 	
@@ -198,17 +628,74 @@ public class WorkerMonitor {
 			loadList.remove(0);
 	}
 	
-	private void notifyTrafficStat(TaskPair taskPair, int traffic) {
-		List<Integer> trafficList = trafficStats.get(taskPair);
+	/**
+	 * adds a value to the time series of a thread
+	 * @param stats
+	 * @param threadId
+	 * @param value
+	 */
+	private void notifyThreadStat(Map<Long, List<Long>> stats, long threadId, long value) {
+		List<Long> valueList = stats.get(threadId);
+		if (valueList == null) {
+			valueList = new ArrayList<Long>();
+			stats.put(threadId, valueList);
+		}
+		valueList.add(value);
+		if (valueList.size() > timeWindowSlotCount)
+			valueList.remove(0);
+	}
+	
+	private <K> void notifyTrafficStat(Map<K, List<Integer>> stats, K taskPair, int traffic) {
+		List<Integer> trafficList = stats.get(taskPair);
 		if (trafficList == null) {
 			trafficList = new ArrayList<Integer>();
-			trafficStats.put(taskPair, trafficList);
+			stats.put(taskPair, trafficList);
 		}
 		trafficList.add(traffic);
 		if (trafficList.size() > timeWindowSlotCount)
 			trafficList.remove(0);
 	}
+	
+	private void notifyBusyTimeStat(long threadId, long busyTime) {
+		List<Long> busyTimeList = busyTimeStats.get(threadId);
+		if (busyTimeList == null) {
+			busyTimeList = new ArrayList<Long>();
+			busyTimeStats.put(threadId, busyTimeList);
+		}
+		busyTimeList.add(busyTime);
+		if (busyTimeList.size() > timeWindowSlotCount)
+			busyTimeList.remove(0);
+	}
 
+	private void notifyLatencyStat(int taskId, LatencyHistogram histogram) {
+		List<LatencyHistogram> latencyList = latencyStats.get(taskId);
+		if (latencyList == null) {
+			latencyList = new ArrayList<LatencyHistogram>();
+			latencyStats.put(taskId, latencyList);
+		}
+		latencyList.add(histogram);
+		if (latencyList.size() > timeWindowSlotCount)
+			latencyList.remove(0);
+	}
+	
+	private static boolean isIdle(List<Integer> trafficList) {
+		for (int traffic : trafficList)
+			if (traffic > 0)
+				return false;
+		return true;
+	}
+	
+	private void notifyByteStat(TaskPair taskPair, long bytes) {
+		List<Long> byteList = byteStats.get(taskPair);
+		if (byteList == null) {
+			byteList = new ArrayList<Long>();
+			byteStats.put(taskPair, byteList);
+		}
+		byteList.add(bytes);
+		if (byteList.size() > timeWindowSlotCount)
+			byteList.remove(0);
+	}
+	
 	public String getTopologyId() {
 		return topologyId;
 	}
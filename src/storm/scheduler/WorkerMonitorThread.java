@@ -13,6 +13,7 @@ package storm.scheduler;
 public class WorkerMonitorThread extends Thread {
 	
 	public void run() {
+		long lastCapacityCheck = System.currentTimeMillis();
 		
 		while (true) {
 			try {
@@ -27,6 +28,15 @@ public class WorkerMonitorThread extends Thread {
 			} catch (Exception e) {
 				e.printStackTrace();
 			}
+			
+			if (System.currentTimeMillis() - lastCapacityCheck >= MonitorConfiguration.getInstance().getCapacityCheckInterval() * 1000L) {
+				lastCapacityCheck = System.currentTimeMillis();
+				try {
+					WorkerMonitor.getInstance().checkCapacity();
+				} catch (Exception e) {
+					e.printStackTrace();
+				}
+			}
 		}
 	}
 }
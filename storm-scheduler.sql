@@ -41,6 +41,64 @@ CREATE TABLE `assignment` (
 ) ENGINE=MyISAM AUTO_INCREMENT=955 DEFAULT CHARSET=latin1;
 /*!40101 SET character_set_client = @saved_cs_client */;
 
+--
+-- Table structure for table `component_traffic`
+-- (tuples sent to the tasks of a component running in a worker by the tasks of another component that are not heavy hitters)
+--
+
+DROP TABLE IF EXISTS `component_traffic`;
+/*!40101 SET @saved_cs_client     = @@character_set_client */;
+/*!40101 SET character_set_client = utf8 */;
+CREATE TABLE `component_traffic` (
+  `topology_id` int(11) NOT NULL,
+  `source_component` varchar(256) NOT NULL,
+  `destination_component` varchar(256) NOT NULL,
+  `stream` varchar(256) NOT NULL DEFAULT 'default',
+  `traffic` int(11) NOT NULL,
+  `node` varchar(45) NOT NULL,
+  `port` int(11) NOT NULL DEFAULT '0',
+  KEY `topology_FK4` (`topology_id`),
+  CONSTRAINT `topology_FK4` FOREIGN KEY (`topology_id`) REFERENCES `topology` (`id`) ON DELETE NO ACTION ON UPDATE NO ACTION
+) ENGINE=InnoDB DEFAULT CHARSET=latin1;
+/*!40101 SET character_set_client = @saved_cs_client */;
+
+--
+-- Table structure for table `cost`
+-- (measured cost of a tuple exchanged within a slot, between slots of the same node and between nodes;
+-- levels are 'intra-slot', 'inter-slot' and 'inter-node')
+--
+
+DROP TABLE IF EXISTS `cost`;
+/*!40101 SET @saved_cs_client     = @@character_set_client */;
+/*!40101 SET character_set_client = utf8 */;
+CREATE TABLE `cost` (
+  `level` varchar(45) NOT NULL,
+  `cost` float NOT NULL,
+  PRIMARY KEY (`level`)
+) ENGINE=InnoDB DEFAULT CHARSET=latin1;
+/*!40101 SET character_set_client = @saved_cs_client */;
+
+--
+-- Table structure for table `latency`
+-- (time spent by a task in execute(), in microseconds)
+--
+
+DROP TABLE IF EXISTS `latency`;
+/*!40101 SET @saved_cs_client     = @@character_set_client */;
+/*!40101 SET character_set_client = utf8 */;
+CREATE TABLE `latency` (
+  `topology_id` int(11) NOT NULL,
+  `task` int(11) NOT NULL,
+  `p50` bigint(20) NOT NULL,
+  `p99` bigint(20) NOT NULL,
+  `max` bigint(20) NOT NULL,
+  `node` varchar(45) NOT NULL,
+  `port` int(11) NOT NULL DEFAULT '0',
+  KEY `topology_FK3` (`topology_id`),
+  CONSTRAINT `topology_FK3` FOREIGN KEY (`topology_id`) REFERENCES `topology` (`id`) ON DELETE NO ACTION ON UPDATE NO ACTION
+) ENGINE=InnoDB DEFAULT CHARSET=latin1;
+/*!40101 SET character_set_client = @saved_cs_client */;
+
 --
 -- Table structure for table `load`
 --
@@ -53,7 +111,16 @@ CREATE TABLE `load` (
   `begin_task` int(11) NOT NULL,
   `end_task` int(11) NOT NULL,
   `load` bigint(20) NOT NULL,
+  `utilization` float NOT NULL DEFAULT '0',
+  `allocation_rate` bigint(20) NOT NULL DEFAULT '0',
+  `io_rate` bigint(20) NOT NULL DEFAULT '0',
+  `blocked` float NOT NULL DEFAULT '0',
+  `blocked_rate` float NOT NULL DEFAULT '0',
+  `waited` float NOT NULL DEFAULT '0',
+  `waited_rate` float NOT NULL DEFAULT '0',
+  `heap` bigint(20) NOT NULL DEFAULT '0',
   `node` varchar(45) NOT NULL,
+  `port` int(11) NOT NULL DEFAULT '0',
   KEY `topology_FK` (`topology_id`),
   CONSTRAINT `topology_FK` FOREIGN KEY (`topology_id`) REFERENCES `topology` (`id`) ON DELETE NO ACTION ON UPDATE NO ACTION
 ) ENGINE=InnoDB DEFAULT CHARSET=latin1;
@@ -70,6 +137,12 @@ CREATE TABLE `node` (
   `name` varchar(45) NOT NULL,
   `capacity` bigint(20) NOT NULL,
   `cores` int(11) NOT NULL,
+  `numa_nodes` int(11) NOT NULL DEFAULT '1',
+  `io_capacity` bigint(20) NOT NULL DEFAULT '0',
+  `network_capacity` bigint(20) NOT NULL DEFAULT '0',
+  `performance_factor` float NOT NULL DEFAULT '1',
+  `host_load` bigint(20) NOT NULL DEFAULT '0',
+  `steal` float NOT NULL DEFAULT '0',
   UNIQUE KEY `name_UNIQUE` (`name`)
 ) ENGINE=InnoDB DEFAULT CHARSET=latin1;
 /*!40101 SET character_set_client = @saved_cs_client */;
@@ -100,7 +173,11 @@ CREATE TABLE `traffic` (
   `topology_id` int(11) NOT NULL,
   `source_task` int(11) NOT NULL,
   `destination_task` int(11) NOT NULL,
+  `stream` varchar(256) NOT NULL DEFAULT 'default',
   `traffic` int(11) NOT NULL,
+  `traffic_error` int(11) NOT NULL DEFAULT '0',
+  `emitted` int(11) NOT NULL DEFAULT '0',
+  `bytes` bigint(20) NOT NULL DEFAULT '0',
   KEY `topology_FK2` (`topology_id`),
   CONSTRAINT `topology_FK2` FOREIGN KEY (`topology_id`) REFERENCES `topology` (`id`) ON DELETE NO ACTION ON UPDATE NO ACTION
 ) ENGINE=InnoDB DEFAULT CHARSET=latin1;